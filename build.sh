@@ -69,6 +69,8 @@ warns="-Xlint:all"
 
 ## standard parameters
 params="-source 7 -target 7 -s src -d bin"
+## (@requires and the processor meta-annotations are left to ATProcessor, so do not warn that they are unclaimed)
+codecparams="-source 7 -target 7 -s bin -d bin -processorpath bin -processor ${dirpackage}.io.TransferCodecProcessor -Xlint:-processing"
 
 
 ## libraries
@@ -182,9 +184,15 @@ else
         ) | colourise
     fi &&
     
+    ## compile transfer codec generator
+    if [ -f 'src/'"$srcpackage"'/io/TransferCodecProcessor.java' ]; then
+        ( javacSeven $warns -cp .:bin$jars $params src/"$srcpackage"/io/{TransferCodecProcessor,Transferable}.java  2>&1
+        ) | colourise
+    fi &&
+    
     if [[ $paramAnnot = 0 ]]; then
-        ## compile paradis
-	( javacSeven $warns -cp .:bin$jars $params $(find src | grep '\.java$')  2>&1
+        ## compile paradis, generating transfer codecs into bin/
+	( javacSeven $warns -cp .:bin$jars $codecparams $(find src | grep '\.java$')  2>&1
 	) | colourise &&
 	(
             ## make plugin files
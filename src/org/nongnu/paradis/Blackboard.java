@@ -17,7 +17,11 @@
  */
 package org.nongnu.paradis;
 
+import org.nongnu.paradis.util.*;
+
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 
 /**
@@ -53,14 +57,28 @@ public class Blackboard
      */
     public static final ThreadingPolicy NICE_DAEMON_THREADING;
     
+    /**
+     * Daemon threads from a pool shared by all observers using this policy,
+     * with one thread per available processor
+     */
+    public static final ThreadingPolicy POOLED_DAEMON_THREADING;
+    
+    /**
+     * Like {@link #POOLED_DAEMON_THREADING}, but each observer is notified
+     * of one message at the time, in the order they were broadcasted
+     */
+    public static final ThreadingPolicy SERIAL_DAEMON_THREADING;
+    
     
     
     /**
      * Multiton constructor
+     * 
+     * @param  name  The name (unique identifier) of the instance, {@code null} is default
      */
-    private Blackboard()
+    private Blackboard(final Object name)
     {
-        // Do nothing
+        this.statistics = new BlackboardStatistics(this, name);
     }
     
     
@@ -72,20 +90,75 @@ public class Blackboard
      */
     public static Blackboard getInstance(final Object name)
     {
+        final Object key = name == null ? DEFAULT_NAME : name;
         Blackboard instance;
-        if ((instance = instances.get(name)) == null)
-            synchronized (instances)
-            {   if ((instance = instances.get(name)) == null)
-                    instances.put(name, instance = new Blackboard());
-            }
+        if ((instance = instances.get(key)) == null)
+        {   final Blackboard created = new Blackboard(name);
+            if ((instance = instances.putIfAbsent(key, created)) == null)
+            {   instance = created;
+                instance.statistics.register();
+        }   }
         return instance;
     }
     
     
     /**
-     * The instance of this class
+     * Gets an instance of this class, without creating it if missing
+     * 
+     * @param   name  The name (unique identifier) of the instance, {@code null} is default
+     * @return        The instance, {@code null} if it has not been created
+     */
+    public static Blackboard find(final Object name)
+    {
+        return instances.get(name == null ? DEFAULT_NAME : name);
+    }
+    
+    
+    /**
+     * Gets the default instance of this class, this is the same as
+     * {@code getInstance(null)} but without any lookup
+     * 
+     * @return  The default instance
+     */
+    public static Blackboard getDefault()
+    {
+        return DefaultInstance.INSTANCE;
+    }
+    
+    
+    /**
+     * The instances of this class
+     */
+    private static final ConcurrentHashMap<Object, Blackboard> instances = new ConcurrentHashMap<>();
+    
+    /**
+     * Key for the default instance in {@link #instances}, which cannot hold {@code null}
+     */
+    private static final Object DEFAULT_NAME = new Object();
+    
+    
+    
+    /**
+     * Lazily initialised holder of the default instance
      */
-    private static final HashMap<Object, Blackboard> instances = new HashMap<>();
+    private static final class DefaultInstance
+    {
+        /**
+         * Non-constructor
+         */
+        private DefaultInstance()
+        {
+            assert false : "You may not create instances of this class [DefaultInstance].";
+        }
+        
+        
+        
+        /**
+         * The default instance
+         */
+        static final Blackboard INSTANCE = getInstance(null);
+        
+    }
     
     
     
@@ -141,6 +214,10 @@ public class Blackboard
                         thread.setPriority(2); //below normal: 2 of 1..10; corresponding nice value: 3
                         return thread;
                 }   };
+        
+        final int processors = Runtime.getRuntime().availableProcessors();
+        POOLED_DAEMON_THREADING = new PooledThreadingPolicy(DAEMON_THREADING, processors);
+        SERIAL_DAEMON_THREADING = new SerialThreadingPolicy(DAEMON_THREADING, processors);
     }
     
     
@@ -148,13 +225,18 @@ public class Blackboard
     /**
      * Registrered observers
      */
-    private HashSet<BlackboardObserver> observers = new HashSet<>();
+    private LinkedHashSet<BlackboardObserver> observers = new LinkedHashSet<>();
     
     /**
      * How to thread message observations
      */
     private HashMap<BlackboardObserver, HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy>> observationThreading = new HashMap<>();
     
+    /**
+     * Which message types, including subtypes, observers are interested in, missing for all types
+     */
+    private HashMap<BlackboardObserver, Class<?>[]> observationTypes = new HashMap<>();
+    
     /**
      * In which order should observers be notified
      */
@@ -165,6 +247,32 @@ public class Blackboard
      */
     private Object monitor = new Object();
     
+    /**
+     * Threading policy for observers without registered threading policies,
+     * {@code null} to notify them in the broadcasting thread
+     */
+    private ThreadingPolicy defaultPolicy = null;
+    
+    /**
+     * Priority ordered deliveries per message type, cleared when registrations change
+     */
+    private final ConcurrentHashMap<Class<? extends BlackboardMessage>, Delivery[]> dispatchTables = new ConcurrentHashMap<>();
+    
+    /**
+     * Deliveries of individual messages in batches per batch type, cleared with {@link #dispatchTables}
+     */
+    private final ConcurrentHashMap<Class<? extends BlackboardMessage>, Delivery[]> unbatchTables = new ConcurrentHashMap<>();
+    
+    /**
+     * Broadcast and notification statistics
+     */
+    private final BlackboardStatistics statistics;
+    
+    /**
+     * The number of threads that has been created for notifications with non-executing threading policies
+     */
+    private final AtomicLong threadsCreated = new AtomicLong();
+    
     
     
     /**
@@ -176,6 +284,34 @@ public class Blackboard
     }
     
     
+    /**
+     * <p>Message that carries a batch of messages of one type</p>
+     * <p>
+     *   The batch is delivered once to observers that have registered explicitly
+     *   for the batch type, for {@link BatchMessage}, or for a subtype of
+     *   {@link BatchMessage} that the batch implements. Other observers, including those registered for a supertype
+     *   such as {@link BlackboardMessage}, are notified of each message in the
+     *   batch individually, after the batch has been delivered.
+     * </p>
+     */
+    public static interface BatchMessage extends BlackboardMessage
+    {
+        /**
+         * Gets the type of the messages in the batch
+         * 
+         * @return  The type of the messages in the batch, must be the same for all batches of the same class
+         */
+        public Class<? extends BlackboardMessage> getMessageType();
+        
+        /**
+         * Gets the messages in the batch, this is only invoked if an observer needs them individually
+         * 
+         * @return  The messages in the batch
+         */
+        public BlackboardMessage[] getMessages();
+    }
+    
+    
     /**
      * Message broadcasted when a new observer is registrered or when a observer is unregistrered
      */
@@ -252,6 +388,22 @@ public class Blackboard
     }
     
     
+    /**
+     * Typed message subscriber
+     * 
+     * @param  <M>  The message type
+     */
+    public static interface Subscriber<M extends BlackboardMessage>
+    {
+        /**
+         * This method is invoked when the a message of the subscribed type is pinned on the blackboard
+         * 
+         * @param  message  The broadcasted message
+         */
+        public void messageBroadcasted(final M message);
+    }
+    
+    
     /**
      * Message observation threading policy
      */
@@ -267,84 +419,733 @@ public class Blackboard
     }
     
     
-    
     /**
-     * Registers a message type-wide observer
-     *
-     * @param  observer  The observer to register
+     * Message observation threading policy that reuses threads rather
+     * than creating a new thread for each notification
      */
-    public void registerObserver(final BlackboardObserver observer)
+    public static interface ExecutingThreadingPolicy extends ThreadingPolicy
     {
-        synchronized (this.monitor)
-        {
-            System.err.println("BLACKBOARD.registerObserver(" + observer + ")");
-            this.observers.add(observer);
-            this.broadcastMessage(new ObserverRegisterMessage(observer, true));
-        }
+        /**
+         * Runs a notification according to the policy
+         * 
+         * @param  observer  The observer that is notified
+         * @param  runnable  The notification
+         */
+        public void execute(final BlackboardObserver observer, final Runnable runnable);
+        
+        /**
+         * Gets the number of notifications for an observer that has not yet been run
+         * 
+         * @param   observer  The observer
+         * @return            The number of waiting notifications
+         */
+        public int getQueueDepth(final BlackboardObserver observer);
+        
+        /**
+         * Gets the number of threads the policy has created
+         * 
+         * @return  The number of threads the policy has created
+         */
+        public long getThreadsCreated();
     }
     
     
     /**
-     * Unregisters a message type-wide observer
-     *
-     * @param  observer  The observer to unregister
+     * Threading policy that runs notifications in a bounded thread pool
      */
-    public void unregisterObserver(final BlackboardObserver observer)
+    public static class PooledThreadingPolicy implements ExecutingThreadingPolicy
     {
-        synchronized (this.monitor)
+        /**
+         * The number of seconds an idle thread is kept alive
+         */
+        public static final int KEEP_ALIVE = 60;
+        
+        
+        
+        /**
+         * Constructor
+         * 
+         * @param  threads  The policy used to create the threads in the pool, this
+         *                  decides their daemon status and priority
+         * @param  size     The maximum number of threads in the pool
+         */
+        public PooledThreadingPolicy(final ThreadingPolicy threads, final int size)
         {
-            System.err.println("BLACKBOARD.unregisterObserver(" + observer + ")");
-            this.observers.remove(observer);
-            this.observationThreading.remove(observer);
-            this.observationPriorities.remove(observer);
-            this.broadcastMessage(new ObserverRegisterMessage(observer, false));
+            assert threads != null : "Invalid thread policy: null";
+            assert size > 0 : "Invalid pool size: " + size;
+            
+            this.threads = threads;
+            this.executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                   new ThreadFactory()
+                                                           {   /**
+                                                                * {@inheritDoc}
+                                                                */
+                                                               @Override
+                                                               public Thread newThread(final Runnable runnable)
+                                                               {   PooledThreadingPolicy.this.threadsCreated.incrementAndGet();
+                                                                   return threads.createThread(runnable);
+                                                           }   });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+        
+        
+        
+        /**
+         * The policy used to create the threads in the pool
+         */
+        private final ThreadingPolicy threads;
+        
+        /**
+         * The thread pool
+         */
+        private final ThreadPoolExecutor executor;
+        
+        /**
+         * The number of threads the pool has created
+         */
+        private final AtomicLong threadsCreated = new AtomicLong();
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread createThread(final Runnable runnable)
+        {   return this.threads.createThread(runnable);
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void execute(final BlackboardObserver observer, final Runnable runnable)
+        {   this.executor.execute(runnable);
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         * The pool's queue is shared, so this is the number of waiting notifications for all observers.
+         */
+        @Override
+        public int getQueueDepth(final BlackboardObserver observer)
+        {   return this.executor.getQueue().size();
         }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getThreadsCreated()
+        {   return this.threadsCreated.get();
+        }
+        
     }
     
     
     /**
-     * Registers a threading policy for an observer and a message type.<br/>
-     * If a threading policy is registrered for an observer it will only receive message with a registrered threading policy.
-     * 
-     * @param  observer     The observer
-     * @param  messageType  The message type
-     * @param  policy       The threading policy
-     * 
-     * @deprecated  Use overloading {@link #registerThreadingPolicy(BlackboardObserver, ThreadingPolicy, Class...)} instead
+     * Threading policy that runs notifications in a bounded thread pool,
+     * but never more than one at the time for each observer, and in order
      */
-    @Deprecated
-    @SuppressWarnings("unchecked")
-    public void registerThreadingPolicy(final BlackboardObserver observer, final Class<? extends BlackboardMessage> messageType, final ThreadingPolicy policy)
+    public static class SerialThreadingPolicy implements ExecutingThreadingPolicy
     {
-        registerThreadingPolicy(observer, policy, messageType);
+        /**
+         * Constructor
+         * 
+         * @param  threads  The policy used to create the threads in the pool, this
+         *                  decides their daemon status and priority
+         * @param  size     The maximum number of threads in the pool
+         */
+        public SerialThreadingPolicy(final ThreadingPolicy threads, final int size)
+        {
+            this.pool = new PooledThreadingPolicy(threads, size);
+        }
+        
+        
+        
+        /**
+         * The pool that runs the observers' queues
+         */
+        private final PooledThreadingPolicy pool;
+        
+        /**
+         * Notification queue for each observer
+         */
+        private final WeakHashMap<BlackboardObserver, ArrayDeque<Runnable>> queues = new WeakHashMap<>();
+        
+        /**
+         * Observers whose queue is being run
+         */
+        private final Set<BlackboardObserver> running = Collections.newSetFromMap(new WeakHashMap<BlackboardObserver, Boolean>());
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread createThread(final Runnable runnable)
+        {   return this.pool.createThread(runnable);
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void execute(final BlackboardObserver observer, final Runnable runnable)
+        {
+            synchronized (this.queues)
+            {   ArrayDeque<Runnable> queue = this.queues.get(observer);
+                if (queue == null)
+                    this.queues.put(observer, queue = new ArrayDeque<Runnable>());
+                queue.offerLast(runnable);
+                if (this.running.add(observer) == false)
+                    return;
+            }
+            
+            this.pool.execute(observer, new Runnable()
+                    {   /**
+                         * {@inheritDoc}
+                         */
+                        @Override
+                        public void run()
+                        {   for (;;)
+                            {   final Runnable next;
+                                synchronized (SerialThreadingPolicy.this.queues)
+                                {   if ((next = SerialThreadingPolicy.this.queues.get(observer).pollFirst()) == null)
+                                    {   SerialThreadingPolicy.this.running.remove(observer);
+                                        return;
+                                }   }
+                                try
+                                {   next.run();
+                                }
+                                catch (final Throwable err)
+                                {   err.printStackTrace(System.err);
+                    }   }   }   });
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getQueueDepth(final BlackboardObserver observer)
+        {
+            synchronized (this.queues)
+            {   final ArrayDeque<Runnable> queue = this.queues.get(observer);
+                return queue == null ? 0 : queue.size();
+            }
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getThreadsCreated()
+        {   return this.pool.getThreadsCreated();
+        }
+        
     }
     
     
+    
     /**
-     * Registers a threading policy for an observer and some message types.<br/>
-     * If a threading policy is registrered for an observer it will only receive message with a registrered threading policy.
-     * 
-     * @param  observer      The observer
-     * @param  policy        The threading policy
-     * @param  messageTypes  The message types, must be {@link Class}<code>&lt;? extends </code>{@link BlackboardMessage}<code>&gt;</code>
+     * <p>Threading policy that gives each observer a bounded mailbox drained by its own worker thread</p>
+     * <p>
+     *   Notifications are put in the mailboxes in priority order, and each observer
+     *   handles its notifications in the order they were broadcasted, but a slow
+     *   observer does not hold up the broadcaster or any other observer.
+     * </p>
      */
-    @SuppressWarnings("unchecked")
-    public void registerThreadingPolicy(final BlackboardObserver observer, final ThreadingPolicy policy, final Class<? extends BlackboardMessage>... messageTypes)
+    public static class MailboxThreadingPolicy implements ExecutingThreadingPolicy
     {
-        synchronized (this.monitor)
+        /**
+         * What to do when a mailbox is full
+         */
+        public static enum Overflow
         {
-            HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy> map = this.observationThreading.get(observer);
-            if (map == null)
-            {
-                map = new HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy>();
-                this.observationThreading.put(observer, map);
-            }
-            for (final Class<? extends BlackboardMessage> messageType : messageTypes)
-                map.put(messageType, policy);
+            /** * Wait until there is room in the mailbox                  */ BLOCK,
+            /** * Discard the new notification                             */ DROP_NEWEST,
+            /** * Discard the oldest notification that is still unhandled */ DROP_OLDEST;
         }
-    }
-    
-    
+        
+        
+        
+        /**
+         * The number of milliseconds an idle worker thread is kept alive
+         */
+        public static final int KEEP_ALIVE = 60_000;
+        
+        
+        
+        /**
+         * Constructor
+         * 
+         * @param  threads   The policy used to create the worker threads, this
+         *                   decides their daemon status and priority
+         * @param  capacity  The maximum number of unhandled notifications per observer
+         * @param  overflow  What to do when a mailbox is full, note that {@link Overflow#BLOCK}
+         *                   deadlocks if an observer fills its own mailbox
+         */
+        public MailboxThreadingPolicy(final ThreadingPolicy threads, final int capacity, final Overflow overflow)
+        {
+            assert threads != null : "Invalid thread policy: null";
+            assert capacity > 0 : "Invalid mailbox capacity: " + capacity;
+            assert overflow != null : "Invalid overflow policy: null";
+            
+            this.threads = threads;
+            this.capacity = capacity;
+            this.overflow = overflow;
+        }
+        
+        
+        
+        /**
+         * The policy used to create the worker threads
+         */
+        private final ThreadingPolicy threads;
+        
+        /**
+         * The maximum number of unhandled notifications per observer
+         */
+        private final int capacity;
+        
+        /**
+         * What to do when a mailbox is full
+         */
+        private final Overflow overflow;
+        
+        /**
+         * The observers' mailboxes
+         */
+        private final WeakHashMap<BlackboardObserver, Mailbox> mailboxes = new WeakHashMap<>();
+        
+        /**
+         * The number of worker threads that has been created
+         */
+        private final AtomicLong threadsCreated = new AtomicLong();
+        
+        
+        
+        /**
+         * Bounded notification queue for an observer
+         */
+        private final class Mailbox implements Runnable
+        {
+            //Has default constructor
+            
+            
+            
+            /**
+             * Unhandled notifications
+             */
+            final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+            
+            /**
+             * Whether a worker thread is draining the mailbox
+             */
+            boolean running = false;
+            
+            /**
+             * The highest number of unhandled notifications there has been
+             */
+            int maxDepth = 0;
+            
+            /**
+             * The number of discarded notifications
+             */
+            long dropped = 0;
+            
+            
+            
+            /**
+             * Adds a notification to the mailbox, and starts a worker if there is none
+             * 
+             * @param  runnable  The notification
+             */
+            synchronized void offer(final Runnable runnable)
+            {
+                while (this.queue.size() >= MailboxThreadingPolicy.this.capacity)
+                    switch (MailboxThreadingPolicy.this.overflow)
+                    {
+                        case DROP_NEWEST:
+                            this.dropped++;
+                            return;
+                        
+                        case DROP_OLDEST:
+                            this.queue.pollFirst();
+                            this.dropped++;
+                            break;
+                        
+                        default:
+                            try
+                            {   this.wait();
+                            }
+                            catch (final InterruptedException err)
+                            {   this.dropped++;
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            break;
+                    }
+                
+                this.queue.offerLast(runnable);
+                if (this.maxDepth < this.queue.size())
+                    this.maxDepth = this.queue.size();
+                this.notifyAll();
+                
+                if (this.running == false)
+                {   this.running = true;
+                    MailboxThreadingPolicy.this.threadsCreated.incrementAndGet();
+                    MailboxThreadingPolicy.this.threads.createThread(this).start();
+                }
+            }
+            
+            
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void run()
+            {
+                for (;;)
+                {
+                    final Runnable next;
+                    synchronized (this)
+                    {   if (this.queue.isEmpty())
+                            try
+                            {   this.wait(KEEP_ALIVE);
+                            }
+                            catch (final InterruptedException err)
+                            {   //Exit if still empty
+                            }
+                        if ((next = this.queue.pollFirst()) == null)
+                        {   this.running = false;
+                            return;
+                        }
+                        this.notifyAll();
+                    }
+                    try
+                    {   next.run();
+                    }
+                    catch (final Throwable err)
+                    {   err.printStackTrace(System.err);
+                    }
+                }
+            }
+            
+        }
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread createThread(final Runnable runnable)
+        {   return this.threads.createThread(runnable);
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void execute(final BlackboardObserver observer, final Runnable runnable)
+        {
+            Mailbox mailbox;
+            synchronized (this.mailboxes)
+            {   if ((mailbox = this.mailboxes.get(observer)) == null)
+                    this.mailboxes.put(observer, mailbox = new Mailbox());
+            }
+            mailbox.offer(runnable);
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getQueueDepth(final BlackboardObserver observer)
+        {
+            final Mailbox mailbox;
+            synchronized (this.mailboxes)
+            {   mailbox = this.mailboxes.get(observer);
+            }
+            if (mailbox == null)
+                return 0;
+            synchronized (mailbox)
+            {   return mailbox.queue.size();
+            }
+        }
+        
+        
+        /**
+         * Gets the highest number of unhandled notifications there has been for an observer
+         * 
+         * @param   observer  The observer
+         * @return            The highest number of unhandled notifications
+         */
+        public int getMaxQueueDepth(final BlackboardObserver observer)
+        {
+            final Mailbox mailbox;
+            synchronized (this.mailboxes)
+            {   mailbox = this.mailboxes.get(observer);
+            }
+            if (mailbox == null)
+                return 0;
+            synchronized (mailbox)
+            {   return mailbox.maxDepth;
+            }
+        }
+        
+        
+        /**
+         * Gets the number of notifications that has been discarded for an observer
+         * 
+         * @param   observer  The observer
+         * @return            The number of discarded notifications
+         */
+        public long getDropped(final BlackboardObserver observer)
+        {
+            final Mailbox mailbox;
+            synchronized (this.mailboxes)
+            {   mailbox = this.mailboxes.get(observer);
+            }
+            if (mailbox == null)
+                return 0;
+            synchronized (mailbox)
+            {   return mailbox.dropped;
+            }
+        }
+        
+        
+        /**
+         * Gets the observers that has a mailbox
+         * 
+         * @return  The observers that has a mailbox
+         */
+        public BlackboardObserver[] getObservers()
+        {
+            synchronized (this.mailboxes)
+            {   return this.mailboxes.keySet().toArray(new BlackboardObserver[0]);
+            }
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getThreadsCreated()
+        {   return this.threadsCreated.get();
+        }
+        
+    }
+    
+    
+    
+    /**
+     * Entry in a dispatch table
+     */
+    private static final class Delivery implements Comparable<Delivery>
+    {
+        /**
+         * Constructor
+         * 
+         * @param  observer  The observer
+         * @param  policy    The threading policy, {@code null} to notify in the broadcasting thread
+         * @param  priority  The priority, lower is notified earlier
+         * @param  latency   The histogram of the observer's handling times
+         */
+        public Delivery(final BlackboardObserver observer, final ThreadingPolicy policy, final int priority, final LatencyHistogram latency)
+        {
+            this.observer = observer;
+            this.policy = policy;
+            this.priority = priority;
+            this.latency = latency;
+        }
+        
+        
+        
+        /**
+         * The observer
+         */
+        public final BlackboardObserver observer;
+        
+        /**
+         * The threading policy, {@code null} to notify in the broadcasting thread
+         */
+        public final ThreadingPolicy policy;
+        
+        /**
+         * The priority, lower is notified earlier
+         */
+        public final int priority;
+        
+        /**
+         * The histogram of the observer's handling times
+         */
+        public final LatencyHistogram latency;
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(final Delivery other)
+        {   return this.priority < other.priority ? -1 : this.priority == other.priority ? 0 : 1;
+        }
+        
+    }
+    
+    
+    
+    /**
+     * Registers a message type-wide observer
+     *
+     * @param  observer  The observer to register
+     */
+    public void registerObserver(final BlackboardObserver observer)
+    {
+        synchronized (this.monitor)
+        {
+            Log.debug("BLACKBOARD.registerObserver(%s)", observer);
+            this.observers.add(observer);
+            this.dispatchTables.clear();
+            this.unbatchTables.clear();
+            this.broadcastMessage(new ObserverRegisterMessage(observer, true));
+        }
+    }
+    
+    
+    /**
+     * Registers an observer that is only notified of some message types, and their subtypes
+     *
+     * @param  observer      The observer to register
+     * @param  messageTypes  The message types, must be {@link Class}<code>&lt;? extends </code>{@link BlackboardMessage}<code>&gt;</code>
+     */
+    @SuppressWarnings("unchecked")
+    public void registerObserver(final BlackboardObserver observer, final Class<? extends BlackboardMessage>... messageTypes)
+    {
+        synchronized (this.monitor)
+        {
+            this.observationTypes.put(observer, messageTypes.clone());
+            registerObserver(observer);
+        }
+    }
+    
+    
+    /**
+     * Subscribes to a message type, and its subtypes
+     * 
+     * @param   <M>          The message type
+     * @param   messageType  The message type
+     * @param   subscriber   The subscriber
+     * @return               The observer that notifies the subscriber, use it to unsubscribe
+     *                       or to register a priority or threading policy
+     */
+    @SuppressWarnings("unchecked")
+    public <M extends BlackboardMessage> BlackboardObserver subscribe(final Class<M> messageType, final Subscriber<? super M> subscriber)
+    {
+        final BlackboardObserver observer = new BlackboardObserver()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public void messageBroadcasted(final BlackboardMessage message)
+                    {   subscriber.messageBroadcasted(messageType.cast(message));
+                    }
+                    
+                    
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public String toString()
+                    {   return subscriber.toString();
+                    }
+                };
+        
+        registerObserver(observer, messageType);
+        return observer;
+    }
+    
+    
+    /**
+     * Unregisters a message type-wide observer
+     *
+     * @param  observer  The observer to unregister
+     */
+    public void unregisterObserver(final BlackboardObserver observer)
+    {
+        synchronized (this.monitor)
+        {
+            Log.debug("BLACKBOARD.unregisterObserver(%s)", observer);
+            this.observers.remove(observer);
+            this.observationThreading.remove(observer);
+            this.observationPriorities.remove(observer);
+            this.observationTypes.remove(observer);
+            this.statistics.remove(observer);
+            this.dispatchTables.clear();
+            this.unbatchTables.clear();
+            this.broadcastMessage(new ObserverRegisterMessage(observer, false));
+        }
+    }
+    
+    
+    /**
+     * Registers a threading policy for an observer and a message type.<br/>
+     * If a threading policy is registrered for an observer it will only receive message with a registrered threading policy.
+     * 
+     * @param  observer     The observer
+     * @param  messageType  The message type
+     * @param  policy       The threading policy
+     * 
+     * @deprecated  Use overloading {@link #registerThreadingPolicy(BlackboardObserver, ThreadingPolicy, Class...)} instead
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public void registerThreadingPolicy(final BlackboardObserver observer, final Class<? extends BlackboardMessage> messageType, final ThreadingPolicy policy)
+    {
+        registerThreadingPolicy(observer, policy, messageType);
+    }
+    
+    
+    /**
+     * Registers a threading policy for an observer and some message types.<br/>
+     * If a threading policy is registrered for an observer it will only receive message with a registrered threading policy.
+     * 
+     * @param  observer      The observer
+     * @param  policy        The threading policy
+     * @param  messageTypes  The message types, must be {@link Class}<code>&lt;? extends </code>{@link BlackboardMessage}<code>&gt;</code>
+     */
+    @SuppressWarnings("unchecked")
+    public void registerThreadingPolicy(final BlackboardObserver observer, final ThreadingPolicy policy, final Class<? extends BlackboardMessage>... messageTypes)
+    {
+        synchronized (this.monitor)
+        {
+            HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy> map = this.observationThreading.get(observer);
+            if (map == null)
+            {
+                map = new HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy>();
+                this.observationThreading.put(observer, map);
+            }
+            for (final Class<? extends BlackboardMessage> messageType : messageTypes)
+                map.put(messageType, policy);
+            this.dispatchTables.clear();
+            this.unbatchTables.clear();
+        }
+    }
+    
+    
     /**
      * Registers a priority for an observer and some message types
      * 
@@ -366,77 +1167,292 @@ public class Blackboard
             }
             for (final Class<? extends BlackboardMessage> messageType : messageTypes)
                 map.put(messageType, Integer.valueOf(nice));
+            this.dispatchTables.clear();
+            this.unbatchTables.clear();
         }
     }
     
     
     /**
-     * Broadcasts a message to all observers
+     * <p>Sets the threading policy for observers that do not have registered threading policies</p>
+     * <p>
+     *   Use a {@link MailboxThreadingPolicy} to make the blackboard asynchronous,
+     *   so that a slow observer cannot hold up broadcasters or other observers,
+     *   and so that broadcasting from an observer does not reenter observers.
+     * </p>
      * 
-     * @param  message  The message to broadcast
+     * @param  policy  The threading policy, {@code null} (default) to notify
+     *                 those observers in the broadcasting thread
      */
-    public void broadcastMessage(final BlackboardMessage message)
+    public void setDefaultThreadingPolicy(final ThreadingPolicy policy)
     {
         synchronized (this.monitor)
         {
-            System.err.println("BLACKBOARD.broadcastMessage(" + message.toString() + ")");
-            final PriorityQueue<Integer> priorities = new PriorityQueue<Integer>();
-            final HashMap<Integer, Vector<BlackboardObserver>> prioObservers = new HashMap<>();
-            final HashSet<Integer> regdPrioes = new HashSet<Integer>();
-            
+            this.defaultPolicy = policy;
+            this.dispatchTables.clear();
+            this.unbatchTables.clear();
+        }
+    }
+    
+    
+    /**
+     * Makes the blackboard asynchronous, each observer without registered
+     * threading policies gets a bounded mailbox drained by its own daemon thread
+     * 
+     * @param   capacity  The maximum number of unhandled notifications per observer
+     * @param   overflow  What to do when a mailbox is full
+     * @return            The threading policy, use it to read the observers' queue depths
+     */
+    public MailboxThreadingPolicy setAsynchronous(final int capacity, final MailboxThreadingPolicy.Overflow overflow)
+    {
+        final MailboxThreadingPolicy policy = new MailboxThreadingPolicy(DAEMON_THREADING, capacity, overflow);
+        setDefaultThreadingPolicy(policy);
+        return policy;
+    }
+    
+    
+    /**
+     * Gets the blackboard's broadcast and notification statistics
+     * 
+     * @return  The blackboard's statistics
+     */
+    public BlackboardStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+    
+    
+    /**
+     * Gets the number of waiting notifications for each observer with an executing threading policy
+     * 
+     * @return  The number of waiting notifications per observer, in registration order
+     */
+    LinkedHashMap<BlackboardObserver, Integer> getQueueDepths()
+    {
+        final LinkedHashMap<BlackboardObserver, Integer> depths = new LinkedHashMap<>();
+        synchronized (this.monitor)
+        {
             for (final BlackboardObserver observer : this.observers)
             {
-                final HashMap<Class<? extends BlackboardMessage>, Integer> map = this.observationPriorities.get(observer);
-                Integer priority = Integer.valueOf(0);
-                if (map != null)
-                {
-                    Integer tmp;
-                    if      ((tmp = map.get(message.getClass())) != null)  priority = tmp;
-                    else if ((tmp = map.get(null)) != null)                priority = tmp;
-                }
-                if (regdPrioes.contains(priority) == false)
-                {
-                    priorities.add(priority);
-                    regdPrioes.add(priority);
+                int depth = 0;
+                boolean executing = false;
+                for (final ExecutingThreadingPolicy policy : getExecutingPolicies(observer))
+                {   depth += policy.getQueueDepth(observer);
+                    executing = true;
                 }
-                Vector<BlackboardObserver> vector = prioObservers.get(priority);
-                if (vector == null)
-                    prioObservers.put(priority, vector = new Vector<BlackboardObserver>());
-                vector.add(observer);
+                if (executing)
+                    depths.put(observer, Integer.valueOf(depth));
+            }
+        }
+        return depths;
+    }
+    
+    
+    /**
+     * Gets the number of threads that has been created for notifications, including
+     * threads created by executing threading policies in use by this blackboard
+     * 
+     * @return  The number of threads that has been created
+     */
+    long getThreadsCreated()
+    {
+        long count = this.threadsCreated.get();
+        final Set<ExecutingThreadingPolicy> policies = Collections.newSetFromMap(new IdentityHashMap<ExecutingThreadingPolicy, Boolean>());
+        synchronized (this.monitor)
+        {   for (final BlackboardObserver observer : this.observers)
+                policies.addAll(getExecutingPolicies(observer));
+        }
+        for (final ExecutingThreadingPolicy policy : policies)
+            count += policy.getThreadsCreated();
+        return count;
+    }
+    
+    
+    /**
+     * Gets the executing threading policies an observer is notified with,
+     * must be invoked while holding {@link #monitor}
+     * 
+     * @param   observer  The observer
+     * @return            The observer's executing threading policies
+     */
+    private Set<ExecutingThreadingPolicy> getExecutingPolicies(final BlackboardObserver observer)
+    {
+        final Set<ExecutingThreadingPolicy> policies = Collections.newSetFromMap(new IdentityHashMap<ExecutingThreadingPolicy, Boolean>());
+        final HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy> threading = this.observationThreading.get(observer);
+        if (threading == null)
+        {   if (this.defaultPolicy instanceof ExecutingThreadingPolicy)
+                policies.add((ExecutingThreadingPolicy)(this.defaultPolicy));
+        }
+        else
+            for (final ThreadingPolicy policy : threading.values())
+                if (policy instanceof ExecutingThreadingPolicy)
+                    policies.add((ExecutingThreadingPolicy)policy);
+        return policies;
+    }
+    
+    
+    /**
+     * Gets the dispatch table for a message type, and builds it if missing
+     * 
+     * @param   messageType  The message type
+     * @return               The observers to notify, in order, with their threading policies
+     */
+    private Delivery[] getDispatchTable(final Class<? extends BlackboardMessage> messageType)
+    {
+        Delivery[] table;
+        if ((table = this.dispatchTables.get(messageType)) == null)
+            synchronized (this.monitor)
+            {   if ((table = this.dispatchTables.get(messageType)) == null)
+                    this.dispatchTables.put(messageType, table = buildDispatchTable(messageType));
+            }
+        return table;
+    }
+    
+    
+    /**
+     * Gets the table for notifying observers of the individual messages in a batch, and builds it if missing
+     * 
+     * @param   batch  The batch
+     * @return         The observers to notify of each message, in order, with their threading policies
+     */
+    private Delivery[] getUnbatchTable(final BatchMessage batch)
+    {
+        final Class<? extends BlackboardMessage> batchType = batch.getClass();
+        Delivery[] table;
+        if ((table = this.unbatchTables.get(batchType)) == null)
+            synchronized (this.monitor)
+            {   if ((table = this.unbatchTables.get(batchType)) == null)
+                {   final HashSet<BlackboardObserver> batched = new HashSet<>();
+                    for (final Delivery delivery : getDispatchTable(batchType))
+                        batched.add(delivery.observer);
+                    final ArrayList<Delivery> deliveries = new ArrayList<>();
+                    for (final Delivery delivery : getDispatchTable(batch.getMessageType()))
+                        if (batched.contains(delivery.observer) == false)
+                            deliveries.add(delivery);
+                    this.unbatchTables.put(batchType, table = deliveries.toArray(new Delivery[deliveries.size()]));
+            }   }
+        return table;
+    }
+    
+    
+    /**
+     * Builds the dispatch table for a message type, must be invoked while holding {@link #monitor}
+     * 
+     * @param   messageType  The message type
+     * @return               The observers to notify, in order, with their threading policies
+     */
+    private Delivery[] buildDispatchTable(final Class<? extends BlackboardMessage> messageType)
+    {
+        final ArrayList<Delivery> deliveries = new ArrayList<>();
+        final boolean batch = BatchMessage.class.isAssignableFrom(messageType);
+        
+        for (final BlackboardObserver observer : this.observers)
+        {
+            final Class<?>[] types = this.observationTypes.get(observer);
+            if ((types == null) && batch)
+                continue;
+            if (types != null)
+            {   boolean interested = false;
+                for (final Class<?> type : types)
+                    if (type.isAssignableFrom(messageType) && ((batch == false) || BatchMessage.class.isAssignableFrom(type)))
+                    {   interested = true; /* batches only go to observers that asked for batches */
+                        break;
+                    }
+                if (interested == false)
+                    continue;
             }
             
-            for (Integer priority; (priority = priorities.poll()) != null;) // iterator messes up order
-                for (final BlackboardObserver observer : prioObservers.get(priority))
-                {
-                    System.err.println("BLACKBOARD.broadcastMessage() ==> " + observer.toString());
-                    final ThreadingPolicy policy;
-                    final Runnable runnable = new Runnable()
-                            {
-                                /**
-                                 * {@inheritDoc}
-                                 */
-                                @Override
-                                public void run()
-                                {   observer.messageBroadcasted(message);
-                                }
-                            };
-                
-                    final HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy> map = this.observationThreading.get(observer);
-                
-                    if (map == null)
-                        policy = null;
-                    else if (map.containsKey(message.getClass()))
-                        policy = map.get(message.getClass());
-                    else
-                        continue;
-                
-                    if (policy == null)  runnable.run();
-                    else                 (new Thread(runnable)).start();
-                }
+            final HashMap<Class<? extends BlackboardMessage>, ThreadingPolicy> threading = this.observationThreading.get(observer);
+            final ThreadingPolicy policy;
+            
+            if (threading == null)
+                policy = this.defaultPolicy;
+            else if (threading.containsKey(messageType))
+                policy = threading.get(messageType);
+            else
+                continue;
+            
+            final HashMap<Class<? extends BlackboardMessage>, Integer> map = this.observationPriorities.get(observer);
+            Integer priority = Integer.valueOf(0);
+            if (map != null)
+            {
+                Integer tmp;
+                if      ((tmp = map.get(messageType)) != null)  priority = tmp;
+                else if ((tmp = map.get(null)) != null)         priority = tmp;
+            }
             
-            System.err.println("BLACKBOARD.broadcastMessage() <<<<");
+            deliveries.add(new Delivery(observer, policy, priority.intValue(), this.statistics.getLatency(observer)));
+        }
+        
+        Collections.sort(deliveries); // stable, so registration order is kept within a priority
+        return deliveries.toArray(new Delivery[deliveries.size()]);
+    }
+    
+    
+    /**
+     * Broadcasts a message to all observers
+     * 
+     * @param  message  The message to broadcast
+     */
+    public void broadcastMessage(final BlackboardMessage message)
+    {
+        Log.debug("BLACKBOARD.broadcastMessage(%s)", message);
+        this.statistics.broadcasted(message.getClass());
+        
+        deliver(message, getDispatchTable(message.getClass()));
+        
+        if (message instanceof BatchMessage)
+        {   final Delivery[] table = getUnbatchTable((BatchMessage)message);
+            if (table.length > 0)
+                for (final BlackboardMessage element : ((BatchMessage)message).getMessages())
+                    deliver(element, table);
+        }
+        
+        Log.debug("BLACKBOARD.broadcastMessage() <<<<");
+    }
+    
+    
+    /**
+     * Notifies observers of a message
+     * 
+     * @param  message  The message
+     * @param  table    The observers to notify, in order, with their threading policies
+     */
+    private void deliver(final BlackboardMessage message, final Delivery[] table)
+    {
+        for (final Delivery delivery : table)
+        {
+            final BlackboardObserver observer = delivery.observer;
+            final LatencyHistogram latency = delivery.latency;
+            Log.debug("BLACKBOARD.broadcastMessage() ==> %s", observer);
+            
+            if (delivery.policy == null)
+            {   final long start = System.nanoTime();
+                observer.messageBroadcasted(message);
+                latency.record(System.nanoTime() - start);
+                continue;
+            }
+            
+            final Runnable runnable = new Runnable()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        @Override
+                        public void run()
+                        {   final long start = System.nanoTime();
+                            observer.messageBroadcasted(message);
+                            latency.record(System.nanoTime() - start);
+                        }
+                    };
+            
+            if (delivery.policy instanceof ExecutingThreadingPolicy)
+                ((ExecutingThreadingPolicy)(delivery.policy)).execute(observer, runnable);
+            else
+            {   this.threadsCreated.incrementAndGet();
+                delivery.policy.createThread(runnable).start();
+            }
         }
     }
     
 }
-
@@ -0,0 +1,244 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis;
+
+import org.nongnu.paradis.util.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.lang.management.*;
+import javax.management.*;
+
+
+/**
+ * Broadcast and notification statistics for a {@link Blackboard}
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class BlackboardStatistics implements BlackboardStatisticsMBean
+{
+    /**
+     * Constructor
+     * 
+     * @param  blackboard  The blackboard
+     * @param  name        The name of the blackboard, {@code null} is default
+     */
+    BlackboardStatistics(final Blackboard blackboard, final Object name)
+    {
+        this.blackboard = blackboard;
+        this.name = name;
+    }
+    
+    
+    
+    /**
+     * The blackboard
+     */
+    private final Blackboard blackboard;
+    
+    /**
+     * The name of the blackboard
+     */
+    private final Object name;
+    
+    /**
+     * The number of broadcasted messages per message class
+     */
+    private final ConcurrentHashMap<Class<?>, AtomicLong> broadcasts = new ConcurrentHashMap<>();
+    
+    /**
+     * The handling times, in nanoseconds, for each observer
+     */
+    private final ConcurrentHashMap<Blackboard.BlackboardObserver, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    
+    
+    
+    /**
+     * Registers the statistics as a management bean on the platform's bean server
+     */
+    void register()
+    {
+        try
+        {   final ObjectName objectName = new ObjectName("org.nongnu.paradis:type=Blackboard,name="
+                                                         + ObjectName.quote(this.name == null ? "default" : this.name.toString()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        }
+        catch (final Throwable err)
+        {   Log.warning("Could not register blackboard statistics bean: %s", err);
+        }
+    }
+    
+    
+    /**
+     * Counts a broadcasted message
+     * 
+     * @param  messageClass  The class of the message
+     */
+    void broadcasted(final Class<?> messageClass)
+    {
+        AtomicLong counter;
+        if ((counter = this.broadcasts.get(messageClass)) == null)
+        {   final AtomicLong created = new AtomicLong();
+            if ((counter = this.broadcasts.putIfAbsent(messageClass, created)) == null)
+                counter = created;
+        }
+        counter.incrementAndGet();
+    }
+    
+    
+    /**
+     * Gets, and if missing, creates, the handling time histogram for an observer
+     * 
+     * @param   observer  The observer
+     * @return            The observer's handling time histogram
+     */
+    LatencyHistogram getLatency(final Blackboard.BlackboardObserver observer)
+    {
+        LatencyHistogram latency;
+        if ((latency = this.latencies.get(observer)) == null)
+        {   final LatencyHistogram created = new LatencyHistogram();
+            if ((latency = this.latencies.putIfAbsent(observer, created)) == null)
+                latency = created;
+        }
+        return latency;
+    }
+    
+    
+    /**
+     * Forgets the statistics for an observer
+     * 
+     * @param  observer  The observer
+     */
+    void remove(final Blackboard.BlackboardObserver observer)
+    {
+        this.latencies.remove(observer);
+    }
+    
+    
+    /**
+     * Gets the number of broadcasted messages of a message class, excluding subclasses
+     * 
+     * @param   messageClass  The message class
+     * @return                The number of broadcasted messages of the class
+     */
+    public long getBroadcastCount(final Class<? extends Blackboard.BlackboardMessage> messageClass)
+    {
+        final AtomicLong counter = this.broadcasts.get(messageClass);
+        return counter == null ? 0 : counter.get();
+    }
+    
+    
+    /**
+     * Gets the handling times, in nanoseconds, for an observer
+     * 
+     * @param   observer  The observer
+     * @return            The observer's handling times, {@code null} if it has no statistics
+     */
+    public LatencyHistogram getObserverLatency(final Blackboard.BlackboardObserver observer)
+    {
+        return this.latencies.get(observer);
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBroadcastCount()
+    {
+        long count = 0;
+        for (final AtomicLong counter : this.broadcasts.values())
+            count += counter.get();
+        return count;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] getBroadcastCounts()
+    {
+        final ArrayList<String> lines = new ArrayList<>();
+        for (final Map.Entry<Class<?>, AtomicLong> entry : this.broadcasts.entrySet())
+            lines.add(entry.getKey().getName() + ": " + entry.getValue().get());
+        Collections.sort(lines);
+        return lines.toArray(new String[lines.size()]);
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] getObserverLatencies()
+    {
+        final ArrayList<String> lines = new ArrayList<>();
+        for (final Map.Entry<Blackboard.BlackboardObserver, LatencyHistogram> entry : this.latencies.entrySet())
+            lines.add(entry.getKey() + ": " + entry.getValue());
+        return lines.toArray(new String[lines.size()]);
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] getQueueDepths()
+    {
+        final ArrayList<String> lines = new ArrayList<>();
+        for (final Map.Entry<Blackboard.BlackboardObserver, Integer> entry : this.blackboard.getQueueDepths().entrySet())
+            lines.add(entry.getKey() + ": " + entry.getValue());
+        return lines.toArray(new String[lines.size()]);
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getThreadsCreated()
+    {
+        return this.blackboard.getThreadsCreated();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getReport()
+    {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("Blackboard: ").append(this.name == null ? "default" : this.name.toString()).append('\n');
+        buf.append("Broadcasts: ").append(getBroadcastCount()).append('\n');
+        for (final String line : getBroadcastCounts())
+            buf.append("    ").append(line).append('\n');
+        buf.append("Handling times (ns):\n");
+        for (final String line : getObserverLatencies())
+            buf.append("    ").append(line).append('\n');
+        buf.append("Queue depths:\n");
+        for (final String line : getQueueDepths())
+            buf.append("    ").append(line).append('\n');
+        buf.append("Threads created: ").append(getThreadsCreated()).append('\n');
+        return buf.toString();
+    }
+    
+}
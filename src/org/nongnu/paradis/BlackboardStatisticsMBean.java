@@ -0,0 +1,71 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis;
+
+
+/**
+ * Management interface for {@link BlackboardStatistics}, each
+ * blackboard is registered as {@code org.nongnu.paradis:type=Blackboard,name=<name>}
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public interface BlackboardStatisticsMBean
+{
+    /**
+     * Gets the number of broadcasted messages
+     * 
+     * @return  The number of broadcasted messages
+     */
+    public long getBroadcastCount();
+    
+    /**
+     * Gets the number of broadcasted messages per message class
+     * 
+     * @return  Lines on the format {@code <class>: <count>}
+     */
+    public String[] getBroadcastCounts();
+    
+    /**
+     * Gets the handling times, in nanoseconds, for each observer
+     * 
+     * @return  Lines on the format {@code <observer>: n=…, mean=…, p50=…, p90=…, p99=…, max=…}
+     */
+    public String[] getObserverLatencies();
+    
+    /**
+     * Gets the number of waiting notifications for each observer with an executing threading policy
+     * 
+     * @return  Lines on the format {@code <observer>: <depth>}
+     */
+    public String[] getQueueDepths();
+    
+    /**
+     * Gets the number of threads that has been created for notifications
+     * 
+     * @return  The number of threads that has been created
+     */
+    public long getThreadsCreated();
+    
+    /**
+     * Gets all statistics as a human readable report
+     * 
+     * @return  The report
+     */
+    public String getReport();
+    
+}
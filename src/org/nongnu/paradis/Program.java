@@ -79,7 +79,7 @@ public class Program
                     continue;
                 
                 final ServerInvoke message = new ServerInvoke(line, sc);
-                Blackboard.getInstance(null).broadcastMessage(message);
+                Blackboard.getDefault().broadcastMessage(message);
                 if (message.consumed == false)
                     System.out.println("Unrecognised command.");
             }
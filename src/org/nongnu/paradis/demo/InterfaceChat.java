@@ -84,20 +84,17 @@ public class InterfaceChat
         {
             final Interface intrf = new Interface(port, localUser);
             
-            Blackboard.getInstance(null).registerObserver(new Blackboard.BlackboardObserver()
+            Blackboard.getDefault().subscribe(PacketReceived.class, new Blackboard.Subscriber<PacketReceived>()
                     {
                         /**
                          * {@inheritDoc}
                          */
                         @Override
-                        public void messageBroadcasted(final Blackboard.BlackboardMessage message)
+                        public void messageBroadcasted(final PacketReceived message)
                         {
-                            if (message instanceof PacketReceived)
-                            {
-                                final Packet packet = ((PacketReceived)message).packet;
-                                if (packet.messageType.equals("chat message"))
-                                    System.out.print(packet.message);
-                            }
+                            final Packet packet = message.packet;
+                            if (packet.messageType.equals("chat message"))
+                                System.out.print(packet.message);
                         }
                     });
             
@@ -110,7 +107,7 @@ public class InterfaceChat
                 else if (line.charAt(0) == '>')
                     connect(line.substring(1));
                 else
-                    Blackboard.getInstance(null).broadcastMessage(new SendPacket(factory.createBroadcast(line + '\n', "chat message")));
+                    Blackboard.getDefault().broadcastMessage(new SendPacket(factory.createBroadcast(line + '\n', "chat message")));
         }
     }
     
@@ -137,7 +134,7 @@ public class InterfaceChat
             remotePort = Integer.parseInt(remote.substring(1 + remote.lastIndexOf(":")));
         }
         
-        Blackboard.getInstance(null).broadcastMessage(new MakeConnection(remoteAddress, remotePort));
+        Blackboard.getDefault().broadcastMessage(new MakeConnection(remoteAddress, remotePort));
     }
     
 }
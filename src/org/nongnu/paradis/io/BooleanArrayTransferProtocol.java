@@ -25,7 +25,7 @@ import java.io.*;
  * 
  * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
  */
-class BooleanArrayTransferProtocol implements TransferProtocol<boolean[]>
+class BooleanArrayTransferProtocol implements SizedTransferProtocol<boolean[]>
 {
     //Has default constructor
     
@@ -107,5 +107,14 @@ class BooleanArrayTransferProtocol implements TransferProtocol<boolean[]>
         }
     }
     
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(final boolean[] data)
+    {
+        return TransferLengths.ofLen(data.length) + ((data.length + 7) >>> 3);
+    }
+    
 }
-
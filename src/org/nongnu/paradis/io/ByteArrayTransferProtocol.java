@@ -25,7 +25,7 @@ import java.io.*;
  * 
  * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
  */
-class ByteArrayTransferProtocol implements TransferProtocol<byte[]>
+class ByteArrayTransferProtocol implements SizedTransferProtocol<byte[]>
 {
     //Has default constructor
     
@@ -56,5 +56,14 @@ class ByteArrayTransferProtocol implements TransferProtocol<byte[]>
             stream.writeByte(data[i]);
     }
     
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(final byte[] data)
+    {
+        return TransferLengths.ofLen(data.length) + (data.length);
+    }
+    
 }
-
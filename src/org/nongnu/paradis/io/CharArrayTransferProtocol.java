@@ -25,7 +25,7 @@ import java.io.*;
  * 
  * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
  */
-class CharArrayTransferProtocol implements TransferProtocol<char[]>
+class CharArrayTransferProtocol implements SizedTransferProtocol<char[]>
 {
     //Has default constructor
     
@@ -56,5 +56,14 @@ class CharArrayTransferProtocol implements TransferProtocol<char[]>
             stream.writeShort((short)(data[i]));
     }
     
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(final char[] data)
+    {
+        return TransferLengths.ofLen(data.length) + (data.length << 1);
+    }
+    
 }
-
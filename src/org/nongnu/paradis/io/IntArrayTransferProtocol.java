@@ -25,7 +25,7 @@ import java.io.*;
  * 
  * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
  */
-class IntArrayTransferProtocol implements TransferProtocol<int[]>
+class IntArrayTransferProtocol implements SizedTransferProtocol<int[]>
 {
     //Has default constructor
     
@@ -56,5 +56,14 @@ class IntArrayTransferProtocol implements TransferProtocol<int[]>
             stream.writeInt(data[i]);
     }
     
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(final int[] data)
+    {
+        return TransferLengths.ofLen(data.length) + (data.length << 2);
+    }
+    
 }
-
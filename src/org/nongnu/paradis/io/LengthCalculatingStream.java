@@ -44,6 +44,24 @@ class LengthCalculatingStream extends TransferOutputStream
     
     
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void write(final int b) throws IOException
+    {   this.length++;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException
+    {   this.length += len;
+    }
+    
+    
     /**
      * Writes a {@code boolean} to the stream
      * 
@@ -105,33 +123,7 @@ class LengthCalculatingStream extends TransferOutputStream
      */
     @Override
     public synchronized void writeWChar(final int data) throws IOException
-    {
-        if (data < 0x80)
-            this.length++;
-        else
-        {
-            int m = 0x100;
-            int d = data;
-            int ptr = 0;
-            int buf = 0;
-            for (;;)
-            {
-                m |= m >> 1;
-                buf = d & 63;
-                ptr++;
-                d >>>= 6;
-                if (d == 0)
-                {
-                    m >>= 1;
-                    if ((m & buf) != 0)
-                        ptr++;
-                    break;
-                }
-            }
-            
-            while (ptr > 0)
-                this.length++;
-        }
+    {   this.length += WChars.length(data);
     }
     
     
@@ -191,9 +183,7 @@ class LengthCalculatingStream extends TransferOutputStream
     @Override
     public synchronized void writeLenOf(final Object data) throws IOException
     {
-        final int cur = this.length;
-        writeObject(data);
-        writeLen(this.length - cur);
+        writeLen(TransferLengths.of(data));
     }
     
     
@@ -219,5 +209,24 @@ class LengthCalculatingStream extends TransferOutputStream
             TransferProtocolRegister.write(data, this);
     }
     
+    
+    /**
+     * Nothing is actually written, so there is nothing to flush
+     */
+    @Override
+    public void flush()
+    {
+        //Do nothing
+    }
+    
+    
+    /**
+     * Nothing is actually written, so there is nothing to close
+     */
+    @Override
+    public void close()
+    {
+        //Do nothing
+    }
+    
 }
-
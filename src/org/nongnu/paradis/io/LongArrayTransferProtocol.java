@@ -25,7 +25,7 @@ import java.io.*;
  * 
  * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
  */
-class LongArrayTransferProtocol implements TransferProtocol<long[]>
+class LongArrayTransferProtocol implements SizedTransferProtocol<long[]>
 {
     //Has default constructor
     
@@ -56,5 +56,14 @@ class LongArrayTransferProtocol implements TransferProtocol<long[]>
             stream.writeLong(data[i]);
     }
     
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(final long[] data)
+    {
+        return TransferLengths.ofLen(data.length) + (data.length << 3);
+    }
+    
 }
-
@@ -0,0 +1,267 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+import org.nongnu.paradis.*;
+
+import org.tukaani.xz.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+
+/**
+ * XZ compressing output stream that splits its input into fixed size blocks and compresses
+ * the blocks in parallel. Each block is written as a self-contained XZ stream, the output
+ * is a concatenation of streams, which is a valid XZ file, that can be decompressed with
+ * {@link XZInputStream} and randomly accessed with {@link SeekableXZInputStream}.
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class ParallelXZOutputStream extends OutputStream
+{
+    /**
+     * The default block size, in bytes, of uncompressed data
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 8 << 20;
+    
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  next     The next stream in the chain
+     * @param  options  Compression options, the dictionary is shrunk to the block size
+     */
+    public ParallelXZOutputStream(final OutputStream next, final LZMA2Options options)
+    {
+        this(next, options, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  next       The next stream in the chain
+     * @param  options    Compression options, the dictionary is shrunk to the block size
+     * @param  blockSize  The number of uncompressed bytes per block
+     * @param  threads    The number of blocks to compress concurrently
+     */
+    public ParallelXZOutputStream(final OutputStream next, final LZMA2Options options, final int blockSize, final int threads)
+    {
+        assert blockSize > 0;
+        
+        this.next = next;
+        this.options = (LZMA2Options)(options.clone());
+        if (this.options.getDictSize() > blockSize)
+            try
+            {   this.options.setDictSize(Math.max(blockSize, LZMA2Options.DICT_SIZE_MIN));
+            }
+            catch (final UnsupportedOptionsException err)
+            {   throw new Error("Impossible dictionary size: " + blockSize);
+            }
+        
+        this.buffer = new byte[blockSize];
+        this.threads = threads < 1 ? 1 : threads;
+        this.pool = Executors.newFixedThreadPool(this.threads, new ThreadFactory()
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public Thread newThread(final Runnable runnable)
+                    {   final Thread thread = new Thread(runnable);
+                        thread.setDaemon(true);
+                        return thread;
+                }   });
+    }
+    
+    
+    
+    /**
+     * The next stream in the chain
+     */
+    private final OutputStream next;
+    
+    /**
+     * Compression options
+     */
+    private final LZMA2Options options;
+    
+    /**
+     * The number of blocks to compress concurrently
+     */
+    private final int threads;
+    
+    /**
+     * The compressing threads
+     */
+    private final ExecutorService pool;
+    
+    /**
+     * Compressed blocks that have not been written, in output order
+     */
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    
+    /**
+     * The block currently being filled
+     */
+    private byte[] buffer;
+    
+    /**
+     * The number of bytes in {@link #buffer}
+     */
+    private int count = 0;
+    
+    /**
+     * The number of blocks that have been started
+     */
+    private long blocks = 0;
+    
+    /**
+     * Whether the stream has been closed
+     */
+    private boolean closed = false;
+    
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final int b) throws IOException
+    {
+        this.buffer[this.count++] = (byte)b;
+        if (this.count == this.buffer.length)
+            submit();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final byte[] data, final int offset, final int length) throws IOException
+    {
+        for (int off = offset, end = offset + length; off < end;)
+        {
+            final int n = Math.min(end - off, this.buffer.length - this.count);
+            System.arraycopy(data, off, this.buffer, this.count, n);
+            this.count += n;
+            off += n;
+            if (this.count == this.buffer.length)
+                submit();
+        }
+    }
+    
+    
+    /**
+     * Writes the blocks that have been compressed and flushes the next stream, the current
+     * block is not ended, so data written since the last full block is not flushed
+     * 
+     * @throws  IOException  On I/O error
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        while ((this.pending.isEmpty() == false) && this.pending.peekFirst().isDone())
+            drain();
+        this.next.flush();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.closed)
+            return;
+        this.closed = true;
+        try
+        {   if ((this.count > 0) || (this.blocks == 0))
+                submit();
+            while (this.pending.isEmpty() == false)
+                drain();
+        }
+        finally
+        {   this.pool.shutdownNow();
+            this.next.close();
+        }
+    }
+    
+    
+    /**
+     * Queues the current block for compression, and writes finished blocks if
+     * too many blocks are queued, so that memory usage is bounded
+     * 
+     * @throws  IOException  On I/O error
+     */
+    private void submit() throws IOException
+    {
+        final byte[] data = this.buffer;
+        final int length = this.count;
+        final LZMA2Options opts = this.options;
+        
+        this.pending.offerLast(this.pool.submit(new Callable<byte[]>()
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public byte[] call() throws IOException
+                    {   final ByteArrayOutputStream baos = new ByteArrayOutputStream((length >> 1) + 64);
+                        try (final XZOutputStream xz = new XZOutputStream(baos, opts))
+                        {   xz.write(data, 0, length);
+                        }
+                        return baos.toByteArray();
+                }   }));
+        
+        this.blocks++;
+        this.buffer = new byte[data.length];
+        this.count = 0;
+        
+        while (this.pending.size() > (this.threads << 1))
+            drain();
+    }
+    
+    
+    /**
+     * Waits for the oldest queued block to be compressed and writes it
+     * 
+     * @throws  IOException  On I/O error
+     */
+    private void drain() throws IOException
+    {
+        final Future<byte[]> block = this.pending.pollFirst();
+        try
+        {   this.next.write(block.get());
+        }
+        catch (final InterruptedException err)
+        {   throw new InterruptedIOException();
+        }
+        catch (final ExecutionException err)
+        {   final Throwable cause = err.getCause();
+            if (cause instanceof IOException)  throw (IOException)cause;
+            if (cause instanceof Error)        throw (Error)cause;
+            throw new IOException(cause);
+        }
+    }
+    
+}
+
@@ -0,0 +1,73 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+
+import java.io.*;
+
+
+/**
+ * Buffered input stream that can be pointed at a new source without reallocating its buffer
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+class ResettableBufferedInputStream extends BufferedInputStream
+{
+    /**
+     * Constructor
+     * 
+     * @param  next  The next stream in the chain
+     */
+    public ResettableBufferedInputStream(final InputStream next)
+    {
+        super(next);
+    }
+    
+    
+    
+    /**
+     * Points the stream at a new source, discarding all buffered data
+     * 
+     * @param  next  The new next stream in the chain
+     */
+    public synchronized void retarget(final InputStream next)
+    {
+        this.in = next;
+        this.count = this.pos = 0;
+        this.markpos = -1;
+        this.marklimit = 0;
+    }
+    
+    
+    /**
+     * Closes the source, but keeps the buffer so that the stream can be retargeted
+     * 
+     * @throws  IOException  On I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        final InputStream next;
+        synchronized (this)
+        {   next = this.in;
+            retarget(null);
+        }
+        if (next != null)
+            next.close();
+    }
+    
+}
@@ -25,7 +25,7 @@ import java.io.*;
  * 
  * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
  */
-class ShortArrayTransferProtocol implements TransferProtocol<short[]>
+class ShortArrayTransferProtocol implements SizedTransferProtocol<short[]>
 {
     //Has default constructor
     
@@ -56,5 +56,14 @@ class ShortArrayTransferProtocol implements TransferProtocol<short[]>
             stream.writeShort(data[i]);
     }
     
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(final short[] data)
+    {
+        return TransferLengths.ofLen(data.length) + (data.length << 1);
+    }
+    
 }
-
@@ -0,0 +1,43 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+
+import java.io.*;
+
+
+/**
+ * Protocol for transfering a specific data type, that can calculate the
+ * transfer size of an instance without encoding it
+ * 
+ * @param  <T>  The transferable data type
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public interface SizedTransferProtocol<T> extends TransferProtocol<T>
+{
+    /**
+     * Calculates the number of bytes {@link #write(Object, TransferOutputStream)} will write
+     * 
+     * @param   data  The instance of the data type
+     * @return        The number of bytes the instance is encoded with
+     * 
+     * @throws  IOException  If a field of the instance cannot be measured
+     */
+    public int size(final T data) throws IOException;
+    
+}
@@ -25,7 +25,7 @@ import java.io.*;
  * 
  * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
  */
-class StringTransferProtocol implements TransferProtocol<String>
+class StringTransferProtocol implements SizedTransferProtocol<String>
 {
     //Has default constructor
     
@@ -62,26 +62,50 @@ class StringTransferProtocol implements TransferProtocol<String>
     @Override
     public void write(final String data, final TransferOutputStream stream) throws IOException
     {
-        final int[] chars = new int[data.length()];
+        /* a character takes at most three bytes, except that a high surrogate
+         * that is not followed by any other character takes four bytes */
+        final byte[] buf = new byte[data.length() * 3 + 1];
+        int count = 0;
         int ptr = 0;
         
         char c;
-        for (int i = 0, n = data.length(); i < n; i++)
+        for (int i = 0, n = data.length(); i < n; i++, count++)
             if (((c = data.charAt(i)) & 0xDC00) == 0xD800)
             {
                 int wc = (c & 1023) << 10;
                 if (i + 1 < n)
                     wc |= ((data.charAt(++i)) & 1023);
-                wc += 0x10000;
-                chars[ptr++] = wc;
+                ptr += WChars.encode(wc + 0x10000, buf, ptr);
             }
             else
-                chars[ptr++] = c;
+                ptr += WChars.encode(c, buf, ptr);
         
-        stream.writeLen(ptr);
-        for (int i = 0; i < ptr; i++)
-            stream.writeWChar(chars[i]);
+        stream.writeLen(count);
+        stream.write(buf, 0, ptr);
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(final String data)
+    {
+        int count = 0;
+        int rc = 0;
+        
+        char c;
+        for (int i = 0, n = data.length(); i < n; i++, count++)
+            if (((c = data.charAt(i)) & 0xDC00) == 0xD800)
+            {
+                if (i + 1 < n)
+                    i++;
+                rc += 4;
+            }
+            else
+                rc += WChars.length(c);
+        
+        return TransferLengths.ofLen(count) + rc;
     }
     
 }
-
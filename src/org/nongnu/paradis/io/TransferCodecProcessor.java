@@ -0,0 +1,245 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+
+import java.util.*;
+import java.io.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.annotation.processing.*;
+import javax.tools.*;
+
+import static javax.lang.model.SourceVersion.RELEASE_7;
+
+
+/**
+ * <p>Annotation processor that generates {@link SizedTransferProtocol}s for {@link Transferable} classes</p>
+ * <p>
+ *   Primitive fields are written directly with the matching {@link TransferOutputStream} method,
+ *   and their sizes are constant (except for {@code char} which is variable length); all other
+ *   fields are delegated to {@link TransferOutputStream#writeObject(Object)} and {@link TransferLengths#of(Object)}.
+ * </p>
+ *
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@SupportedSourceVersion(RELEASE_7)
+@SupportedAnnotationTypes("org.nongnu.paradis.io.Transferable")
+public class TransferCodecProcessor extends AbstractProcessor
+{
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean process(final Set<? extends TypeElement> typeElements, final RoundEnvironment roundEnv)
+    {
+        for (final Element elem : roundEnv.getElementsAnnotatedWith(Transferable.class))
+            if (elem.getKind() != ElementKind.CLASS)
+                error(elem, "@Transferable can only be used on classes");
+            else
+                try
+                {   generate((TypeElement)elem);
+                }
+                catch (final IOException err)
+                {   error(elem, "Unable to write codec: " + err.toString());
+                }
+        
+        return true;
+    }
+    
+    
+    /**
+     * Reports an error
+     * 
+     * @param  elem     The element at fault
+     * @param  message  The error message
+     */
+    private void error(final Element elem, final String message)
+    {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, elem);
+    }
+    
+    
+    /**
+     * Generates the codec for a class
+     * 
+     * @param  type  The class
+     * 
+     * @throws  IOException  On I/O error
+     */
+    private void generate(final TypeElement type) throws IOException
+    {
+        if (type.getTypeParameters().isEmpty() == false)
+        {   error(type, "@Transferable classes may not be generic");
+            return;
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+        {   error(type, "@Transferable classes may not be abstract");
+            return;
+        }
+        
+        final ArrayList<VariableElement> fields = new ArrayList<VariableElement>();
+        for (final Element member : type.getEnclosedElements())
+            if (member.getKind() == ElementKind.FIELD)
+            {
+                final Set<Modifier> mods = member.getModifiers();
+                if (mods.contains(Modifier.STATIC) || mods.contains(Modifier.TRANSIENT))
+                    continue;
+                if (mods.contains(Modifier.PRIVATE))
+                {   error(member, "Transfered fields may not be private");
+                    return;
+                }
+                fields.add((VariableElement)member);
+            }
+        
+        if (hasConstructor(type, fields) == false)
+        {   error(type, "@Transferable classes must have a non-private constructor taking all transfered fields in declaration order");
+            return;
+        }
+        
+        final String pkg = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final String binary = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+        final String codec = binary.substring(pkg.isEmpty() ? 0 : (pkg.length() + 1)) + "TransferCodec";
+        final String name = type.getQualifiedName().toString();
+        
+        final StringBuilder read = new StringBuilder();
+        final StringBuilder args = new StringBuilder();
+        final StringBuilder write = new StringBuilder();
+        final StringBuilder size = new StringBuilder();
+        int constant = 0;
+        
+        for (final VariableElement field : fields)
+        {
+            final String f = field.getSimpleName().toString();
+            final TypeMirror t = this.processingEnv.getTypeUtils().erasure(field.asType());
+            final String tn = t.toString();
+            
+            args.append(args.length() == 0 ? "" : ", ").append("_").append(f);
+            
+            switch (t.getKind())
+            {
+                case BOOLEAN:
+                    read.append("        final boolean _" + f + " = stream.readBoolean();\n");
+                    write.append("        stream.writeBoolean(data." + f + ");\n");
+                    constant += 1;
+                    break;
+                    
+                case BYTE:
+                    read.append("        final byte _" + f + " = stream.readByte();\n");
+                    write.append("        stream.writeByte(data." + f + ");\n");
+                    constant += 1;
+                    break;
+                    
+                case SHORT:
+                    read.append("        final short _" + f + " = stream.readShort();\n");
+                    write.append("        stream.writeShort(data." + f + ");\n");
+                    constant += 2;
+                    break;
+                    
+                case CHAR:
+                    read.append("        final char _" + f + " = stream.readChar();\n");
+                    write.append("        stream.writeChar(data." + f + ");\n");
+                    size.append(" + TransferLengths.ofWChar(data." + f + ")");
+                    break;
+                    
+                case INT:
+                    read.append("        final int _" + f + " = stream.readInt();\n");
+                    write.append("        stream.writeInt(data." + f + ");\n");
+                    constant += 4;
+                    break;
+                    
+                case LONG:
+                    read.append("        final long _" + f + " = stream.readLong();\n");
+                    write.append("        stream.writeLong(data." + f + ");\n");
+                    constant += 8;
+                    break;
+                    
+                case FLOAT:
+                    read.append("        final float _" + f + " = Float.intBitsToFloat(stream.readInt());\n");
+                    write.append("        stream.writeInt(Float.floatToRawIntBits(data." + f + "));\n");
+                    constant += 4;
+                    break;
+                    
+                case DOUBLE:
+                    read.append("        final double _" + f + " = Double.longBitsToDouble(stream.readLong());\n");
+                    write.append("        stream.writeLong(Double.doubleToRawLongBits(data." + f + "));\n");
+                    constant += 8;
+                    break;
+                    
+                case DECLARED:
+                case ARRAY:
+                    read.append("        final " + tn + " _" + f + " = stream.readObject(" + tn + ".class);\n");
+                    write.append("        stream.writeObject(data." + f + ");\n");
+                    size.append(" + TransferLengths.of(data." + f + ")");
+                    break;
+                    
+                default:
+                    error(field, "Field type cannot be transfered: " + tn);
+                    return;
+            }
+        }
+        
+        final JavaFileObject file = this.processingEnv.getFiler().createSourceFile(pkg.isEmpty() ? codec : (pkg + "." + codec), type);
+        try (final Writer out = file.openWriter())
+        {
+            if (pkg.isEmpty() == false)
+                out.write("package " + pkg + ";\n\n");
+            out.write("import org.nongnu.paradis.io.*;\n\n");
+            out.write("import java.io.IOException;\n\n\n");
+            out.write("/**\n * Generated transfer protocol for {@link " + name + "}, do not edit\n */\n");
+            out.write("public class " + codec + " implements SizedTransferProtocol<" + name + ">\n{\n");
+            out.write("    /**\n     * {@inheritDoc}\n     */\n    @Override\n");
+            out.write("    public " + name + " read(final TransferInputStream stream) throws IOException\n    {\n");
+            out.write(read.toString());
+            out.write("        return new " + name + "(" + args + ");\n    }\n    \n    \n");
+            out.write("    /**\n     * {@inheritDoc}\n     */\n    @Override\n");
+            out.write("    public void write(final " + name + " data, final TransferOutputStream stream) throws IOException\n    {\n");
+            out.write(write.toString());
+            out.write("    }\n    \n    \n");
+            out.write("    /**\n     * {@inheritDoc}\n     */\n    @Override\n");
+            out.write("    public int size(final " + name + " data) throws IOException\n    {\n");
+            out.write("        return " + constant + size + ";\n    }\n    \n}\n");
+        }
+    }
+    
+    
+    /**
+     * Checks whether a class has a non-private constructor taking exactly the transfered fields
+     * 
+     * @param   type    The class
+     * @param   fields  The transfered fields
+     * @return          Whether the constructor exists
+     */
+    private boolean hasConstructor(final TypeElement type, final List<VariableElement> fields)
+    {
+        outer:
+            for (final Element member : type.getEnclosedElements())
+            {
+                if ((member.getKind() != ElementKind.CONSTRUCTOR) || member.getModifiers().contains(Modifier.PRIVATE))
+                    continue;
+                final List<? extends VariableElement> params = ((ExecutableElement)member).getParameters();
+                if (params.size() != fields.size())
+                    continue;
+                for (int i = 0, n = params.size(); i < n; i++)
+                    if (this.processingEnv.getTypeUtils().isSameType(params.get(i).asType(), fields.get(i).asType()) == false)
+                        continue outer;
+                return true;
+            }
+        return false;
+    }
+    
+}
@@ -35,8 +35,27 @@ public class TransferInputStream extends FilterInputStream
      */
     public TransferInputStream(final InputStream next)
     {
-        super(new BufferedInputStream(next));
+        super(new ResettableBufferedInputStream(next));
     }
+
+    
+    
+    /**
+     * Whether the stream was created by {@link TransferStreamPool} and is returned to it when closed
+     */
+    boolean pooled = false;
+    
+    /**
+     * Whether the stream is idle in {@link TransferStreamPool}
+     */
+    boolean idle = false;
+    
+    
+    
+    /**
+     * Helper buffer for {@link #readWChar()}
+     */
+    private final byte[] wcharbuf = new byte[WChars.MAX_LENGTH];
     
     
     
@@ -97,37 +116,34 @@ public class TransferInputStream extends FilterInputStream
      * 
      * @return  The read data
      * 
-     * @throws  IOException  Inherited from {@link #read()}
+     * @throws  IOException  Inherited from {@link #read()}, {@link EOFException} at end
+     *                       of stream and {@link CharConversionException} on malformed data
+     * 
+     * @see  WChars
      */
     public synchronized int readWChar() throws IOException
     {
-        int buf = 0;
-        int n = 0;
-        int b;
+        int b, n;
+        do
+            if ((b = this.read()) == -1)
+                throw new EOFException();
+        while ((n = WChars.lengthOfLead(b)) == 0);
         
-        while ((b = this.read()) != -1)
-            if ((b & 0x80) == 0)
-                return b;
-            else if ((b & 0xC0) == 0xC0)
-            {
-                n = 0;
-                buf = b;
-                while ((buf & 0x80) == 0x80)
-                {
-                    n++;
-                    buf <<= 1;
-                }
-                buf = (buf & 0xFF) >> n--;
-            }
-            else
-                if (n > 0)
-                {
-                    buf = (buf << 6) | (b & 63);
-                    if (--n == 0)
-                        return buf;
-                }
+        if (n == 1)
+            return b;
+        
+        this.wcharbuf[0] = (byte)b;
+        for (int ptr = 1; ptr < n;)
+        {   final int r = this.read(this.wcharbuf, ptr, n - ptr);
+            if (r == -1)
+                throw new EOFException();
+            ptr += r;
+        }
         
-        return buf;
+        final int rc = WChars.decode(this.wcharbuf, 0, n);
+        if (rc == -1)
+            throw new CharConversionException("Malformed character in stream");
+        return rc;
     }
     
     
@@ -221,5 +237,36 @@ public class TransferInputStream extends FilterInputStream
         return TransferProtocolRegister.read(type, this);
     }
     
+    
+    /**
+     * <p>Points the stream at a new source, without reallocating its buffer</p>
+     * <p>
+     *   Buffered data is discarded, and the old source is not closed.
+     * </p>
+     * 
+     * @param  next  The new next stream in the chain
+     */
+    public synchronized void retarget(final InputStream next)
+    {
+        ((ResettableBufferedInputStream)(this.in)).retarget(next);
+    }
+    
+    
+    /**
+     * Closes the stream, and returns it to the pool if it is pooled
+     * 
+     * @throws  IOException  On I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {   this.in.close();
+        }
+        finally
+        {   if (this.pooled)
+                TransferStreamPool.release(this);
+        }
+    }
+    
 }
-
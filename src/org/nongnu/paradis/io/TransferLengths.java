@@ -0,0 +1,98 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+
+import java.io.*;
+
+
+/**
+ * Transfer size calculation methods
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class TransferLengths
+{
+    /**
+     * Non-constructor
+     */
+    private TransferLengths()
+    {
+        assert false : "You may not create instances of this class [TransferLengths].";
+    }
+    
+    
+    
+    /**
+     * Gets the number of bytes {@link TransferOutputStream#writeLen(int)} writes
+     * 
+     * @param   data  The value to write
+     * @return        The number of bytes used
+     */
+    public static int ofLen(final int data)
+    {
+        return (data & 0x7FFF) != 0 ? 2 : 4;
+    }
+    
+    
+    /**
+     * Gets the number of bytes {@link TransferOutputStream#writeWChar(int)} writes
+     * 
+     * @param   data  The character to write
+     * @return        The number of bytes used
+     */
+    public static int ofWChar(final int data)
+    {
+        return WChars.length(data);
+    }
+    
+    
+    /**
+     * Gets the number of bytes {@link TransferOutputStream#writeObject(Object)} writes
+     * 
+     * @param   data  The object to write
+     * @return        The number of bytes used
+     * 
+     * @throws  IOException  If the object cannot be measured
+     */
+    @SuppressWarnings("unchecked")
+    public static int of(final Object data) throws IOException
+    {
+        if (data instanceof Object[])
+        {
+            final Object[] array = (Object[])data;
+            int rc = ofLen(array.length);
+            for (final Object elem : array)
+                rc += of(elem);
+            return rc;
+        }
+        
+        final TransferProtocol<?> protocol = TransferProtocolRegister.getProtocol(data.getClass());
+        if (protocol instanceof SizedTransferProtocol)
+            return ((SizedTransferProtocol<Object>)protocol).size(data);
+        
+        final LengthCalculatingStream lcs = TransferStreamPool.lengthCalculator();
+        try
+        {   lcs.writeObject(data);
+            return lcs.length;
+        }
+        finally
+        {   TransferStreamPool.releaseLengthCalculator(lcs);
+        }
+    }
+    
+}
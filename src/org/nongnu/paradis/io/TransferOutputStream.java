@@ -34,17 +34,45 @@ public class TransferOutputStream extends FilterOutputStream
      */
     public TransferOutputStream(final OutputStream next)
     {
-        super(new BufferedOutputStream(next));
+        super(new ResettableBufferedOutputStream(next));
     }
+
+    
+    
+    /**
+     * Whether the stream was created by {@link TransferStreamPool} and is returned to it when closed
+     */
+    boolean pooled = false;
+    
+    /**
+     * Whether the stream is idle in {@link TransferStreamPool}
+     */
+    boolean idle = false;
     
     
     
     /**
      * Helper buffer for {@link #writeWChar(int)}
      */
-    private final int[] wcharbuf = new int[6];
+    private final byte[] wcharbuf = new byte[WChars.MAX_LENGTH];
+    
     
     
+    /**
+     * Writes a part of a byte array to the stream, in bulk rather than byte by byte
+     * 
+     * @param  b    The byte array
+     * @param  off  The offset of the part to write
+     * @param  len  The length of the part to write
+     * 
+     * @throws  IOException  On I/O error
+     */
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException
+    {
+        this.out.write(b, off, len);
+    }
+    
     
     /**
      * Writes a {@code boolean} to the stream
@@ -102,38 +130,15 @@ public class TransferOutputStream extends FilterOutputStream
     /**
      * Writes an {@code int} as a character to the stream
      * 
-     * @param  data  The data to write
+     * @param  data  The data to write, must not be negative
      * 
      * @throws  IOException  Inherited from {@link #write(int)}
+     * 
+     * @see  WChars
      */
     public synchronized void writeWChar(final int data) throws IOException
     {
-        if (data < 0x80)
-            this.write(data);
-        else
-        {
-            int m = 0x100;
-            int d = data;
-            int ptr = 0;
-            for (;;)
-            {
-                m |= m >> 1;
-                this.wcharbuf[ptr++] = d & 63;
-                d >>>= 6;
-                if (d == 0)
-                {
-                    m >>= 1;
-                    if ((m & this.wcharbuf[ptr - 1]) == 0)
-                        this.wcharbuf[ptr - 1] |= (m << 1) & 0xFF;
-                    else
-                        this.wcharbuf[ptr++] = m;
-                    break;
-                }
-            }
-            
-            while (ptr > 0)
-                this.write(this.wcharbuf[--ptr]);
-        }
+        this.write(this.wcharbuf, 0, WChars.encode(data, this.wcharbuf, 0));
     }
     
     
@@ -201,20 +206,7 @@ public class TransferOutputStream extends FilterOutputStream
      */
     public synchronized void writeLenOf(final Object data) throws IOException
     {
-        LengthCalculatingStream lcs = null;
-        try
-        {   lcs = new LengthCalculatingStream();
-            lcs.writeObject(data);
-            writeLen(lcs.length);
-        }
-        finally
-        {   if (lcs != null)
-                try
-                {   lcs.close();
-                }
-                catch (final Throwable ignore)
-                {   //Ignore
-        }       }
+        writeLen(TransferLengths.of(data));
     }
     
     
@@ -239,5 +231,36 @@ public class TransferOutputStream extends FilterOutputStream
             TransferProtocolRegister.write(data, this);
     }
     
+    
+    /**
+     * <p>Points the stream at a new sink, without reallocating its buffer</p>
+     * <p>
+     *   Data that has not been flushed is discarded, and the old sink is not closed.
+     * </p>
+     * 
+     * @param  next  The new next stream in the chain
+     */
+    public synchronized void retarget(final OutputStream next)
+    {
+        ((ResettableBufferedOutputStream)(this.out)).retarget(next);
+    }
+    
+    
+    /**
+     * Flushes and closes the stream, and returns it to the pool if it is pooled
+     * 
+     * @throws  IOException  On I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {   this.out.close();
+        }
+        finally
+        {   if (this.pooled)
+                TransferStreamPool.release(this);
+        }
+    }
+    
 }
-
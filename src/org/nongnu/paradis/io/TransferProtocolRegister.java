@@ -78,6 +78,9 @@ public class TransferProtocolRegister
         register(     Packet.class, new      Packet.     PacketTransferProtocol());
         register(       User.class, new        User.       UserTransferProtocol());
         register(PackageInfo.class, new PackageInfo.PackageInfoTransferProtocol());
+        
+        register(StreamChunk.class, StreamChunk.MESSAGE_TYPE);
+        register(CorrelatedMessage.class, CorrelatedMessage.MESSAGE_TYPE);
     }
     
     
@@ -118,6 +121,33 @@ public class TransferProtocolRegister
     }   }
     
     
+    /**
+     * Gets the protocol for a data type, loading the generated codec
+     * for {@link Transferable} data types if not already registered
+     * 
+     * @param   type  The data type
+     * @return        The data type transfer protocol, {@code null} if none is available
+     */
+    public static TransferProtocol<?> getProtocol(final Class<?> type)
+    {
+        synchronized (monitor)
+        {
+            TransferProtocol<?> protocol = protocols.get(type);
+            if ((protocol == null) && type.isAnnotationPresent(Transferable.class))
+            {
+                try
+                {   protocol = (TransferProtocol<?>)(Class.forName(type.getName() + "TransferCodec", true, type.getClassLoader()).getDeclaredConstructor().newInstance());
+                }
+                catch (final ReflectiveOperationException err)
+                {   throw new Error("Missing generated codec for " + type.getName() + ", was TransferCodecProcessor run?", err);
+                }
+                protocols.put(type, protocol);
+            }
+            return protocol;
+        }
+    }
+    
+    
     /**
      * Reads one instance of the data type from a stream
      * 
@@ -130,12 +160,7 @@ public class TransferProtocolRegister
     @SuppressWarnings("unchecked")
     static <T> T read(final Class<T> type, final TransferInputStream stream) throws IOException
     {
-        final TransferProtocol<T> protocol;
-        synchronized (monitor)
-        {   protocol = (TransferProtocol<T>)(protocols.get(type));
-        }
-        
-        return protocol.read(stream);
+        return ((TransferProtocol<T>)(getProtocol(type))).read(stream);
     }
     
     
@@ -150,12 +175,7 @@ public class TransferProtocolRegister
     @SuppressWarnings("unchecked")
     static <T> void write(final T data, final TransferOutputStream stream) throws IOException
     {
-        final TransferProtocol<T> protocol;
-        synchronized (monitor)
-        {   protocol = (TransferProtocol<T>)(protocols.get(data.getClass()));
-        }
-        
-        protocol.write(data, stream);
+        ((TransferProtocol<T>)(getProtocol(data.getClass()))).write(data, stream);
     }
     
 }
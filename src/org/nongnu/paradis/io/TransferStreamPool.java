@@ -0,0 +1,186 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * <p>Per thread pool of transfer streams</p>
+ * <p>
+ *   Streams taken from the pool are returned to the pool of the closing
+ *   thread when they are closed, and are then pointed at a new source or
+ *   sink when taken again, so their buffers are reused. Do not use a stream
+ *   after it has been closed, it may already be in use elsewhere.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class TransferStreamPool
+{
+    /**
+     * The maximum number of idle streams of each kind per thread
+     */
+    public static final int CAPACITY = 4;
+    
+    
+    
+    /**
+     * Non-constructor
+     */
+    private TransferStreamPool()
+    {
+        assert false : "You may not create instances of this class [TransferStreamPool].";
+    }
+    
+    
+    
+    /**
+     * Idle input streams
+     */
+    private static final ThreadLocal<ArrayDeque<TransferInputStream>> inputs = new ThreadLocal<ArrayDeque<TransferInputStream>>()
+            {   @Override
+                protected ArrayDeque<TransferInputStream> initialValue()
+                {   return new ArrayDeque<>();
+            }   };
+    
+    /**
+     * Idle output streams
+     */
+    private static final ThreadLocal<ArrayDeque<TransferOutputStream>> outputs = new ThreadLocal<ArrayDeque<TransferOutputStream>>()
+            {   @Override
+                protected ArrayDeque<TransferOutputStream> initialValue()
+                {   return new ArrayDeque<>();
+            }   };
+    
+    /**
+     * Idle length calculating streams
+     */
+    private static final ThreadLocal<ArrayDeque<LengthCalculatingStream>> lengthCalculators = new ThreadLocal<ArrayDeque<LengthCalculatingStream>>()
+            {   @Override
+                protected ArrayDeque<LengthCalculatingStream> initialValue()
+                {   return new ArrayDeque<>();
+            }   };
+    
+    
+    
+    /**
+     * Takes an input stream from the pool, or creates one if the pool is empty
+     * 
+     * @param   next  The next stream in the chain
+     * @return        Input stream reading from {@code next}
+     */
+    public static TransferInputStream input(final InputStream next)
+    {
+        TransferInputStream stream = inputs.get().pollLast();
+        if (stream == null)
+        {   stream = new TransferInputStream(next);
+            stream.pooled = true;
+        }
+        else
+        {   stream.idle = false;
+            stream.retarget(next);
+        }
+        return stream;
+    }
+    
+    
+    /**
+     * Takes an output stream from the pool, or creates one if the pool is empty
+     * 
+     * @param   next  The next stream in the chain
+     * @return        Output stream writing to {@code next}
+     */
+    public static TransferOutputStream output(final OutputStream next)
+    {
+        TransferOutputStream stream = outputs.get().pollLast();
+        if (stream == null)
+        {   stream = new TransferOutputStream(next);
+            stream.pooled = true;
+        }
+        else
+        {   stream.idle = false;
+            stream.retarget(next);
+        }
+        return stream;
+    }
+    
+    
+    /**
+     * Takes a length calculating stream from the pool, or creates one if the pool is empty
+     * 
+     * @return  Length calculating stream with zero length
+     */
+    static LengthCalculatingStream lengthCalculator()
+    {
+        final LengthCalculatingStream stream = lengthCalculators.get().pollLast();
+        if (stream == null)
+            return new LengthCalculatingStream();
+        stream.length = 0;
+        return stream;
+    }
+    
+    
+    /**
+     * Returns a closed input stream to the pool
+     * 
+     * @param  stream  The stream
+     */
+    static void release(final TransferInputStream stream)
+    {
+        if (stream.idle)
+            return;
+        stream.idle = true;
+        stream.retarget(null);
+        final ArrayDeque<TransferInputStream> pool = inputs.get();
+        if (pool.size() < CAPACITY)
+            pool.offerLast(stream);
+    }
+    
+    
+    /**
+     * Returns a closed output stream to the pool
+     * 
+     * @param  stream  The stream
+     */
+    static void release(final TransferOutputStream stream)
+    {
+        if (stream.idle)
+            return;
+        stream.idle = true;
+        stream.retarget(null);
+        final ArrayDeque<TransferOutputStream> pool = outputs.get();
+        if (pool.size() < CAPACITY)
+            pool.offerLast(stream);
+    }
+    
+    
+    /**
+     * Returns a length calculating stream to the pool
+     * 
+     * @param  stream  The stream
+     */
+    static void releaseLengthCalculator(final LengthCalculatingStream stream)
+    {
+        final ArrayDeque<LengthCalculatingStream> pool = lengthCalculators.get();
+        if (pool.size() < CAPACITY)
+            pool.offerLast(stream);
+    }
+    
+}
@@ -0,0 +1,40 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+
+import java.lang.annotation.*;
+
+
+/**
+ * <p>Marks a class for which {@link TransferCodecProcessor} should generate a {@link SizedTransferProtocol}</p>
+ * <p>
+ *   All non-static, non-transient fields, in declaration order, are transfered, they must not be private
+ *   and the class must have a constructor taking exactly those fields, in that order. The generated codec
+ *   is named as the binary name of the class suffixed with {@code TransferCodec} and is picked up
+ *   automatically by {@link TransferProtocolRegister}.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Transferable
+{
+    //Marker annotation
+}
@@ -0,0 +1,172 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.io;
+
+
+/**
+ * <p>Table driven codec for the variable length character encoding used by
+ * {@link TransferOutputStream#writeWChar(int)} and {@link TransferInputStream#readWChar()}</p>
+ * <p>
+ *   The encoding is UTF-8 extended to 31 bits: characters below 0x80 are
+ *   encoded as themself in one byte, other characters are encoded as a lead
+ *   byte, whose number of leading set bits is the total number of bytes, followed
+ *   by continuation bytes on the form 10xxxxxx, most significant bits first.
+ *   Negative values cannot be encoded.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class WChars
+{
+    /**
+     * The maximum number of bytes a character is encoded with
+     */
+    public static final int MAX_LENGTH = 6;
+    
+    /**
+     * The encoded length of a character indexed by its number of significant bits
+     */
+    private static final byte[] LENGTH_BY_BITS = {
+            1, 1, 1, 1, 1, 1, 1, 1,     /*  0 —  7 bits */
+            2, 2, 2, 2,                 /*  8 — 11 bits */
+            3, 3, 3, 3, 3,              /* 12 — 16 bits */
+            4, 4, 4, 4, 4,              /* 17 — 21 bits */
+            5, 5, 5, 5, 5,              /* 22 — 26 bits */
+            6, 6, 6, 6, 6,              /* 27 — 31 bits */
+            0                           /* negative     */
+        };
+    
+    /**
+     * The lead byte prefix indexed by the encoded length
+     */
+    private static final int[] LEAD = { 0, 0x00, 0xC0, 0xE0, 0xF0, 0xF8, 0xFC };
+    
+    /**
+     * The mask for the payload bits in the lead byte indexed by the encoded length
+     */
+    private static final int[] LEAD_MASK = { 0, 0x7F, 0x1F, 0x0F, 0x07, 0x03, 0x01 };
+    
+    /**
+     * The encoded length of a character indexed by its lead byte,
+     * 0 for continuation bytes and bytes that cannot start a character
+     */
+    private static final byte[] LENGTH_BY_LEAD = new byte[256];
+    
+    
+    
+    /**
+     * Non-constructor
+     */
+    private WChars()
+    {
+        assert false : "You may not create instances of this class [WChars].";
+    }
+    
+    
+    
+    /**
+     * Class initialiser
+     */
+    static
+    {
+        for (int b = 0; b < 256; b++)
+            if      (b < 0x80)  LENGTH_BY_LEAD[b] = 1;
+            else if (b < 0xC0)  LENGTH_BY_LEAD[b] = 0;
+            else if (b < 0xE0)  LENGTH_BY_LEAD[b] = 2;
+            else if (b < 0xF0)  LENGTH_BY_LEAD[b] = 3;
+            else if (b < 0xF8)  LENGTH_BY_LEAD[b] = 4;
+            else if (b < 0xFC)  LENGTH_BY_LEAD[b] = 5;
+            else if (b < 0xFE)  LENGTH_BY_LEAD[b] = 6;
+            else                LENGTH_BY_LEAD[b] = 0;
+    }
+    
+    
+    
+    /**
+     * Gets the number of bytes a character is encoded with
+     * 
+     * @param   c  The character
+     * @return     The number of bytes used
+     * 
+     * @throws  IllegalArgumentException  If the character is negative
+     */
+    public static int length(final int c)
+    {
+        final int n = LENGTH_BY_BITS[32 - Integer.numberOfLeadingZeros(c)];
+        if (n == 0)
+            throw new IllegalArgumentException("Negative characters cannot be encoded: " + c);
+        return n;
+    }
+    
+    
+    /**
+     * Gets the number of bytes a character is encoded with from its lead byte
+     * 
+     * @param   lead  The lead byte
+     * @return        The number of bytes used, 0 if the byte cannot start a character
+     */
+    public static int lengthOfLead(final int lead)
+    {
+        return LENGTH_BY_LEAD[lead & 255];
+    }
+    
+    
+    /**
+     * Encodes a character into a buffer
+     * 
+     * @param   c    The character
+     * @param   buf  The buffer, must have room for {@link #length(int)} bytes
+     * @param   off  The offset in the buffer to write the character at
+     * @return       The number of written bytes
+     * 
+     * @throws  IllegalArgumentException  If the character is negative
+     */
+    public static int encode(final int c, final byte[] buf, final int off)
+    {
+        final int n = length(c);
+        int d = c;
+        for (int i = n - 1; i > 0; i--)
+        {   buf[off + i] = (byte)(0x80 | (d & 63));
+            d >>>= 6;
+        }
+        buf[off] = (byte)(LEAD[n] | d);
+        return n;
+    }
+    
+    
+    /**
+     * Decodes a character from a buffer
+     * 
+     * @param   buf  The buffer
+     * @param   off  The offset of the lead byte in the buffer
+     * @param   n    The encoded length of the character, as given by {@link #lengthOfLead(int)}
+     * @return       The character, -1 if a continuation byte is malformed
+     */
+    public static int decode(final byte[] buf, final int off, final int n)
+    {
+        int c = buf[off] & LEAD_MASK[n];
+        for (int i = 1; i < n; i++)
+        {   final int b = buf[off + i];
+            if ((b & 0xC0) != 0x80)
+                return -1;
+            c = (c << 6) | (b & 63);
+        }
+        return c;
+    }
+    
+}
@@ -151,7 +151,7 @@ public class LocalUser
                 file += sep;
             (new File(file += "." + Program.PACKAGE)).mkdirs();
             file += sep + "localuser";
-            out = new TransferOutputStream(new FileOutputStream(new File(file)));
+            out = TransferStreamPool.output(new FileOutputStream(new File(file)));
             
             out.writeObject(uuid);
             out.writeObject(name);
@@ -194,7 +194,7 @@ public class LocalUser
                 file += sep;
             (new File(file += "." + Program.PACKAGE)).mkdirs();
             file += sep + "localuser";
-            in = new TransferInputStream(new FileInputStream(new File(file)));
+            in = TransferStreamPool.input(new FileInputStream(new File(file)));
             
             uuid             = in.readObject(    UUID  .class);
             name             = in.readObject(  String  .class);
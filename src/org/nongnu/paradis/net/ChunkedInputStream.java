@@ -0,0 +1,311 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+import org.nongnu.paradis.util.*;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+
+/**
+ * <p>Input stream, and channel, over a message streamed with {@link ChunkedOutputStream}</p>
+ * <p>
+ *   Chunks are made readable as soon as they arrive, and are dropped as soon as
+ *   they have been read, so the full message is never held in memory.
+ *   Instances are created by {@link StreamAssembler}.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class ChunkedInputStream extends InputStream implements ReadableByteChannel
+{
+    /**
+     * Time to wait for the next chunk before deeming the sender dead
+     */
+    public static final int TIME_OUT = 30_000; // FIXME use user configurations
+    
+    /**
+     * The maximum number of chunks, counted from the next chunk to read, that are held for reordering
+     */
+    public static final int WINDOW = 512;
+    
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  stream     The identifier of the stream
+     * @param  sender     The sender of the stream
+     * @param  assembler  The assembler that routes chunks to the stream
+     */
+    ChunkedInputStream(final UUID stream, final UUID sender, final StreamAssembler assembler)
+    {
+        this.stream = stream;
+        this.sender = sender;
+        this.assembler = assembler;
+    }
+    
+    
+    
+    /**
+     * The identifier of the stream
+     */
+    public final UUID stream;
+    
+    /**
+     * The sender of the stream
+     */
+    public final UUID sender;
+    
+    /**
+     * The assembler that routes chunks to the stream
+     */
+    private final StreamAssembler assembler;
+    
+    /**
+     * Chunks that have arrived but not yet been reached
+     */
+    private final HashMap<Integer, StreamChunk> pending = new HashMap<>();
+    
+    /**
+     * Concurrency monitor
+     */
+    private final Object monitor = new Object();
+    
+    /**
+     * The chunk being read
+     */
+    private StreamChunk current = null;
+    
+    /**
+     * The read position in {@link #current}
+     */
+    private int ptr = 0;
+    
+    /**
+     * The index of the next chunk to read
+     */
+    private int next = 0;
+    
+    /**
+     * The number of distinct chunks that has been accepted
+     */
+    private int received = 0;
+    
+    /**
+     * The number of chunks in the stream, -1 until the last chunk has arrived
+     */
+    private int total = -1;
+    
+    /**
+     * Whether the stream has been closed
+     */
+    private boolean closed = false;
+    
+    /**
+     * When a chunk last arrived, or when the stream was created
+     */
+    private volatile long lastActivity = System.currentTimeMillis();
+    
+    
+    
+    /**
+     * <p>Makes a chunk available for reading, this never blocks</p>
+     * <p>
+     *   Duplicate chunks are ignored. A chunk beyond the reorder window closes
+     *   the stream, since chunks are not retransmitted and the stream could
+     *   not be completed after the chunk has been dropped.
+     * </p>
+     * 
+     * @param   chunk  The chunk
+     * @return         Whether the stream is complete or closed, and should no longer receive chunks
+     */
+    boolean offer(final StreamChunk chunk)
+    {
+        final Integer index = Integer.valueOf(chunk.index);
+        synchronized (this.monitor)
+        {
+            if (this.closed)
+                return true;
+            if ((chunk.index < this.next) || this.pending.containsKey(index))
+                return false;
+            this.lastActivity = System.currentTimeMillis();
+            if (chunk.index - this.next >= WINDOW)
+            {   Log.warning("Closing stream %s from %s, chunk %s is beyond the reorder window", this.stream, this.sender, Integer.valueOf(chunk.index));
+                close();
+                return true;
+            }
+            
+            this.received++;
+            if (chunk.last)
+                this.total = chunk.index + 1;
+            this.pending.put(index, chunk);
+            this.monitor.notifyAll();
+            return this.received == this.total;
+        }
+    }
+    
+    
+    /**
+     * Gets when a chunk last arrived
+     * 
+     * @return  When a chunk last arrived, or when the stream was created if none has
+     */
+    long getLastActivity()
+    {
+        return this.lastActivity;
+    }
+    
+    
+    /**
+     * Waits until there is data to read, must be invoked while holding {@link #monitor}
+     * 
+     * @return  {@code false} if the end of the stream has been reached
+     * 
+     * @throws  IOException  If the stream is closed, interrupted or the sender times out
+     */
+    private boolean fill() throws IOException
+    {
+        for (;;)
+        {
+            if (this.closed)
+                throw new ClosedChannelException();
+            if ((this.current != null) && (this.ptr < this.current.data.length))
+                return true;
+            if ((this.current != null) && this.current.last)
+                return false;
+            
+            final StreamChunk chunk = this.pending.remove(Integer.valueOf(this.next));
+            if (chunk != null)
+            {   this.current = chunk;
+                this.ptr = 0;
+                this.next++;
+                continue;
+            }
+            
+            try
+            {   final long time = System.currentTimeMillis();
+                this.monitor.wait(TIME_OUT);
+                if ((System.currentTimeMillis() - time >= TIME_OUT) && (this.pending.containsKey(Integer.valueOf(this.next)) == false))
+                {   close();
+                    throw new InterruptedIOException("Timed out, sender is probabily dead.");
+            }   }
+            catch (final InterruptedException err)
+            {   throw new InterruptedIOException();
+            }
+        }
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException
+    {
+        synchronized (this.monitor)
+        {
+            if (fill() == false)
+                return -1;
+            return this.current.data[this.ptr++] & 255;
+        }
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (len == 0)
+            return 0;
+        synchronized (this.monitor)
+        {
+            if (fill() == false)
+                return -1;
+            final int n = Math.min(len, this.current.data.length - this.ptr);
+            System.arraycopy(this.current.data, this.ptr, b, off, n);
+            this.ptr += n;
+            return n;
+        }
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final ByteBuffer dst) throws IOException
+    {
+        if (dst.hasRemaining() == false)
+            return 0;
+        synchronized (this.monitor)
+        {
+            if (fill() == false)
+                return -1;
+            final int n = Math.min(dst.remaining(), this.current.data.length - this.ptr);
+            dst.put(this.current.data, this.ptr, n);
+            this.ptr += n;
+            return n;
+        }
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int available()
+    {
+        synchronized (this.monitor)
+        {   return this.current == null ? 0 : (this.current.data.length - this.ptr);
+        }
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen()
+    {
+        synchronized (this.monitor)
+        {   return this.closed == false;
+        }
+    }
+    
+    
+    /**
+     * Closes the stream, chunks that arrive afterwards are discarded
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this.monitor)
+        {   this.closed = true;
+            this.current = null;
+            this.pending.clear();
+            this.monitor.notifyAll();
+        }
+        this.assembler.remove(this);
+    }
+    
+}
@@ -0,0 +1,205 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+
+import java.io.*;
+
+
+/**
+ * <p>Output stream that sends its content as a sequence of {@link StreamChunk} packets</p>
+ * <p>
+ *   Only one chunk is held in memory at a time, the receiver reads the stream
+ *   with a {@link ChunkedInputStream} as the chunks arrive.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class ChunkedOutputStream extends OutputStream
+{
+    /**
+     * The default number of payload bytes per chunk
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 << 10;
+    
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  hub        The hub to send the chunks with
+     * @param  factory    The packet factory used to create the chunk packets
+     * @param  receivers  The receivers of the stream, broadcasted if empty
+     */
+    public ChunkedOutputStream(final Hub hub, final PacketFactory factory, final UUID... receivers)
+    {
+        this(hub, factory, DEFAULT_CHUNK_SIZE, receivers);
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param  hub        The hub to send the chunks with
+     * @param  factory    The packet factory used to create the chunk packets
+     * @param  chunkSize  The number of payload bytes per chunk
+     * @param  receivers  The receivers of the stream, broadcasted if empty
+     */
+    public ChunkedOutputStream(final Hub hub, final PacketFactory factory, final int chunkSize, final UUID... receivers)
+    {
+        assert chunkSize > 0 : "Invalid chunk size: " + chunkSize;
+        
+        this.hub = hub;
+        this.factory = factory;
+        this.receivers = receivers;
+        this.buffer = new byte[chunkSize];
+    }
+    
+    
+    
+    /**
+     * The identifier of the stream
+     */
+    public final UUID stream = new UUID();
+    
+    /**
+     * The hub to send the chunks with
+     */
+    private final Hub hub;
+    
+    /**
+     * The packet factory used to create the chunk packets
+     */
+    private final PacketFactory factory;
+    
+    /**
+     * The receivers of the stream, broadcasted if empty
+     */
+    private final UUID[] receivers;
+    
+    /**
+     * The payload of the chunk being filled
+     */
+    private final byte[] buffer;
+    
+    /**
+     * The number of used bytes in {@link #buffer}
+     */
+    private int ptr = 0;
+    
+    /**
+     * The index of the next chunk
+     */
+    private int index = 0;
+    
+    /**
+     * Whether the stream has been closed
+     */
+    private boolean closed = false;
+    
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void write(final int b) throws IOException
+    {
+        if (this.closed)
+            throw new IOException("Stream closed");
+        
+        this.buffer[this.ptr++] = (byte)b;
+        if (this.ptr == this.buffer.length)
+            sendChunk(false);
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (this.closed)
+            throw new IOException("Stream closed");
+        
+        int o = off, n = len;
+        while (n > 0)
+        {
+            final int m = Math.min(n, this.buffer.length - this.ptr);
+            System.arraycopy(b, o, this.buffer, this.ptr, m);
+            this.ptr += m;
+            o += m;
+            n -= m;
+            if (this.ptr == this.buffer.length)
+                sendChunk(false);
+        }
+    }
+    
+    
+    /**
+     * Sends the buffered data, if any, as a chunk
+     * 
+     * @throws  IOException  On I/O error
+     */
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        if ((this.closed == false) && (this.ptr > 0))
+            sendChunk(false);
+    }
+    
+    
+    /**
+     * Sends the buffered data as the last chunk
+     * 
+     * @throws  IOException  On I/O error
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (this.closed)
+            return;
+        sendChunk(true);
+        this.closed = true;
+    }
+    
+    
+    /**
+     * Sends the buffered data as a chunk
+     * 
+     * @param  last  Whether this is the last chunk
+     * 
+     * @throws  IOException  On I/O error
+     */
+    private void sendChunk(final boolean last) throws IOException
+    {
+        final byte[] data = new byte[this.ptr];
+        System.arraycopy(this.buffer, 0, data, 0, this.ptr);
+        this.ptr = 0;
+        
+        final StreamChunk chunk = new StreamChunk(this.stream, this.index++, last, data);
+        final String type = StreamChunk.MESSAGE_TYPE;
+        final Packet packet;
+        
+        if      (this.receivers.length == 0)  packet = this.factory.createBroadcast(chunk, type);
+        else if (this.receivers.length == 1)  packet = this.factory.createUnicast(chunk, type, this.receivers[0]);
+        else                                  packet = this.factory.createMulticast(chunk, type, this.receivers);
+        
+        this.hub.send(packet);
+    }
+    
+}
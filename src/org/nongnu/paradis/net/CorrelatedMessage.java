@@ -0,0 +1,75 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+import org.nongnu.paradis.io.*;
+
+
+/**
+ * Envelope for a request or reply sent with a {@link Correlator}
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@Transferable
+public class CorrelatedMessage
+{
+    /**
+     * The message type used for packets carrying correlated messages
+     */
+    public static final String MESSAGE_TYPE = "paradis correlated message";
+    
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  correlation  The identifier shared by a request and its reply
+     * @param  reply        Whether this is a reply, rather than a request
+     * @param  messageType  The type identifer for the enclosed message
+     * @param  payload      The enclosed message, in transfer form
+     */
+    public CorrelatedMessage(final UUID correlation, final boolean reply, final String messageType, final byte[] payload)
+    {
+        this.correlation = correlation;
+        this.reply       = reply;
+        this.messageType = messageType;
+        this.payload     = payload;
+    }
+    
+    
+    
+    /**
+     * The identifier shared by a request and its reply
+     */
+    public final UUID correlation;
+    
+    /**
+     * Whether this is a reply, rather than a request
+     */
+    public final boolean reply;
+    
+    /**
+     * The type identifer for the enclosed message
+     */
+    public final String messageType;
+    
+    /**
+     * The enclosed message, in transfer form
+     */
+    public final byte[] payload;
+    
+}
@@ -0,0 +1,294 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+import org.nongnu.paradis.net.messages.*;
+import org.nongnu.paradis.io.*;
+import org.nongnu.paradis.util.*;
+import org.nongnu.paradis.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+
+/**
+ * <p>Request/reply layer on top of {@link Packet}s</p>
+ * <p>
+ *   Requests are sent in {@link CorrelatedMessage} envelopes tagged with a new
+ *   correlation identifier, and the receiver broadcasts them as {@link RequestReceived}.
+ *   Replies are matched against the table of pending requests and complete the
+ *   requester's {@link PendingReply} directly, without being broadcasted.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class Correlator
+{
+    /**
+     * The default number of milliseconds to wait for a reply
+     */
+    public static final int DEFAULT_TIME_OUT = 30_000;
+    
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  hub      The hub to send the requests and replies with
+     * @param  factory  The packet factory used to create the packets
+     */
+    public Correlator(final Hub hub, final PacketFactory factory)
+    {
+        this.hub = hub;
+        this.factory = factory;
+    }
+    
+    
+    
+    /**
+     * Fails timed out requests, shared by all correlators
+     */
+    private static final ScheduledThreadPoolExecutor timer;
+    
+    /**
+     * The hub to send the requests and replies with
+     */
+    private final Hub hub;
+    
+    /**
+     * The packet factory used to create the packets
+     */
+    private final PacketFactory factory;
+    
+    /**
+     * Requests that are waiting for a reply, by correlation identifier
+     */
+    private final ConcurrentHashMap<UUID, PendingReply> pending = new ConcurrentHashMap<>();
+    
+    
+    
+    /**
+     * Class initialiser
+     */
+    static
+    {
+        timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public Thread newThread(final Runnable runnable)
+                    {   return Blackboard.DAEMON_THREADING.createThread(runnable);
+                }   });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+    
+    
+    
+    /**
+     * Sends a request and waits at most {@link #DEFAULT_TIME_OUT} milliseconds for the reply
+     * 
+     * @param   receiver     The receiver of the request
+     * @param   message      The request
+     * @param   messageType  The request's type identifier
+     * @return               The future reply
+     * 
+     * @throws  IOException  If the request could not be sent
+     */
+    public PendingReply call(final UUID receiver, final Object message, final String messageType) throws IOException
+    {
+        return call(receiver, message, messageType, DEFAULT_TIME_OUT);
+    }
+    
+    
+    /**
+     * Sends a request
+     * 
+     * @param   receiver     The receiver of the request
+     * @param   message      The request
+     * @param   messageType  The request's type identifier
+     * @param   timeout      The number of milliseconds to wait for the reply before the request fails
+     * @return               The future reply
+     * 
+     * @throws  IOException  If the request could not be sent
+     */
+    public PendingReply call(final UUID receiver, final Object message, final String messageType, final long timeout) throws IOException
+    {
+        final UUID correlation = new UUID();
+        final PendingReply reply = new PendingReply(this, correlation, receiver);
+        final CorrelatedMessage request = new CorrelatedMessage(correlation, false, messageType, encode(message));
+        
+        this.pending.put(correlation, reply);
+        reply.timeout = timer.schedule(new Runnable()
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public void run()
+                    {   if (Correlator.this.pending.remove(correlation, reply))
+                            reply.fail(new TimeoutException("No reply within " + timeout + " ms"));
+                }   }, timeout, TimeUnit.MILLISECONDS);
+        
+        try
+        {   this.hub.send(this.factory.createUnicast(request, CorrelatedMessage.MESSAGE_TYPE, receiver));
+        }
+        catch (final IOException err)
+        {   forget(reply);
+            reply.fail(err);
+            throw err;
+        }
+        return reply;
+    }
+    
+    
+    /**
+     * Sends the reply to a request
+     * 
+     * @param   request      The request
+     * @param   message      The reply
+     * @param   messageType  The reply's type identifier
+     * 
+     * @throws  IOException  If the reply could not be sent
+     */
+    public void reply(final RequestReceived request, final Object message, final String messageType) throws IOException
+    {
+        final CorrelatedMessage reply = new CorrelatedMessage(request.correlation, true, messageType, encode(message));
+        this.hub.send(this.factory.createUnicast(reply, CorrelatedMessage.MESSAGE_TYPE, request.packet.cast.getSender()));
+    }
+    
+    
+    /**
+     * Hands over a received packet carrying a {@link CorrelatedMessage}
+     * 
+     * @param   packet  The packet
+     * @return          The request to broadcast, {@code null} if the packet carried a reply,
+     *                  which has been matched with its request, or was unusable
+     */
+    public RequestReceived offer(final Packet packet)
+    {
+        final CorrelatedMessage envelope = (CorrelatedMessage)(packet.message);
+        
+        if (envelope.reply)
+        {
+            final PendingReply reply = this.pending.get(envelope.correlation);
+            if (reply == null)
+            {   Log.debug("Discarding late or unrequested reply: %s", envelope.correlation);
+                return null;
+            }
+            if (reply.receiver.equals(packet.cast.getSender()) == false)
+            {   Log.warning("Discarding reply %s from %s, the request was sent to %s", envelope.correlation, packet.cast.getSender(), reply.receiver);
+                return null;
+            }
+            if (this.pending.remove(envelope.correlation, reply) == false)
+                return null; /* timed out or cancelled meanwhile */
+            final ScheduledFuture<?> timeout = reply.timeout;
+            if (timeout != null)
+                timeout.cancel(false);
+            try
+            {   reply.complete(decode(envelope.payload, envelope.messageType), envelope.messageType);
+            }
+            catch (final IOException err)
+            {   reply.fail(err);
+            }
+            return null;
+        }
+        
+        try
+        {   return new RequestReceived(packet, envelope.correlation, decode(envelope.payload, envelope.messageType), envelope.messageType);
+        }
+        catch (final IOException err)
+        {   Log.warning("Discarding malformed request %s: %s", envelope.correlation, err);
+            return null;
+        }
+    }
+    
+    
+    /**
+     * Gets the number of requests that are waiting for a reply
+     * 
+     * @return  The number of pending requests
+     */
+    public int getPendingCount()
+    {
+        return this.pending.size();
+    }
+    
+    
+    /**
+     * Fails all requests that are waiting for a reply
+     */
+    public void close()
+    {
+        for (final PendingReply reply : this.pending.values())
+        {   forget(reply);
+            reply.fail(new IOException("Closed before reply was received"));
+        }
+    }
+    
+    
+    /**
+     * Stops waiting for a reply
+     * 
+     * @param  reply  The pending reply
+     */
+    void forget(final PendingReply reply)
+    {
+        this.pending.remove(reply.correlation, reply);
+        final ScheduledFuture<?> timeout = reply.timeout;
+        if (timeout != null)
+            timeout.cancel(false);
+    }
+    
+    
+    /**
+     * Converts a message to transfer form
+     * 
+     * @param   message  The message
+     * @return           The message in transfer form
+     * 
+     * @throws  IOException  If the message cannot be transfered
+     */
+    private static byte[] encode(final Object message) throws IOException
+    {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final TransferOutputStream tos = TransferStreamPool.output(buf))
+        {   tos.writeObject(message);
+        }
+        return buf.toByteArray();
+    }
+    
+    
+    /**
+     * Converts a message from transfer form
+     * 
+     * @param   payload      The message in transfer form
+     * @param   messageType  The message's type identifier
+     * @return               The message, the payload itself if the type identifier is not registered
+     * 
+     * @throws  IOException  If the payload is malformed
+     */
+    private static Object decode(final byte[] payload, final String messageType) throws IOException
+    {
+        final Class<?> messageClass = TransferProtocolRegister.getClassByID(messageType);
+        if (messageClass == null)
+            return payload;
+        try (final TransferInputStream tis = TransferStreamPool.input(new ByteArrayInputStream(payload)))
+        {   return tis.readObject(messageClass);
+        }
+    }
+    
+}
@@ -89,9 +89,9 @@ public class Hub
     protected final UDPServer server;
     
     /**
-     * Packet inbox deque
+     * Packet inbox
      */
-    protected final ArrayDeque<Packet> inbox = new ArrayDeque<>();
+    protected final Inbox inbox = new Inbox(NetConf.getUrgentQuantum(), NetConf.getFairInbox());
     
     /**
      * Hosted sockets
@@ -155,17 +155,43 @@ public class Hub
      */
     public Packet receive()
     {
-        synchronized (this.inbox)
-        {
-            if (this.inbox.isEmpty())
-                try
-                {   this.inbox.wait();
-                }
-                catch (final InterruptedException err)
-                {   return null;
-                }
-            
-            return this.inbox.pollFirst();
+        try
+        {   return this.inbox.take();
+        }
+        catch (final InterruptedException err)
+        {   return null;
+        }
+    }
+    
+    
+    /**
+     * Gets the link compression statistics for a peer
+     * 
+     * @param   peer  The peer
+     * @return        The statistics for the link to the peer, {@code null} if there is no direct link
+     */
+    public LinkStatistics getLinkStatistics(final UUID peer)
+    {
+        synchronized (this.sockets)
+        {   final UDPSocket socket = this.uuidSockets.get(peer);
+            return socket == null ? null : socket.statistics;
+        }
+    }
+    
+    
+    /**
+     * Fetches as many packets as there are in the inbox, up to a limit, and waits for one if it is empty
+     * 
+     * @param   packets  Array to store the packets in, its length is the limit
+     * @return           The number of fetched packets, zero if interrupted
+     */
+    public int receive(final Packet[] packets)
+    {
+        try
+        {   return this.inbox.drain(packets);
+        }
+        catch (final InterruptedException err)
+        {   return 0;
         }
     }
     
@@ -187,11 +213,7 @@ public class Hub
         packet.cast.addReceived(this.localUser.getUUID());
         
         if (packet.alsoSendToSelf)
-            synchronized (this.inbox)
-            {
-                if (packet.urgent)  this.inbox.offerFirst(packet);
-                else                this.inbox.offerLast(packet);
-            }
+            this.inbox.offer(packet);
         
         if ((packet.packetAge = 0) < packet.timeToLive)
             route(packet);
@@ -325,11 +347,7 @@ public class Hub
                                     throw new Error("Update cast list in ~.net.Hub");
                                 
                                 if (mine)
-                                    synchronized (Hub.this.inbox)
-                                    {   if (packet.urgent)  Hub.this.inbox.offerFirst(packet);
-                                        else                Hub.this.inbox.offerLast(packet);
-                                        Hub.this.inbox.notifyAll();
-                                    }
+                                    Hub.this.inbox.offer(packet);
                                 
                                 if (route)
                                     if (packet.packetAge < packet.timeToLive)
@@ -0,0 +1,209 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+
+import java.util.*;
+
+
+/**
+ * <p>Multi-level packet inbox</p>
+ * <p>
+ *   Urgent packets and other packets are kept in separate FIFO queues, so the order
+ *   of packets is kept within each level. The levels are drained with deficit round
+ *   robin: up to {@code urgentQuantum} urgent packets are received for each other
+ *   packet, so urgent packets stay fast but cannot starve the other packets. With
+ *   fair queueing, the other packets are queued per sender, and the senders take turns.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class Inbox
+{
+    /**
+     * Constructor
+     * 
+     * @param  urgentQuantum  The number of urgent packets that may be received in a row while other packets are waiting
+     * @param  fair           Whether non-urgent packets from different senders are received in turns
+     */
+    public Inbox(final int urgentQuantum, final boolean fair)
+    {
+        assert urgentQuantum > 0 : "Invalid urgent quantum: " + urgentQuantum;
+        
+        this.urgentQuantum = urgentQuantum;
+        this.fair = fair;
+    }
+    
+    
+    
+    /**
+     * The number of urgent packets that may be received in a row while other packets are waiting
+     */
+    private final int urgentQuantum;
+    
+    /**
+     * Whether non-urgent packets from different senders are received in turns
+     */
+    private final boolean fair;
+    
+    /**
+     * Urgent packets
+     */
+    private final ArrayDeque<Packet> urgent = new ArrayDeque<>();
+    
+    /**
+     * Non-urgent packets, used if not fair
+     */
+    private final ArrayDeque<Packet> normal = new ArrayDeque<>();
+    
+    /**
+     * Non-urgent packets per sender, used if fair
+     */
+    private final HashMap<UUID, ArrayDeque<Packet>> senders = new HashMap<>();
+    
+    /**
+     * The non-empty queues in {@link #senders}, in turn order
+     */
+    private final ArrayDeque<ArrayDeque<Packet>> turns = new ArrayDeque<>();
+    
+    /**
+     * The number of urgent packets that has been received since the last non-urgent packet
+     */
+    private int urgentDeficit = 0;
+    
+    /**
+     * The number of non-urgent packets
+     */
+    private int normalSize = 0;
+    
+    
+    
+    /**
+     * Adds a packet to the inbox
+     * 
+     * @param  packet  The packet
+     */
+    public synchronized void offer(final Packet packet)
+    {
+        if (packet.urgent)
+            this.urgent.offerLast(packet);
+        else if (this.fair == false)
+            this.normal.offerLast(packet);
+        else
+        {   final UUID sender = packet.cast.getSender();
+            ArrayDeque<Packet> queue = this.senders.get(sender);
+            if (queue == null)
+            {   this.senders.put(sender, queue = new ArrayDeque<>());
+                this.turns.offerLast(queue);
+            }
+            queue.offerLast(packet);
+        }
+        
+        if (packet.urgent == false)
+            this.normalSize++;
+        this.notifyAll();
+    }
+    
+    
+    /**
+     * Fetches the next packet, without waiting
+     * 
+     * @return  The next packet, {@code null} if the inbox is empty
+     */
+    public synchronized Packet poll()
+    {
+        if ((this.urgent.isEmpty() == false) && ((this.normalSize == 0) || (this.urgentDeficit < this.urgentQuantum)))
+        {   this.urgentDeficit++;
+            return this.urgent.pollFirst();
+        }
+        
+        if (this.normalSize == 0)
+            return null;
+        
+        this.urgentDeficit = 0;
+        this.normalSize--;
+        
+        if (this.fair == false)
+            return this.normal.pollFirst();
+        
+        final ArrayDeque<Packet> queue = this.turns.pollFirst();
+        final Packet packet = queue.pollFirst();
+        if (queue.isEmpty())
+            this.senders.remove(packet.cast.getSender());
+        else
+            this.turns.offerLast(queue);
+        return packet;
+    }
+    
+    
+    /**
+     * Fetches the next packet, and waits for one if the inbox is empty
+     * 
+     * @return  The next packet
+     * 
+     * @throws  InterruptedException  If the thread was interrupted while waiting
+     */
+    public synchronized Packet take() throws InterruptedException
+    {
+        while (isEmpty())
+            this.wait();
+        return poll();
+    }
+    
+    
+    /**
+     * Fetches as many packets as there are, up to a limit, and waits for one if the inbox is empty
+     * 
+     * @param   packets  Array to store the packets in, its length is the limit
+     * @return           The number of fetched packets
+     * 
+     * @throws  InterruptedException  If the thread was interrupted while waiting
+     */
+    public synchronized int drain(final Packet[] packets) throws InterruptedException
+    {
+        while (isEmpty())
+            this.wait();
+        int n = 0;
+        Packet packet;
+        while ((n < packets.length) && ((packet = poll()) != null))
+            packets[n++] = packet;
+        return n;
+    }
+    
+    
+    /**
+     * Gets whether the inbox is empty
+     * 
+     * @return  Whether the inbox is empty
+     */
+    public synchronized boolean isEmpty()
+    {
+        return this.urgent.isEmpty() && (this.normalSize == 0);
+    }
+    
+    
+    /**
+     * Gets the number of packets in the inbox
+     * 
+     * @return  The number of packets in the inbox
+     */
+    public synchronized int size()
+    {
+        return this.urgent.size() + this.normalSize;
+    }
+    
+}
@@ -39,6 +39,11 @@ public class Interface implements Blackboard.BlackboardObserver
      */
     private static final String CONNECTION_CACHE_FILE = FSH.CACHE + "connections";
     
+    /**
+     * The maximum number of packets broadcasted in one {@link PacketsReceived}
+     */
+    public static final int BATCH_SIZE = 64;
+    
     
     
     /**
@@ -49,15 +54,17 @@ public class Interface implements Blackboard.BlackboardObserver
      * 
      * @throws  IOException  On I/O error
      */
+    @SuppressWarnings("unchecked")
     public Interface(final int localPort, final User localUser) throws IOException
     {
         final Blackboard blackboard;
-        (blackboard = Blackboard.getInstance(null)).registerObserver(this);
+        (blackboard = Blackboard.getDefault()).registerObserver(this, JoinMulticastGroup.class, LeaveMulticastGroup.class, MakeConnection.class, SendPacket.class);
         
         this.hub = new Hub(localPort, localUser);
         
         this.localPort = this.hub.localPort;
         this.localUser = this.hub.localUser;
+        this.correlator = new Correlator(this.hub, new PacketFactory(this.localUser, false, false, (short)16));
         
         final Thread receiveThread = new Thread("Network interface packet receiver")
                 {
@@ -67,8 +74,52 @@ public class Interface implements Blackboard.BlackboardObserver
                     @Override
                     public void run()
                     {
+                        final Packet[] buffer = new Packet[BATCH_SIZE];
                         while (Interface.this.closed == false)
-                            blackboard.broadcastMessage(new PacketReceived(Interface.this.receive()));
+                        {
+                            final int n = Interface.this.receive(buffer);
+                            final Packet[] batch = new Packet[n];
+                            int m = 0;
+                            
+                            for (int i = 0; i < n; i++)
+                            {
+                                final Packet packet = buffer[i];
+                                buffer[i] = null;
+                                if (packet.message instanceof StreamChunk)
+                                {
+                                    final ChunkedInputStream stream = Interface.this.assembler.offer(packet);
+                                    if (stream != null)
+                                    {   m = flush(batch, m); /* keep arrival order */
+                                        blackboard.broadcastMessage(new StreamReceived(packet, stream));
+                                }   }
+                                else if (packet.message instanceof CorrelatedMessage)
+                                {
+                                    final RequestReceived request = Interface.this.correlator.offer(packet);
+                                    if (request != null)
+                                    {   m = flush(batch, m); /* keep arrival order */
+                                        blackboard.broadcastMessage(request);
+                                }   }
+                                else
+                                    batch[m++] = packet;
+                            }
+                            
+                            flush(batch, m);
+                        }
+                    }
+                    
+                    
+                    /**
+                     * Broadcasts the packets batched so far
+                     * 
+                     * @param   batch  The batch buffer
+                     * @param   m      The number of packets in the batch
+                     * @return         The new number of packets in the batch, that is, zero
+                     */
+                    private int flush(final Packet[] batch, final int m)
+                    {
+                        if (m > 0)
+                            blackboard.broadcastMessage(new PacketsReceived(m == batch.length ? batch : Arrays.copyOf(batch, m)));
+                        return 0;
                     }
                 };
         
@@ -141,6 +192,16 @@ public class Interface implements Blackboard.BlackboardObserver
      */
     public final Hub hub;
     
+    /**
+     * Assembles received streamed messages
+     */
+    protected final StreamAssembler assembler = new StreamAssembler();
+    
+    /**
+     * Sends requests and matches received replies with them
+     */
+    public final Correlator correlator;
+    
     /**
      * Whether the interface has been closed
      */
@@ -166,6 +227,33 @@ public class Interface implements Blackboard.BlackboardObserver
     Packet receive()
     {
         final Packet packet = this.hub.receive();
+        received(packet);
+        return packet;
+    }
+    
+    
+    /**
+     * Fetches as many packets as there are in the inbox, up to a limit, and waits for one if it is empty
+     * 
+     * @param   packets  Array to store the packets in, its length is the limit
+     * @return           The number of fetched packets
+     */
+    int receive(final Packet[] packets)
+    {
+        final int n = this.hub.receive(packets);
+        for (int i = 0; i < n; i++)
+            received(packets[i]);
+        return n;
+    }
+    
+    
+    /**
+     * Learns the sender's address from a received packet, and connects to it if not already connected
+     * 
+     * @param  packet  The received packet
+     */
+    private void received(final Packet packet)
+    {
         final Cast cast = packet.cast;
         String address = null;
         UUID sender = null;
@@ -176,7 +264,7 @@ public class Interface implements Blackboard.BlackboardObserver
         else
             throw new Error("Update cast list in ~.net.Interface");
         
-        System.err.println("Receiving packet from: " + address);
+        Log.debug("Receiving packet from: %s", address);
         
         if (address != null)
         {   synchronized (this.connectionCacheQueue)
@@ -218,8 +306,6 @@ public class Interface implements Blackboard.BlackboardObserver
             catch (final Exception ignore)
             {   //Ignore
             }
-        
-        return packet;
     }
     
     
@@ -230,7 +316,7 @@ public class Interface implements Blackboard.BlackboardObserver
      * @param  remotePort     The remote machine's port
      */
     private void connect(final InetAddress remoteAddress, final int remotePort)
-    {   System.err.println("Connecting to: " + remoteAddress + ":" + remotePort);
+    {   Log.info("Connecting to: %s:%s", remoteAddress, Integer.valueOf(remotePort));
         this.hub.connect(remoteAddress, remotePort);
     }
     
@@ -274,7 +360,8 @@ public class Interface implements Blackboard.BlackboardObserver
      */
     public void close() throws IOException
     {   this.hub.close();
-        Blackboard.getInstance(null).unregisterObserver(this);
+        this.correlator.close();
+        Blackboard.getDefault().unregisterObserver(this);
         this.closed = true;
         synchronized (this.connectionCacheQueue)
         {   this.connectionCacheQueue.notifyAll();
@@ -310,7 +397,7 @@ public class Interface implements Blackboard.BlackboardObserver
     {
         TransferOutputStream tos = null;
         try
-        {   tos = new TransferOutputStream(new FileOutputStream(new File(CONNECTION_CACHE_FILE)));
+        {   tos = TransferStreamPool.output(new FileOutputStream(new File(CONNECTION_CACHE_FILE)));
             final Set<WrapperReference<String>> refs = this.connectionCacheSet.keySet();
             tos.writeLen(refs.size());
             for (final WrapperReference<String> ref : refs)
@@ -318,7 +405,7 @@ public class Interface implements Blackboard.BlackboardObserver
             tos.flush();
         }
         catch (final Throwable err)
-        {   System.err.println("WARNING: unable to save connection cache: " + err.toString());
+        {   Log.warning("unable to save connection cache: %s", err);
         }
         finally
         {   if (tos != null)
@@ -340,14 +427,14 @@ public class Interface implements Blackboard.BlackboardObserver
         String[] cache = null;
         TransferInputStream tis = null;
         try
-        {   tis = new TransferInputStream(new FileInputStream(new File(CONNECTION_CACHE_FILE)));
+        {   tis = TransferStreamPool.input(new FileInputStream(new File(CONNECTION_CACHE_FILE)));
             final int count = tis.readLen();
             cache = new String[count];
             for (int i = 0; i < count; i++)
                 cache[i] = tis.readObject(String.class);
         }
         catch (final Throwable err)
-        {   System.err.println("WARNING: unable to load connection cache: " + err.toString());
+        {   Log.warning("unable to load connection cache: %s", err);
         }
         finally
         {   if (tis != null)
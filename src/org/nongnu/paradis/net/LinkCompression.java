@@ -0,0 +1,242 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+
+import org.tukaani.xz.*;
+
+import java.io.*;
+import java.util.zip.*;
+import java.lang.management.*;
+
+
+/**
+ * <p>Codecs for compressing datagram payloads on a link</p>
+ * <p>
+ *   {@link #DEFLATE} is fast and should be used for bulk data,
+ *   {@link #LZMA2} is slow but compresses better on slow links.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class LinkCompression
+{
+    /**
+     * Codec identifier: no compression
+     */
+    public static final int NONE = 0;
+    
+    /**
+     * Codec identifier: raw deflate, at fastest level
+     */
+    public static final int DEFLATE = 1;
+    
+    /**
+     * Codec identifier: raw LZMA2, with a small dictionary
+     */
+    public static final int LZMA2 = 2;
+    
+    /**
+     * Bit mask of the supported codecs, bit <i>n</i> is set if codec <i>n</i> is supported
+     */
+    public static final int SUPPORTED = (1 << DEFLATE) | (1 << LZMA2);
+    
+    /**
+     * The LZMA2 dictionary size, datagrams are small so there is no need for more
+     */
+    private static final int LZMA2_DICT_SIZE = 1 << 16;
+    
+    /**
+     * Thread CPU time source, {@code null} if not supported
+     */
+    private static final ThreadMXBean threads;
+    
+    
+    
+    /**
+     * Non-constructor
+     */
+    private LinkCompression()
+    {
+        assert false : "You may not create instances of this class [LinkCompression].";
+    }
+    
+    
+    
+    /**
+     * Class initialiser
+     */
+    static
+    {
+        ThreadMXBean bean = null;
+        try
+        {   bean = ManagementFactory.getThreadMXBean();
+            if (bean.isCurrentThreadCpuTimeSupported() == false)
+                bean = null;
+            else if (bean.isThreadCpuTimeEnabled() == false)
+                bean.setThreadCpuTimeEnabled(true);
+        }
+        catch (final Throwable ignore)
+        {   bean = null;
+        }
+        threads = bean;
+    }
+    
+    
+    
+    /**
+     * Gets the CPU time used by the current thread, or the wall clock
+     * time if that is not supported, only differences are meaningful
+     * 
+     * @return  The time in nanoseconds
+     */
+    public static long time()
+    {
+        return threads == null ? System.nanoTime() : threads.getCurrentThreadCpuTime();
+    }
+    
+    
+    /**
+     * Gets the name of a codec
+     * 
+     * @param   codec  The codec identifier
+     * @return         The name of the codec, {@code null} if unknown
+     */
+    public static String getName(final int codec)
+    {
+        switch (codec)
+        {
+            case NONE:     return "none";
+            case DEFLATE:  return "deflate";
+            case LZMA2:    return "lzma2";
+            default:       return null;
+        }
+    }
+    
+    
+    /**
+     * Gets a codec by its name
+     * 
+     * @param   name  The name of the codec
+     * @return        The codec identifier, -1 if unknown
+     */
+    public static int getCodec(final String name)
+    {
+        for (int codec = 0; codec < 3; codec++)
+            if (getName(codec).equals(name))
+                return codec;
+        return -1;
+    }
+    
+    
+    /**
+     * Compresses data
+     * 
+     * @param   codec     The codec identifier
+     * @param   deflater  Deflater to use for {@link #DEFLATE}, it is reset after use
+     * @param   data      The data buffer
+     * @param   off       The offset of the data in the buffer
+     * @param   len       The length of the data
+     * @return            The compressed data, {@code null} if it was not smaller than {@code len} bytes
+     * 
+     * @throws  IOException  On compression error
+     */
+    public static byte[] compress(final int codec, final Deflater deflater, final byte[] data, final int off, final int len) throws IOException
+    {
+        if (codec == DEFLATE)
+        {
+            final byte[] buf = new byte[len];
+            int n;
+            try
+            {   deflater.setInput(data, off, len);
+                deflater.finish();
+                n = deflater.deflate(buf, 0, len);
+                if (deflater.finished() == false)
+                    return null;
+            }
+            finally
+            {   deflater.reset();
+            }
+            final byte[] rc = new byte[n];
+            System.arraycopy(buf, 0, rc, 0, n);
+            return rc;
+        }
+        
+        if (codec == LZMA2)
+        {
+            final LZMA2Options options = new LZMA2Options(0);
+            options.setDictSize(LZMA2_DICT_SIZE);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(len);
+            try (final FinishableOutputStream os = options.getOutputStream(new FinishableWrapperOutputStream(bytes)))
+            {   os.write(data, off, len);
+                os.finish();
+            }
+            return bytes.size() < len ? bytes.toByteArray() : null;
+        }
+        
+        throw new IOException("Unsupported link compression codec: " + codec);
+    }
+    
+    
+    /**
+     * Decompresses data
+     * 
+     * @param   codec     The codec identifier
+     * @param   inflater  Inflater to use for {@link #DEFLATE}, it is reset after use
+     * @param   data      The data buffer
+     * @param   off       The offset of the data in the buffer
+     * @param   len       The length of the data
+     * @param   max       The maximum length of the decompressed data
+     * @return            The decompressed data
+     * 
+     * @throws  IOException  On decompression error
+     */
+    public static byte[] decompress(final int codec, final Inflater inflater, final byte[] data, final int off, final int len, final int max) throws IOException
+    {
+        final byte[] buf = new byte[max];
+        int n = 0;
+        
+        if (codec == DEFLATE)
+            try
+            {   inflater.setInput(data, off, len);
+                n = inflater.inflate(buf, 0, max);
+                if (inflater.finished() == false)
+                    throw new IOException("Truncated or oversized compressed datagram");
+            }
+            catch (final DataFormatException err)
+            {   throw new IOException(err);
+            }
+            finally
+            {   inflater.reset();
+            }
+        else if (codec == LZMA2)
+            try (final InputStream is = new LZMA2InputStream(new ByteArrayInputStream(data, off, len), LZMA2_DICT_SIZE))
+            {   int r;
+                while ((n < max) && ((r = is.read(buf, n, max - n)) > 0))
+                    n += r;
+                if ((n == max) && (is.read() >= 0))
+                    throw new IOException("Oversized compressed datagram");
+            }
+        else
+            throw new IOException("Unsupported link compression codec: " + codec);
+        
+        final byte[] rc = new byte[n];
+        System.arraycopy(buf, 0, rc, 0, n);
+        return rc;
+    }
+    
+}
@@ -0,0 +1,175 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+
+
+/**
+ * Compression statistics for a link to a peer
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class LinkStatistics
+{
+    //Has default constructor
+    
+    
+    
+    /**
+     * The number of payload bytes that has been sent, before compression
+     */
+    private long rawBytes = 0;
+    
+    /**
+     * The number of payload bytes that has been sent, after compression
+     */
+    private long sentBytes = 0;
+    
+    /**
+     * The number of datagrams that has been sent compressed
+     */
+    private long compressedDatagrams = 0;
+    
+    /**
+     * The number of datagrams that has been sent uncompressed
+     */
+    private long rawDatagrams = 0;
+    
+    /**
+     * CPU time spent compressing, in nanoseconds
+     */
+    private long compressTime = 0;
+    
+    /**
+     * CPU time spent decompressing, in nanoseconds
+     */
+    private long decompressTime = 0;
+    
+    
+    
+    /**
+     * Records a sent datagram
+     * 
+     * @param  raw         The payload size before compression
+     * @param  sent        The payload size after compression
+     * @param  compressed  Whether the payload was compressed
+     * @param  time        CPU time spent compressing, in nanoseconds
+     */
+    synchronized void sent(final int raw, final int sent, final boolean compressed, final long time)
+    {
+        this.rawBytes += raw;
+        this.sentBytes += sent;
+        if (compressed)  this.compressedDatagrams++;
+        else             this.rawDatagrams++;
+        this.compressTime += time;
+    }
+    
+    
+    /**
+     * Records a decompressed datagram
+     * 
+     * @param  time  CPU time spent decompressing, in nanoseconds
+     */
+    synchronized void received(final long time)
+    {
+        this.decompressTime += time;
+    }
+    
+    
+    /**
+     * Gets the ratio between sent and unsent payload size
+     * 
+     * @return  The compression ratio, 1 if nothing has been sent
+     */
+    public synchronized double getCompressionRatio()
+    {   return this.rawBytes == 0 ? 1. : ((double)(this.sentBytes) / (double)(this.rawBytes));
+    }
+    
+    
+    /**
+     * Gets the number of payload bytes that has been sent, before compression
+     * 
+     * @return  The number of payload bytes before compression
+     */
+    public synchronized long getRawBytes()
+    {   return this.rawBytes;
+    }
+    
+    
+    /**
+     * Gets the number of payload bytes that has been sent, after compression
+     * 
+     * @return  The number of payload bytes after compression
+     */
+    public synchronized long getSentBytes()
+    {   return this.sentBytes;
+    }
+    
+    
+    /**
+     * Gets the number of datagrams that has been sent compressed
+     * 
+     * @return  The number of compressed datagrams
+     */
+    public synchronized long getCompressedDatagrams()
+    {   return this.compressedDatagrams;
+    }
+    
+    
+    /**
+     * Gets the number of datagrams that has been sent uncompressed
+     * 
+     * @return  The number of uncompressed datagrams
+     */
+    public synchronized long getRawDatagrams()
+    {   return this.rawDatagrams;
+    }
+    
+    
+    /**
+     * Gets the CPU time spent compressing
+     * 
+     * @return  The time in nanoseconds
+     */
+    public synchronized long getCompressTime()
+    {   return this.compressTime;
+    }
+    
+    
+    /**
+     * Gets the CPU time spent decompressing
+     * 
+     * @return  The time in nanoseconds
+     */
+    public synchronized long getDecompressTime()
+    {   return this.decompressTime;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return "ratio: " + getCompressionRatio() +
+               ", bytes: " + this.sentBytes + "/" + this.rawBytes +
+               ", datagrams: " + this.compressedDatagrams + " compressed, " + this.rawDatagrams + " raw" +
+               ", cpu: " + (this.compressTime / 1000000) + " ms compressing, " + (this.decompressTime / 1000000) + " ms decompressing";
+    }
+    
+}
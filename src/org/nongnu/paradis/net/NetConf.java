@@ -62,6 +62,10 @@ public class NetConf
         Configurations.defaultSetting(HIVE, "connections", "100");
         Configurations.defaultSetting(HIVE, "delaytime", "5000");
         Configurations.defaultSetting(HIVE, "delatlimit", "20");
+        Configurations.defaultSetting(HIVE, "compression", "deflate");
+        Configurations.defaultSetting(HIVE, "compressionthreshold", "512");
+        Configurations.defaultSetting(HIVE, "urgentquantum", "8");
+        Configurations.defaultSetting(HIVE, "fairinbox", "yes");
     }
     
     
@@ -248,5 +252,135 @@ public class NetConf
         Configurations.setSetting(HIVE, "delaylimit", Integer.toString(value));
     }
     
+    
+    /**
+     * Gets the codec used to compress datagrams on links to peers that support it
+     * 
+     * @return  The codec, as defined in {@link LinkCompression}
+     */
+    public static int getCompression()
+    {
+        final String value = Configurations.getSetting(HIVE, "compression");
+        final int rc = LinkCompression.getCodec(value);
+        if (rc < 0)
+        {   System.err.println("Unknown link compression codec: " + value);
+            System.err.println("Link compression set to default: deflate");
+            setCompression(LinkCompression.DEFLATE);
+            return LinkCompression.DEFLATE;
+        }
+        return rc;
+    }
+    
+    /**
+     * Sets the codec used to compress datagrams on links to peers that support it
+     * 
+     * @param  value  The codec, as defined in {@link LinkCompression}
+     */
+    public static void setCompression(final int value)
+    {
+        Configurations.setSetting(HIVE, "compression", LinkCompression.getName(value));
+    }
+    
+    
+    /**
+     * Gets the smallest datagram payload, in bytes, that is compressed
+     * 
+     * @return  The compression threshold
+     */
+    public static int getCompressionThreshold()
+    {
+        final String value = Configurations.getSetting(HIVE, "compressionthreshold");
+        int rc = 0;
+        try
+        {   rc = Integer.parseInt(value);
+        }
+        catch (final Throwable err)
+        {   System.err.println("Unparsable value for compression threshold setting: " + value);
+            System.err.println("Compression threshold set to default: 512");
+            setCompressionThreshold(rc = 512);
+        }
+        if (rc < 0)
+        {   System.err.println("Negative compression threshold is not allowed: " + value);
+            System.err.println("Compression threshold set to default: 512");
+            setCompressionThreshold(rc = 512);
+        }
+        return rc;
+    }
+    
+    /**
+     * Sets the smallest datagram payload that is compressed
+     * 
+     * @param  value  The new compression threshold in bytes
+     */
+    public static void setCompressionThreshold(final int value)
+    {
+        Configurations.setSetting(HIVE, "compressionthreshold", Integer.toString(value));
+    }
+    
+    
+    /**
+     * Gets the number of urgent packets that may be received in a row while other packets are waiting
+     * 
+     * @return  The urgent packet quantum
+     */
+    public static int getUrgentQuantum()
+    {
+        final String value = Configurations.getSetting(HIVE, "urgentquantum");
+        int rc = 0;
+        try
+        {   rc = Integer.parseInt(value);
+        }
+        catch (final Throwable err)
+        {   System.err.println("Unparsable value for urgent quantum setting: " + value);
+            System.err.println("Urgent quantum set to default: 8");
+            setUrgentQuantum(rc = 8);
+        }
+        if (rc < 1)
+        {   System.err.println("Non-positive urgent quantum is not allowed: " + value);
+            System.err.println("Urgent quantum set to default: 8");
+            setUrgentQuantum(rc = 8);
+        }
+        return rc;
+    }
+    
+    /**
+     * Sets the number of urgent packets that may be received in a row while other packets are waiting
+     * 
+     * @param  value  The new urgent packet quantum
+     */
+    public static void setUrgentQuantum(final int value)
+    {
+        Configurations.setSetting(HIVE, "urgentquantum", Integer.toString(value));
+    }
+    
+    
+    /**
+     * Gets whether non-urgent packets from different senders are received in turns
+     * 
+     * @return  Whether the inbox has a fair queue per sender
+     */
+    public static boolean getFairInbox()
+    {
+        final String value = Configurations.getSetting(HIVE, "fairinbox");
+        if (value.equals("yes"))
+            return true;
+        if (value.equals("no") == false)
+        {   System.err.println("Unparsable value for fair inbox setting: " + value);
+            System.err.println("Fair inbox set to default: yes");
+            setFairInbox(true);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Sets whether non-urgent packets from different senders are received in turns
+     * 
+     * @param  value  Whether the inbox should have a fair queue per sender
+     */
+    public static void setFairInbox(final boolean value)
+    {
+        Configurations.setSetting(HIVE, "fairinbox", value ? "yes" : "no");
+    }
+    
 }
-
@@ -0,0 +1,226 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+
+import java.util.concurrent.*;
+
+
+/**
+ * The future reply to a request sent with a {@link Correlator}
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class PendingReply implements Future<Object>
+{
+    /**
+     * Constructor
+     * 
+     * @param  correlator   The correlator that sent the request
+     * @param  correlation  The identifier shared by the request and its reply
+     * @param  receiver     The receiver of the request, the only peer that may reply
+     */
+    PendingReply(final Correlator correlator, final UUID correlation, final UUID receiver)
+    {
+        this.correlator = correlator;
+        this.correlation = correlation;
+        this.receiver = receiver;
+    }
+    
+    
+    
+    /**
+     * The correlator that sent the request
+     */
+    private final Correlator correlator;
+    
+    /**
+     * The identifier shared by the request and its reply
+     */
+    public final UUID correlation;
+    
+    /**
+     * The receiver of the request, the only peer that may reply
+     */
+    public final UUID receiver;
+    
+    /**
+     * Task that fails the reply when it has timed out, {@code null} until it has been scheduled
+     */
+    volatile ScheduledFuture<?> timeout = null;
+    
+    /**
+     * Whether the reply has been completed, failed or cancelled
+     */
+    private boolean done = false;
+    
+    /**
+     * Whether the request has been cancelled
+     */
+    private boolean cancelled = false;
+    
+    /**
+     * The reply
+     */
+    private Object reply = null;
+    
+    /**
+     * The reply's type identifier
+     */
+    private String replyType = null;
+    
+    /**
+     * The reason the request failed
+     */
+    private Throwable failure = null;
+    
+    
+    
+    /**
+     * Completes the reply
+     * 
+     * @param   message      The reply
+     * @param   messageType  The reply's type identifier
+     * @return               Whether the reply was not already done
+     */
+    synchronized boolean complete(final Object message, final String messageType)
+    {
+        if (this.done)
+            return false;
+        this.reply = message;
+        this.replyType = messageType;
+        this.done = true;
+        this.notifyAll();
+        return true;
+    }
+    
+    
+    /**
+     * Fails the reply
+     * 
+     * @param   cause  The reason the request failed
+     * @return         Whether the reply was not already done
+     */
+    synchronized boolean fail(final Throwable cause)
+    {
+        if (this.done)
+            return false;
+        this.failure = cause;
+        this.done = true;
+        this.notifyAll();
+        return true;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+        synchronized (this)
+        {   if (this.done)
+                return false;
+            this.cancelled = this.done = true;
+            this.notifyAll();
+        }
+        this.correlator.forget(this);
+        return true;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean isCancelled()
+    {
+        return this.cancelled;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean isDone()
+    {
+        return this.done;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object get() throws InterruptedException, ExecutionException
+    {
+        while (this.done == false)
+            this.wait();
+        return result();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object get(final long time, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        final long end = System.nanoTime() + unit.toNanos(time);
+        while (this.done == false)
+        {   final long left = end - System.nanoTime();
+            if (left <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return result();
+    }
+    
+    
+    /**
+     * Gets the reply's type identifier, waiting for the reply if it has not arrived
+     * 
+     * @return  The reply's type identifier
+     * 
+     * @throws  InterruptedException  If the thread was interrupted while waiting
+     * @throws  ExecutionException    If the request timed out, or could not be sent
+     */
+    public synchronized String getMessageType() throws InterruptedException, ExecutionException
+    {
+        get();
+        return this.replyType;
+    }
+    
+    
+    /**
+     * Gets the result of a done reply, must be invoked while holding the monitor
+     * 
+     * @return  The reply
+     * 
+     * @throws  ExecutionException  If the request timed out, or could not be sent
+     */
+    private Object result() throws ExecutionException
+    {
+        if (this.cancelled)
+            throw new CancellationException();
+        if (this.failure != null)
+            throw new ExecutionException(this.failure);
+        return this.reply;
+    }
+    
+}
@@ -0,0 +1,159 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+
+import org.nongnu.paradis.util.*;
+
+import java.util.*;
+
+
+/**
+ * Routes received {@link StreamChunk}s to their {@link ChunkedInputStream}s
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class StreamAssembler
+{
+    //Has default constructor
+    
+    
+    
+    /**
+     * The number of finished streams to remember, so that late duplicate chunks are not taken for new streams
+     */
+    public static final int FINISHED_MEMORY = 1024;
+    
+    /**
+     * The number of incomplete streams a single sender may have at the same time
+     */
+    public static final int MAX_STREAMS_PER_SENDER = 16;
+    
+    /**
+     * The number of milliseconds without any arriving chunk after which an incomplete stream is closed
+     */
+    public static final int IDLE_TIME_OUT = ChunkedInputStream.TIME_OUT;
+    
+    /**
+     * The minimum number of milliseconds between two sweeps for idle streams
+     */
+    public static final int SWEEP_INTERVAL = 1000;
+    
+    
+    
+    /**
+     * Incomplete streams
+     */
+    private final HashMap<UUID, ChunkedInputStream> streams = new HashMap<>();
+    
+    /**
+     * Streams that have been completed, closed or timed out, guarded by {@link #streams}
+     */
+    private final LRUMap<UUID, Boolean> finished = new LRUMap<>(FINISHED_MEMORY);
+    
+    /**
+     * When idle streams were last swept for, guarded by {@link #streams}
+     */
+    private long lastSweep = System.currentTimeMillis();
+    
+    
+    
+    /**
+     * <p>Hands over a received chunk packet to its stream</p>
+     * <p>
+     *   Chunks that would open a new stream are dropped, and the stream is forgotten,
+     *   if the sender already has {@link #MAX_STREAMS_PER_SENDER} incomplete streams.
+     *   Incomplete streams that have not received any chunk for {@link #IDLE_TIME_OUT}
+     *   milliseconds are closed, whether or not they are being read.
+     * </p>
+     * 
+     * @param   packet  The packet, its message must be a {@link StreamChunk}
+     * @return          The stream if the chunk opened a new stream, otherwise {@code null}
+     */
+    public ChunkedInputStream offer(final Packet packet)
+    {
+        final StreamChunk chunk = (StreamChunk)(packet.message);
+        final UUID sender = packet.cast.getSender();
+        final ArrayList<ChunkedInputStream> expired = sweep();
+        ChunkedInputStream stream;
+        boolean created = false;
+        
+        for (final ChunkedInputStream idle : expired)
+        {   Log.warning("Closing stream %s from %s, no chunk has arrived for %s ms", idle.stream, idle.sender, Integer.valueOf(IDLE_TIME_OUT));
+            idle.close();
+        }
+        
+        synchronized (this.streams)
+        {   if (this.finished.containsKey(chunk.stream))
+                return null;
+            if ((stream = this.streams.get(chunk.stream)) == null)
+            {   int count = 0;
+                for (final ChunkedInputStream other : this.streams.values())
+                    if (other.sender.equals(sender))
+                        count++;
+                if (count >= MAX_STREAMS_PER_SENDER)
+                {   Log.warning("Refusing stream %s from %s, too many incomplete streams", chunk.stream, sender);
+                    this.finished.put(chunk.stream, Boolean.TRUE);
+                    return null;
+                }
+                this.streams.put(chunk.stream, stream = new ChunkedInputStream(chunk.stream, sender, this));
+                created = true;
+        }   }
+        
+        if (stream.offer(chunk))
+            remove(stream);
+        
+        return created ? stream : null;
+    }
+    
+    
+    /**
+     * Finds the incomplete streams that have been idle for too long, at most once per {@link #SWEEP_INTERVAL}
+     * 
+     * @return  The streams to close
+     */
+    private ArrayList<ChunkedInputStream> sweep()
+    {
+        final ArrayList<ChunkedInputStream> rc = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        synchronized (this.streams)
+        {   if (now - this.lastSweep < SWEEP_INTERVAL)
+                return rc;
+            this.lastSweep = now;
+            for (final ChunkedInputStream stream : this.streams.values())
+                if (now - stream.getLastActivity() >= IDLE_TIME_OUT)
+                    rc.add(stream);
+        }
+        return rc;
+    }
+    
+    
+    /**
+     * Forgets a stream, so that it no longer receives chunks
+     * 
+     * @param  stream  The stream
+     */
+    void remove(final ChunkedInputStream stream)
+    {
+        synchronized (this.streams)
+        {   if (this.streams.get(stream.stream) == stream)
+            {   this.streams.remove(stream.stream);
+                this.finished.put(stream.stream, Boolean.TRUE);
+        }   }
+    }
+    
+}
@@ -0,0 +1,75 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net;
+import org.nongnu.paradis.io.*;
+
+
+/**
+ * A chunk of a streamed message, see {@link ChunkedOutputStream} and {@link ChunkedInputStream}
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@Transferable
+public class StreamChunk
+{
+    /**
+     * The message type used for packets carrying stream chunks
+     */
+    public static final String MESSAGE_TYPE = "paradis stream chunk";
+    
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  stream  The identifier of the stream the chunk belongs to
+     * @param  index   The index of the chunk in the stream, starting at zero
+     * @param  last    Whether this is the last chunk in the stream
+     * @param  data    The payload of the chunk
+     */
+    public StreamChunk(final UUID stream, final int index, final boolean last, final byte[] data)
+    {
+        this.stream = stream;
+        this.index  = index;
+        this.last   = last;
+        this.data   = data;
+    }
+    
+    
+    
+    /**
+     * The identifier of the stream the chunk belongs to
+     */
+    public final UUID stream;
+    
+    /**
+     * The index of the chunk in the stream, starting at zero
+     */
+    public final int index;
+    
+    /**
+     * Whether this is the last chunk in the stream
+     */
+    public final boolean last;
+    
+    /**
+     * The payload of the chunk
+     */
+    public final byte[] data;
+    
+}
@@ -176,7 +176,7 @@ public class UDPServer implements Runnable
                             final byte[] buf = new byte[0x8400];
                             final DatagramPacket packet = new DatagramPacket(buf, 0, buf.length, sock.remoteAddress, sock.remotePort);
                             for (;;)
-                            {   final int len = in.read(buf, 0, 0x8000);
+                            {   final int len = in.read(buf, 0, UDPSocket.MAX_PAYLOAD);
                                 if (UDPServer.this.closing)
                                 {   break;
                                 }
@@ -16,6 +16,7 @@
  *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 package org.nongnu.paradis.net;
+import org.nongnu.paradis.util.*;
 import org.nongnu.paradis.io.*;
 import org.nongnu.paradis.io.PipedInputStream; //Explicit
 import org.nongnu.paradis.io.PipedOutputStream; //Explicit
@@ -24,6 +25,7 @@ import org.nongnu.paradis.*;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.zip.*;
 
 
 /**
@@ -47,8 +49,8 @@ public class UDPSocket
     //** ASCII control character */ private static final byte LINE_TABULATION = 0x0B;
     //** ASCII control character */ private static final byte FORM_FEED = 0x0C;
     //** ASCII control character */ private static final byte CARRIAGE_RETURN = 0x0D;
-    //** ASCII control character */ private static final byte SHIFT_OUT = 0x0E;
-    //** ASCII control character */ private static final byte SHIFT_IN = 0x0F;
+    /** ASCII control character */ private static final byte SHIFT_OUT = 0x0E;
+    /** ASCII control character */ private static final byte SHIFT_IN = 0x0F;
     //** ASCII control character */ private static final byte DATA_LINK_ESCAPE = 0x10;
     //** ASCII control character */ private static final byte DEVICE_CONTROL_ONE = 0x11;
     //** ASCII control character */ private static final byte DEVICE_CONTROL_TWO = 0x12;
@@ -57,7 +59,7 @@ public class UDPSocket
     /** ASCII control character */ private static final byte NEGATIVE_ACKNOWLEDGE = 0x15;
     //** ASCII control character */ private static final byte SYNCHRONOUS_IDLE = 0x16;
     //** ASCII control character */ private static final byte END_OF_TRANSMISSION_BLOCK = 0x17;
-    //** ASCII control character */ private static final byte CANCEL = 0x18;
+    /** ASCII control character */ private static final byte CANCEL = 0x18;
     //** ASCII control character */ private static final byte END_OF_MEDIUM = 0x19;
     //** ASCII control character */ private static final byte SUBSTITUTE = 0x1A;
     //** ASCII control character */ private static final byte ESCAPE = 0x1B;
@@ -72,6 +74,11 @@ public class UDPSocket
      */
     public static final int TIME_OUT = 4000; // FIXME use user configurations
     
+    /**
+     * The maximum payload size of a datagram, before compression
+     */
+    public static final int MAX_PAYLOAD = 0x8000;
+    
     
     
     /**
@@ -92,6 +99,9 @@ public class UDPSocket
         this.remotePort = remotePort;
         this.server = server;
         
+        this.compression = NetConf.getCompression();
+        this.compressionThreshold = NetConf.getCompressionThreshold();
+        
         try
         {
             final PipedInputStream _inputStream = new PipedInputStream();
@@ -165,6 +175,11 @@ public class UDPSocket
      */
     private boolean waiting = false;
     
+    /**
+     * Whether the receiver rejected the datagram being transmitted, guarded by {@link #transmissionMonitor}
+     */
+    private boolean rejected = false;
+    
     
     /**
      * Alive enquiry monitor
@@ -184,6 +199,42 @@ public class UDPSocket
     public final ArrayDeque<Throwable> errors = new ArrayDeque<>();
     
     
+    /**
+     * Compression statistics for this link
+     */
+    public final LinkStatistics statistics = new LinkStatistics();
+    
+    /**
+     * The codec used to compress outgoing datagrams
+     */
+    private final int compression;
+    
+    /**
+     * The smallest datagram payload that is compressed
+     */
+    private final int compressionThreshold;
+    
+    /**
+     * The codecs the remote machine has announced support for, as a bit mask
+     */
+    private volatile int remoteCodecs = 0;
+    
+    /**
+     * Whether our supported codecs has been announced to the remote machine
+     */
+    private volatile boolean announced = false;
+    
+    /**
+     * Deflater for outgoing datagrams, only used by the sending thread
+     */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    
+    /**
+     * Inflater for incoming datagrams, only used by the receiving thread
+     */
+    private final Inflater inflater = new Inflater(true);
+    
+    
     
     /**
      * Toll the bell to inform that you are alive or connects
@@ -192,6 +243,37 @@ public class UDPSocket
      */
     protected void toll() throws IOException
     {   this.server.socket.send(new DatagramPacket(new byte[] { BELL }, 0, 1, this.remoteAddress, this.remotePort));
+        announce();
+    }
+    
+    
+    /**
+     * Announce the supported compression codecs to the remote machine
+     * 
+     * @throws  IOException  On I/O error
+     */
+    protected void announce() throws IOException
+    {
+        this.announced = true;
+        synchronized (this.server.outMonitor)
+        {   this.server.socket.send(new DatagramPacket(new byte[] { SHIFT_IN, (byte)(LinkCompression.SUPPORTED) }, 0, 2, this.remoteAddress, this.remotePort));
+        }
+    }
+    
+    
+    /**
+     * Gets the codec that should be used to compress a datagram payload
+     * 
+     * @param   len  The length of the payload
+     * @return       The codec, {@link LinkCompression#NONE} if the payload should be sent raw
+     */
+    private int selectCodec(final int len)
+    {
+        if ((this.compression == LinkCompression.NONE) || (len < this.compressionThreshold))
+            return LinkCompression.NONE;
+        if ((this.remoteCodecs & (1 << this.compression)) == 0)
+            return LinkCompression.NONE;
+        return this.compression;
     }
     
     
@@ -204,6 +286,31 @@ public class UDPSocket
      */
     protected void send(final DatagramPacket packet) throws IOException
     {
+        final int codec = selectCodec(packet.getLength());
+        byte[] compressed = null;
+        if (codec != LinkCompression.NONE)
+        {
+            final long time = LinkCompression.time();
+            compressed = LinkCompression.compress(codec, this.deflater, packet.getData(), packet.getOffset(), packet.getLength());
+            if ((compressed != null) && (compressed.length + 2 >= packet.getLength()))
+                compressed = null;
+            this.statistics.sent(packet.getLength(), compressed == null ? packet.getLength() : compressed.length + 2,
+                                 compressed != null, LinkCompression.time() - time);
+        }
+        else
+            this.statistics.sent(packet.getLength(), packet.getLength(), false, 0);
+        
+        if (compressed != null)
+        {
+            final byte[] data = new byte[compressed.length + 2];
+            data[0] = SHIFT_OUT;
+            data[1] = (byte)codec;
+            System.arraycopy(compressed, 0, data, 2, compressed.length);
+            if (transmit(new DatagramPacket(data, 0, data.length, this.remoteAddress, this.remotePort)))
+                return;
+            Log.warning("Compressed datagram rejected by %s:%s, retransmitting it uncompressed", this.remoteAddress, this.remotePort);
+        }
+        
         if (packet.getData().length == packet.getLength())
         {
             final int len = packet.getLength() + 1;
@@ -219,6 +326,23 @@ public class UDPSocket
         
         packet.getData()[packet.getOffset()] = START_OF_TEXT;
         
+        transmit(packet);
+    }
+    
+    
+    /**
+     * Sends a framed datagram packet and waits for it to be acknowledged or rejected
+     * 
+     * @param   packet  The datagram packet to send
+     * @return          {@code false} if the receiver rejected the datagram, and did not take any of its data
+     * 
+     * @throws  IOException  On I/O error
+     */
+    private boolean transmit(final DatagramPacket packet) throws IOException
+    {
+        synchronized (this.transmissionMonitor)
+        {   this.rejected = false;
+        }
         this.waiting = true;
         synchronized (this.server.outMonitor)
         {   this.server.socket.send(packet);
@@ -238,6 +362,7 @@ public class UDPSocket
             catch (final InterruptedException ignore)
             {   //ignore
             }
+            return this.rejected == false;
         }
     }
     
@@ -261,6 +386,36 @@ public class UDPSocket
             this.inputStreamFeeder.write(packet.getData(), packet.getOffset() + 1, packet.getLength() - 1);
             this.inputStreamFeeder.flush();
         }
+        else if (signal == SHIFT_OUT)
+        {
+            final long time = LinkCompression.time();
+            final byte[] data;
+            try
+            {   data = LinkCompression.decompress(packet.getData()[packet.getOffset() + 1], this.inflater,
+                                                  packet.getData(), packet.getOffset() + 2, packet.getLength() - 2, MAX_PAYLOAD);
+            }
+            catch (final IOException err)
+            {   /* none of the data is taken, so the byte stream stays in sync when the sender retransmits it uncompressed */
+                Log.warning("Rejecting undecodable compressed datagram from %s:%s: %s", this.remoteAddress, this.remotePort, err);
+                synchronized (this.server.outMonitor)
+                {   this.server.socket.send(new DatagramPacket(new byte[] { CANCEL }, 0, 1, this.remoteAddress, this.remotePort));
+                }
+                return;
+            }
+            synchronized (this.server.outMonitor)
+            {   this.server.socket.send(new DatagramPacket(new byte[] { END_OF_TEXT }, 0, 1, this.remoteAddress, this.remotePort));
+            }
+            this.statistics.received(LinkCompression.time() - time);
+            this.inputStreamFeeder.write(data, 0, data.length);
+            this.inputStreamFeeder.flush();
+        }
+        else if (signal == SHIFT_IN)
+        {
+            this.remoteCodecs = packet.getLength() > 1 ? (packet.getData()[packet.getOffset() + 1] & LinkCompression.SUPPORTED) : 0;
+            if (this.announced == false)
+                announce();
+            return;
+        }
         else if (signal == END_OF_TEXT)
         {
             if (this.waiting)
@@ -269,6 +424,15 @@ public class UDPSocket
                     this.transmissionMonitor.notify();
                 }
         }
+        else if (signal == CANCEL)
+        {
+            if (this.waiting)
+                synchronized (this.transmissionMonitor)
+                {   this.rejected = true;
+                    this.waiting = false;
+                    this.transmissionMonitor.notify();
+                }
+        }
         else if (signal == ENQUIRY)
         {
             boolean ok = false;
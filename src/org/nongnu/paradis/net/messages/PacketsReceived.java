@@ -0,0 +1,74 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net.messages;
+import org.nongnu.paradis.net.*;
+import org.nongnu.paradis.*;
+
+
+/**
+ * <p>Blackboard message broadcasted when a burst of packets is received</p>
+ * <p>
+ *   Observers that register for this message type receive the whole batch,
+ *   other observers receive a {@link PacketReceived} for each packet.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class PacketsReceived implements Blackboard.BatchMessage
+{
+    /**
+     * Constructor
+     * 
+     * @param  packets  The received packets, in order of arrival
+     */
+    public PacketsReceived(final Packet[] packets)
+    {
+        this.packets = packets;
+    }
+    
+    
+    
+    /**
+     * The received packets, in order of arrival
+     */
+    public final Packet[] packets;
+    
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<? extends Blackboard.BlackboardMessage> getMessageType()
+    {   return PacketReceived.class;
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Blackboard.BlackboardMessage[] getMessages()
+    {
+        final PacketReceived[] rc = new PacketReceived[this.packets.length];
+        for (int i = 0, n = rc.length; i < n; i++)
+            rc[i] = new PacketReceived(this.packets[i]);
+        return rc;
+    }
+    
+}
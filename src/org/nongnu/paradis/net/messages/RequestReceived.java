@@ -0,0 +1,71 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net.messages;
+import org.nongnu.paradis.net.*;
+import org.nongnu.paradis.*;
+
+
+/**
+ * <p>Blackboard message broadcasted when a request sent with a {@link Correlator} is received</p>
+ * <p>
+ *   Answer it with {@link Correlator#reply(RequestReceived, Object, String)}.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class RequestReceived implements Blackboard.BlackboardMessage
+{
+    /**
+     * Constructor
+     * 
+     * @param  packet       The packet carrying the request
+     * @param  correlation  The identifier the reply must be sent with
+     * @param  message      The request
+     * @param  messageType  The request's type identifier
+     */
+    public RequestReceived(final Packet packet, final UUID correlation, final Object message, final String messageType)
+    {
+        this.packet      = packet;
+        this.correlation = correlation;
+        this.message     = message;
+        this.messageType = messageType;
+    }
+    
+    
+    
+    /**
+     * The packet carrying the request
+     */
+    public final Packet packet;
+    
+    /**
+     * The identifier the reply must be sent with
+     */
+    public final UUID correlation;
+    
+    /**
+     * The request
+     */
+    public final Object message;
+    
+    /**
+     * The request's type identifier
+     */
+    public final String messageType;
+    
+}
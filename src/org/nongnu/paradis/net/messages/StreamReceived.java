@@ -0,0 +1,58 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.net.messages;
+import org.nongnu.paradis.net.*;
+import org.nongnu.paradis.*;
+
+
+/**
+ * <p>Blackboard message broadcasted when the first chunk of a streamed message is received</p>
+ * <p>
+ *   The stream is fed by the thread that broadcasts this message, so it must be
+ *   read from another thread, use a threading policy when observing this message.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class StreamReceived implements Blackboard.BlackboardMessage
+{
+    /**
+     * Constructor
+     * 
+     * @param  packet  The packet carrying the first received chunk
+     * @param  stream  The stream with the message
+     */
+    public StreamReceived(final Packet packet, final ChunkedInputStream stream)
+    {
+        this.packet = packet;
+        this.stream = stream;
+    }
+    
+    
+    
+    /**
+     * The packet carrying the first received chunk
+     */
+    public final Packet packet;
+    
+    /**
+     * The stream with the message
+     */
+    public final ChunkedInputStream stream;
+    
+}
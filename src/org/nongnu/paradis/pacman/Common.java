@@ -24,7 +24,11 @@ import com.ice.tar.*;
 import org.tukaani.xz.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
 
 
 /**
@@ -41,14 +45,24 @@ public class Common
     private static final String PACKAGE_DIR = Pacman.PACKAGE_DIR;
     
     /**
-     * The file where the data are saved
+     * File root for installed files
      */
-    private static final String PACKAGES_FILE = Pacman.PACKAGES_FILE;
+    public static final String FILE_ROOT = Pacman.FILE_ROOT;
     
     /**
-     * File root for installed files
+     * The number of packages below which {@link #loadMetadata()} does not split its work further
      */
-    public static final String FILE_ROOT = Pacman.FILE_ROOT;
+    private static final int METADATA_THRESHOLD = 16;
+    
+    /**
+     * The size of the buffers used when reading tarballs and writing the installed files
+     */
+    public static final int EXTRACT_BUFFER_SIZE = 256 << 10;
+    
+    /**
+     * The pool that {@link #loadMetadata()} looks up packages in, its worker threads are daemons
+     */
+    private static final ForkJoinPool metadataPool = new ForkJoinPool();
     
     
     
@@ -102,6 +116,16 @@ public class Common
      */
     public final HashMap<VersionedPackage, VersionedPackage> replaceMap = new HashMap<>();
     
+    /**
+     * Package metadata index
+     */
+    public final PackageIndex index = PackageIndex.getInstance();
+    
+    /**
+     * Map from packages in {@link #databaseMap} to their metadata
+     */
+    public final ConcurrentHashMap<VersionedPackage, IndexedPackage> metadataMap = new ConcurrentHashMap<>();
+    
     
     
     /**
@@ -120,15 +144,16 @@ public class Common
     public void loadDatabase(final FilenameFilter filter)
     {
         final String[] packs = filter == null ? (new File(PACKAGE_DIR)).list() : (new File(PACKAGE_DIR)).list(filter);
-        final VersionedPackage[] vpacks = new VersionedPackage[packs.length];
-        for (int i = 0, n = vpacks.length; i < n; i++)
+        final ArrayList<VersionedPackage> list = new ArrayList<>();
+        for (final String p : packs)
         {
-            final String p;
-            if ((p = packs[i]).endsWith(".pkg.xz") == false)
+            if (p.endsWith(".pkg.xz") == false)
                 continue;
-            vpacks[i] = new VersionedPackage(p);
-            this.packageMap.put(vpacks[i].toString(), new File(PACKAGE_DIR + p));
+            final VersionedPackage vpack = new VersionedPackage(p);
+            list.add(vpack);
+            this.packageMap.put(vpack.toString(), new File(PACKAGE_DIR + p));
         }
+        final VersionedPackage[] vpacks = list.toArray(new VersionedPackage[list.size()]);
         Arrays.sort(vpacks);
         final HashSet<String> done = new HashSet<String>();
         for (final String item : this.packageMap.keySet())
@@ -139,7 +164,7 @@ public class Common
             this.databaseSet.add(pack.toString());
             this.databaseMap.put(pack, pack);
             if (done.contains(pack.name) == false)
-                this.packageMap.put(pack.name, this.packageMap.get(packs.toString()));
+                this.packageMap.put(pack.name, this.packageMap.get(pack.toString()));
         }
     }
     
@@ -151,22 +176,108 @@ public class Common
      */
     public void loadInstalled() throws IOException
     {
-        try (final TransferInputStream tis = new TransferInputStream(new FileInputStream(PACKAGES_FILE)))
-        {   for (;;)
-            {
-                final String pack = tis.readObject(String.class);
-                if (pack.isEmpty())
-                    break;
-                final VersionedPackage vpack = new VersionedPackage(pack);
-                this.packageMap.put(vpack.toString(), new File(PACKAGE_DIR + pack.replace(":", ";") + ".pkg.xz"));
-                this.packageMap.put(vpack.name,       new File(PACKAGE_DIR + pack.replace(":", ";") + ".pkg.xz"));
-                this.installedMap.put(vpack, vpack);
-                if (tis.readBoolean())
-                    this.installedExplicitly.add(vpack);
-        }   }
-        catch (final FileNotFoundException ignore)
-        {   //Ignore
+        for (final InstalledDatabase.Entry entry : InstalledDatabase.getInstance().entries().values())
+        {
+            final String pack = entry.pack;
+            final VersionedPackage vpack = new VersionedPackage(pack);
+            this.packageMap.put(vpack.toString(), new File(PACKAGE_DIR + pack.replace(":", ";") + ".pkg.xz"));
+            this.packageMap.put(vpack.name,       new File(PACKAGE_DIR + pack.replace(":", ";") + ".pkg.xz"));
+            this.installedMap.put(vpack, vpack);
+            if (entry.explicit)
+                this.installedExplicitly.add(vpack);
+        }
+    }
+    
+    
+    /**
+     * Populate {@link #metadataMap}, the packages are looked up in parallel
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public void loadMetadata() throws IOException
+    {
+        if (this.metadataMap.isEmpty() == false)
+            return;
+        
+        final VersionedPackage[] packs = this.databaseMap.values().toArray(new VersionedPackage[this.databaseMap.size()]);
+        final IOException err = metadataPool.invoke(new MetadataLoader(packs, 0, packs.length));
+        if (err != null)
+            throw err;
+        this.index.save();
+    }
+    
+    
+    /**
+     * Task that populates {@link #metadataMap} for a range of packages
+     */
+    private final class MetadataLoader extends RecursiveTask<IOException>
+    {
+        /**
+         * Desired by {@link Serializable}
+         */
+        private static final long serialVersionUID = 1L;
+        
+        
+        
+        /**
+         * Constructor
+         * 
+         * @param  packs  The packages
+         * @param  start  The index of the first package in the range
+         * @param  end    The index after the last package in the range
+         */
+        public MetadataLoader(final VersionedPackage[] packs, final int start, final int end)
+        {
+            this.packs = packs;
+            this.start = start;
+            this.end = end;
+        }
+        
+        
+        
+        /**
+         * The packages
+         */
+        private final VersionedPackage[] packs;
+        
+        /**
+         * The index of the first package in the range
+         */
+        private final int start;
+        
+        /**
+         * The index after the last package in the range
+         */
+        private final int end;
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected IOException compute()
+        {
+            if (this.end - this.start <= METADATA_THRESHOLD)
+            {   for (int i = this.start; i < this.end; i++)
+                    try
+                    {   final VersionedPackage pack = this.packs[i];
+                        Common.this.metadataMap.put(pack, Common.this.index.get(Common.this.packageMap.get(pack.toString())));
+                    }
+                    catch (final IOException err)
+                    {   return err;
+                    }
+                return null;
+            }
+            
+            final int mid = (this.start + this.end) >>> 1;
+            final MetadataLoader left = new MetadataLoader(this.packs, this.start, mid);
+            left.fork();
+            final IOException err = (new MetadataLoader(this.packs, mid, this.end)).compute();
+            final IOException lerr = left.join();
+            return lerr != null ? lerr : err;
         }
+        
     }
     
     
@@ -177,8 +288,9 @@ public class Common
      */
     public void loadGroups() throws IOException
     {
+        loadMetadata();
         for (final VersionedPackage pack : this.databaseMap.values())
-            for (final String group : PackageInfo.fromFile(this.packageMap.get(pack.toString())).groups)
+            for (final String group : this.metadataMap.get(pack).groups)
             {   Vector<VersionedPackage> list = this.groupMap.get(group);
                 if (list == null)
                     this.groupMap.put(group, list = new Vector<VersionedPackage>());
@@ -197,8 +309,9 @@ public class Common
          if (this.replaceMap.size() == 0)
             loadReplacers();
         
+        loadMetadata();
         for (final VersionedPackage provider : this.databaseMap.values())
-            for (final String providee : PackageInfo.fromFile(this.packageMap.get(provider.toString())).provides)
+            for (final String providee : this.metadataMap.get(provider).provides)
             {   HashSet<VersionedPackage> list = this.provideMap.get(new VersionedPackage(providee));
                 if (list == null)
                     this.provideMap.put(new VersionedPackage(providee), list = new HashSet<VersionedPackage>());
@@ -225,8 +338,9 @@ public class Common
     {
         if (this.replaceMap.size() > 0)
             return;
+        loadMetadata();
         for (final VersionedPackage replacer : this.databaseMap.values())
-            for (final String replacee : PackageInfo.fromFile(this.packageMap.get(replacer.toString())).replaces)
+            for (final String replacee : this.metadataMap.get(replacer).replaces)
                 this.replaceMap.put(new VersionedPackage(replacee), replacer);
     }
     
@@ -249,11 +363,10 @@ public class Common
         this.installedExplicitly.remove(pack);
         if (dbonly == false)
         {
-            final String fs = Properties.getFileSeparator();
-            final PackageInfo info = PackageInfo.fromFile(this.packageMap.get(pack));
+            final IndexedPackage info = this.index.get(this.packageMap.get(pack.toString()));
             for (final String file : info.files)
                 try
-                {   final File f = new File((FILE_ROOT + (file.startsWith("/") ? file.substring(1) : file)).replace("/", fs));
+                {   final File f = new File(getDestination(file));
                     if ((f.exists() && f.isDirectory()) == false)
                         f.delete();
                 }
@@ -275,81 +388,366 @@ public class Common
      * @throws  IOException  On I/O exception
      */
     public void install(final VersionedPackage pack, final boolean explicit, final boolean dbonly, final boolean force) throws IOException
+    {
+        final Set<String> files = dbonly ? null : getInstallFiles(pack, force);
+        register(pack, explicit);
+        if (files != null)
+            extract(pack, files);
+    }
+    
+    
+    /**
+     * Gets the files a package would write if it were installed, that is, its files except
+     * those that already exist and were not installed by the installed version of the package
+     * 
+     * @param   pack   The package
+     * @param   force  Force installation of files
+     * @return         The files, with {@link #FILE_ROOT} and system file separators
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public HashSet<String> getInstallFiles(final VersionedPackage pack, final boolean force) throws IOException
     {
         final VersionedPackage prev = this.installedMap.get(pack);
+        final IndexedPackage iprev = prev == null ? null : this.index.get(this.packageMap.get(prev.toString()));
+        final HashSet<String> installed = new HashSet<String>();
+        if (iprev != null)
+            for (final String file : iprev.files)
+                installed.add(getDestination(file));
+        
+        final HashSet<String> rc = new HashSet<String>();
+        final IndexedPackage info = this.index.get(this.packageMap.get(pack.toString()));
+        for (final String file : info.files)
+        {
+            final String f = getDestination(file);
+            if (installed.contains(f) || force || ((new File(f)).exists() == false))
+                rc.add(f);
+            else
+                System.out.println("Skipping " + file + ", installed by another package");
+        }
+        return rc;
+    }
+    
+    
+    /**
+     * Gets the checksums of a package's files, files without a checksum in a known format are left out
+     * 
+     * @param   pack  The package
+     * @return        Map from files, with {@link #FILE_ROOT} and system file separators, to checksums
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public HashMap<String, String> getChecksums(final VersionedPackage pack) throws IOException
+    {
+        final PackageInfo info = PackageInfo.fromFile(this.packageMap.get(pack.toString()).getPath());
+        final HashMap<String, String> rc = new HashMap<String, String>();
+        if (info.checksums.length == info.files.length)
+            for (int i = 0, n = info.files.length; i < n; i++)
+                if ((info.checksums[i] != null) && info.checksums[i].startsWith(Makepkg.CHECKSUM_PREFIX))
+                    rc.put(getDestination(info.files[i]), info.checksums[i]);
+        return rc;
+    }
+    
+    
+    /**
+     * Removes files that are already installed with the correct contents
+     * 
+     * @param   files      The files to install, unchanged files are removed from this set
+     * @param   checksums  The files' checksums, as returned by {@link #getChecksums(VersionedPackage)}
+     * @return             The number of removed files
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public int removeUnchanged(final Set<String> files, final Map<String, String> checksums) throws IOException
+    {
+        int rc = 0;
+        for (final Iterator<String> iterator = files.iterator(); iterator.hasNext();)
+        {   final String file = iterator.next();
+            final String checksum = checksums.get(file);
+            if ((checksum != null) && (new File(file)).isFile() && checksum.equals(getChecksum(file)))
+            {   iterator.remove();
+                rc++;
+        }   }
+        return rc;
+    }
+    
+    
+    /**
+     * Verifies that files have been written with the correct contents
+     * 
+     * @param   files      The files
+     * @param   checksums  The files' checksums, as returned by {@link #getChecksums(VersionedPackage)}
+     * 
+     * @throws  IOException  On I/O exception, or if any file is incorrect
+     */
+    public void verify(final Set<String> files, final Map<String, String> checksums) throws IOException
+    {
+        final StringBuilder corrupt = new StringBuilder();
+        for (final String file : files)
+        {   final String checksum = checksums.get(file);
+            if ((checksum != null) && (checksum.equals(getChecksum(file)) == false))
+                corrupt.append(corrupt.length() == 0 ? "" : ", ").append(file);
+        }
+        if (corrupt.length() > 0)
+            throw new IOException("Checksum mismatch: " + corrupt.toString());
+    }
+    
+    
+    /**
+     * Gets the checksum of a file
+     * 
+     * @param   file  The file
+     * @return        The checksum
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    private static String getChecksum(final String file) throws IOException
+    {
+        try (final InputStream is = Channels.newInputStream(FileChannel.open(Paths.get(file), StandardOpenOption.READ)))
+        {   return Makepkg.checksum(is);
+        }
+    }
+    
+    
+    /**
+     * Removes the files of a package's installed version that the new version does not contain,
+     * the files that are kept are then written only if they differ
+     * 
+     * @param   prev  The installed version
+     * @param   pack  The new version
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public void removeObsolete(final VersionedPackage prev, final VersionedPackage pack) throws IOException
+    {
+        final HashSet<String> keep = new HashSet<String>();
+        for (final String file : this.index.get(this.packageMap.get(pack.toString())).files)
+            keep.add(getDestination(file));
+        for (final String file : this.index.get(this.packageMap.get(prev.toString())).files)
+        {   final String dest = getDestination(file);
+            if (keep.contains(dest) == false)
+            {   final File f = new File(dest);
+                if ((f.exists() && f.isDirectory()) == false)
+                    f.delete();
+        }   }
+    }
+    
+    
+    /**
+     * Marks a package as installed
+     * 
+     * @param  pack      The package
+     * @param  explicit  Install as explicitly installed (not dependency)
+     */
+    public void register(final VersionedPackage pack, final boolean explicit)
+    {
         this.installedMap.put(pack, pack);
         if (explicit)  this.installedExplicitly.add(pack);
         else           this.installedExplicitly.remove(pack);
-        if (dbonly == false)
-        {
-            final PackageInfo iprev = prev == null ? null : PackageInfo.fromFile(this.packageMap.get(prev));
-            final String fs = Properties.getFileSeparator();
-            final HashSet<String> installed = new HashSet<String>();
-            if (iprev != null)
-                for (final String file : iprev.files)
-                    installed.add((FILE_ROOT + (file.startsWith("/") ? file.substring(1) : file)).replace("/", fs));
-            
-            final PackageInfo info = PackageInfo.fromFile(this.packageMap.get(pack));
-            for (final String file : info.files)
+    }
+    
+    
+    /**
+     * Extracts files from a package's tarball, the tarball is read and the files are
+     * written through channels with buffers of {@link #EXTRACT_BUFFER_SIZE} bytes.
+     * If the package has a {@link TarIndex} and only a few of its files are wanted,
+     * the files are read by seeking in the tarball instead of reading all of it.
+     * This method may be invoked concurrently for different packages.
+     * 
+     * @param   pack   The package
+     * @param   files  The files to write, as returned by {@link #getInstallFiles(VersionedPackage, boolean)}
+     * @return         The number of bytes written
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public long extract(final VersionedPackage pack, final Set<String> files) throws IOException
+    {
+        final String tarfile = getTarball(pack);
+        final byte[] buffer = new byte[EXTRACT_BUFFER_SIZE];
+        long written = 0;
+        
+        final File indexFile = TarIndex.forTarball(tarfile);
+        if (indexFile.exists())
+        {   final TarIndex index = TarIndex.read(indexFile);
+            if (files.size() < index.size() / 2)
+            {   try (final SeekableXZInputStream tar = new SeekableXZInputStream(new SeekableFileInputStream(tarfile)))
+                {   for (final TarIndex.Entry entry : index.entries())
+                    {   final String dest = getDestination(entry.name);
+                        if (files.contains(dest))
+                            written += write(TarIndex.open(tar, entry), new File(dest), buffer);
+                }   }
+                return written;
+        }   }
+        
+        try (final TarInputStream tar = new TarInputStream(new XZInputStream(new BufferedInputStream(
+                         Channels.newInputStream(FileChannel.open(Paths.get(tarfile), StandardOpenOption.READ)), EXTRACT_BUFFER_SIZE))))
+        {   for (TarEntry entry; (entry = tar.getNextEntry()) != null;)
             {
-                final String f = (FILE_ROOT + (file.startsWith("/") ? file.substring(1) : file)).replace("/", fs);
-                if (installed.contains(f))
-                    continue;
-                if (force || ((new File(f)).exists() == false))
-                    installed.add(f);
-                else
-                    System.out.println("Skipping " + file + ", installed by another package");
+                final String dest = getDestination(entry.getName());
+                if (entry.isDirectory())
+                    (new File(dest)).mkdirs();
+                else if (files.contains(dest))
+                    written += write(tar, new File(dest), buffer);
+        }   }
+        return written;
+    }
+    
+    
+    /**
+     * Extracts a single file from a package's tarball, for example to restore a backup file,
+     * this is cheap if the package has a {@link TarIndex}
+     * 
+     * @param   pack  The package
+     * @param   file  The file in the package
+     * @param   dest  The file to write
+     * @return        Whether the file was found in the package
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public boolean extractFile(final VersionedPackage pack, final String file, final File dest) throws IOException
+    {
+        final String tarfile = getTarball(pack);
+        final String name = file.startsWith("/") ? file.substring(1) : file;
+        final byte[] buffer = new byte[EXTRACT_BUFFER_SIZE];
+        
+        final File indexFile = TarIndex.forTarball(tarfile);
+        if (indexFile.exists())
+        {   final TarIndex.Entry entry = TarIndex.read(indexFile).get(name);
+            if (entry == null)
+                return false;
+            try (final SeekableXZInputStream tar = new SeekableXZInputStream(new SeekableFileInputStream(tarfile)))
+            {   write(TarIndex.open(tar, entry), dest, buffer);
             }
-            
-            String tarfile = this.packageMap.get(pack).getAbsolutePath();
-            tarfile = tarfile.substring(0, tarfile.length() - ".pkg.xz".length()) + ".tar.xz";
-            
-            try (final TarInputStream tar = new TarInputStream(new XZInputStream(new FileInputStream(tarfile))))
-            {   for (TarEntry entry; (entry = tar.getNextEntry()) != null;)
-                {
-                    final String top = entry.getName().replace("\\", "/").replace("/", fs);
-                    String dest = FILE_ROOT + (top.startsWith(fs) ? top.substring(fs.length()) : top);
-                    if (dest.endsWith(fs))
-                        dest = dest.substring(0, dest.length() - fs.length());
-                    final File destFile = new File(dest);
-                    
-                    if (entry.isDirectory())
-                    {
-                        destFile.mkdirs();
-                        continue;
-                    }
-                    if (installed.contains(dest) == false)
-                        continue;
-                    if (destFile.getParentFile().exists() == false)
-                        destFile.getParentFile().mkdirs();
-                    
-                    try (final FileOutputStream out = new FileOutputStream(destFile))
-                    {   tar.copyEntryContents(out);
-                        /* skipping mode, owner, links &c */
-                    }
-            }   }
+            return true;
+        }
+        
+        try (final TarInputStream tar = new TarInputStream(new XZInputStream(new BufferedInputStream(new FileInputStream(tarfile), EXTRACT_BUFFER_SIZE))))
+        {   for (TarEntry entry; (entry = tar.getNextEntry()) != null;)
+                if ((entry.isDirectory() == false) && entry.getName().equals(name))
+                {   write(tar, dest, buffer);
+                    return true;
+        }       }
+        return false;
+    }
+    
+    
+    /**
+     * Makes sure that a package's tarball exists, if it is missing but there is a {@link PackageDelta}
+     * against the installed version of the package, the tarball is reconstructed from the delta and
+     * the installed files. This must be done before the installed version is uninstalled.
+     * 
+     * @param   pack  The package
+     * @return        Whether the tarball was reconstructed from a delta
+     * 
+     * @throws  IOException  On I/O exception, or if the tarball is missing and cannot be reconstructed
+     */
+    public boolean prepareTarball(final VersionedPackage pack) throws IOException
+    {
+        final File tarball = new File(getTarball(pack));
+        if (tarball.exists())
+            return false;
+        
+        final VersionedPackage prev = this.installedMap.get(pack);
+        final String pkgfile = this.packageMap.get(pack.toString()).getPath();
+        final String root = pkgfile.substring(0, pkgfile.length() - ".pkg.xz".length());
+        if (prev != null)
+        {   final String prevfile = this.packageMap.get(prev.toString()).getPath();
+            final File delta = PackageDelta.getFile(root, prevfile.substring(0, prevfile.length() - ".pkg.xz".length()));
+            if (delta.exists())
+            {   final long size = PackageDelta.apply(delta, FILE_ROOT, tarball);
+                System.out.println("Reconstructed " + pack + " from " + size + " bytes of delta against " + prev);
+                return true;
+        }   }
+        throw new FileNotFoundException("Neither the tarball nor a usable delta exists for " + pack);
+    }
+    
+    
+    /**
+     * Gets the tarball of a package
+     * 
+     * @param   pack  The package
+     * @return        The tarball's path
+     */
+    private String getTarball(final VersionedPackage pack)
+    {
+        final String pkgfile = this.packageMap.get(pack.toString()).getAbsolutePath();
+        return pkgfile.substring(0, pkgfile.length() - ".pkg.xz".length()) + ".tar.xz";
+    }
+    
+    
+    /**
+     * Gets where a file in a tarball is installed
+     * 
+     * @param   name  The name of the file in the tarball
+     * @return        The installed file, under {@link #FILE_ROOT} and with system file separators
+     */
+    private static String getDestination(final String name)
+    {
+        final String fs = Properties.getFileSeparator();
+        final String top = name.replace("\\", "/").replace("/", fs);
+        final String dest = FILE_ROOT + (top.startsWith(fs) ? top.substring(fs.length()) : top);
+        return dest.endsWith(fs) ? dest.substring(0, dest.length() - fs.length()) : dest;
+    }
+    
+    
+    /**
+     * Writes a file through a channel, the stream is read until its end
+     * 
+     * @param   is      The file's contents
+     * @param   dest    The file to write, its directory is created if missing
+     * @param   buffer  Buffer to use
+     * @return          The number of bytes written
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    private static long write(final InputStream is, final File dest, final byte[] buffer) throws IOException
+    {
+        if (dest.getParentFile().exists() == false)
+            dest.getParentFile().mkdirs();
+        
+        final ByteBuffer buf = ByteBuffer.wrap(buffer);
+        long written = 0;
+        try (final FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {   for (;;)
+            {   int n = 0;
+                for (int r; (n < buffer.length) && ((r = is.read(buffer, n, buffer.length - n)) > 0);)
+                    n += r;
+                if (n == 0)
+                    break;
+                buf.clear().limit(n);
+                while (buf.hasRemaining())
+                    out.write(buf);
+                written += n;
+            }
+            /* skipping mode, owner, links &c */
         }
+        return written;
     }
     
     
     /**
-     * Stores {@link #installedMap}
+     * Stores {@link #installedMap}, only packages that have changed are written
      * 
      * @throws  IOException  On I/O exception
      */
     public void syncInstalledMap() throws IOException
     {
-        try (final TransferOutputStream tos = new TransferOutputStream(new FileOutputStream(PACKAGES_FILE)))
-        {   for (final VersionedPackage pack : this.installedMap.values())
-            {
-                String file = this.packageMap.get(pack.toString()).getAbsolutePath().replace(";", ":");
-                file = file.substring(PACKAGE_DIR.length());
-                file = file.substring(0, file.length() - ".pkg.xz".length());
-                tos.writeObject(file);
-                tos.writeBoolean(this.installedExplicitly.contains(pack));
-            }
-            tos.flush();
+        final InstalledDatabase database = InstalledDatabase.getInstance();
+        final TreeMap<String, InstalledDatabase.Entry> stored = database.entries();
+        for (final VersionedPackage pack : this.installedMap.values())
+        {
+            String file = this.packageMap.get(pack.toString()).getAbsolutePath().replace(";", ":");
+            file = file.substring(PACKAGE_DIR.length());
+            file = file.substring(0, file.length() - ".pkg.xz".length());
+            final boolean explicit = this.installedExplicitly.contains(pack);
+            final InstalledDatabase.Entry entry = stored.remove(pack.name);
+            if ((entry == null) || (entry.pack.equals(file) == false) || (entry.explicit != explicit))
+                database.put(file, explicit);
         }
+        for (final String name : stored.keySet())
+            database.remove(name);
+        database.commit();
+        this.index.save();
     }
     
 }
@@ -0,0 +1,1209 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.pacman;
+import org.nongnu.paradis.*;
+
+import java.util.*;
+
+
+/**
+ * Dependency solver for package transactions
+ * <p>
+ * The solver selects packages for a set of requested packages so that every dependency of the
+ * selected packages is satisfied, by a package with the required name or by a package that
+ * provides it, and so that no selected package conflicts with another package on the system.
+ * Installed packages are kept unless a selected package is another version of them, replaces
+ * them or conflicts with them, in which case they are upgraded or removed, and the requirements
+ * they satisfied are resolved again, which may upgrade installed packages depending on them.
+ * </p>
+ * <p>
+ * Requirements are visited in order, and for each requirement that is not already satisfied
+ * the candidates are tried: packages with the required name before providers, providers that
+ * are installed before other providers, and newer versions before older versions. When no
+ * candidate can be selected the search backjumps to the latest decision that is to blame for
+ * it, that is, the latest decision that selected a package that the candidates conflicted with
+ * or that introduced the requirement, skipping decisions that cannot make a difference, so the
+ * first plan found is the preferred plan, and nothing is prompted for.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class DependencySolver
+{
+    /**
+     * The default maximum number of candidates to try before giving up
+     */
+    public static final int DEFAULT_STEP_LIMIT = 1_000_000;
+    
+    /**
+     * Trail entry kind: a package was selected
+     */
+    private static final int SELECTED = 0;
+    
+    /**
+     * Trail entry kind: an installed package was removed
+     */
+    private static final int REMOVED = 1;
+    
+    /**
+     * Trail entry kind: a requirement was locked to an installed package
+     */
+    private static final int LOCKED = 2;
+    
+    /**
+     * Trail entry kind: a selected package registered a conflict
+     */
+    private static final int CONFLICTED = 3;
+    
+    /**
+     * Orders candidates with the newest version first
+     */
+    private static final Comparator<Candidate> NEWEST_FIRST = new Comparator<Candidate>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public int compare(final Candidate a, final Candidate b)
+                {
+                    if (a.pack.low == null)  return b.pack.low == null ? 0 : 1;
+                    if (b.pack.low == null)  return -1;
+                    return b.pack.low.compareTo(a.pack.low);
+                }
+            };
+    
+    /**
+     * Orders candidates by name, and with the newest version first
+     */
+    private static final Comparator<Candidate> BY_NAME = new Comparator<Candidate>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public int compare(final Candidate a, final Candidate b)
+                {
+                    final int rc = a.pack.name.compareTo(b.pack.name);
+                    return rc != 0 ? rc : NEWEST_FIRST.compare(a, b);
+                }
+            };
+    
+    
+    
+    //Has default constructor
+    
+    
+    
+    /**
+     * Map from package strings to known packages
+     */
+    private final HashMap<String, Candidate> candidates = new HashMap<>();
+    
+    /**
+     * Map from package names to the known versions of the packages
+     */
+    private final HashMap<String, ArrayList<Candidate>> packages = new HashMap<>();
+    
+    /**
+     * Map from provided names to the known packages providing them
+     */
+    private final HashMap<String, ArrayList<Candidate>> providers = new HashMap<>();
+    
+    /**
+     * Map from package names to installed packages
+     */
+    private final HashMap<String, Candidate> installed = new HashMap<>();
+    
+    /**
+     * Map from package names to installed packages depending on the name
+     */
+    private final HashMap<String, ArrayList<Candidate>> installedDependents = new HashMap<>();
+    
+    /**
+     * Map from package names to installed packages conflicting with the name
+     */
+    private final HashMap<String, ArrayList<Candidate>> installedConflicts = new HashMap<>();
+    
+    /**
+     * Packages that may not be selected
+     */
+    private final ArrayList<VersionedPackage> ignored = new ArrayList<>();
+    
+    /**
+     * Whether {@link #packages} and {@link #providers} need to be sorted
+     */
+    private boolean unsorted = false;
+    
+    /**
+     * Whether dependencies are ignored
+     */
+    private boolean nodeps = false;
+    
+    /**
+     * Whether dependencies are reinstalled even if satisfied
+     */
+    private boolean recursive = false;
+    
+    /**
+     * The maximum number of candidates to try before giving up
+     */
+    private int stepLimit = DEFAULT_STEP_LIMIT;
+    
+    
+    /**
+     * Map from package names to selected packages
+     */
+    private final HashMap<String, Candidate> selected = new HashMap<>();
+    
+    /**
+     * Names of removed installed packages
+     */
+    private final HashSet<String> removed = new HashSet<>();
+    
+    /**
+     * Map from names of installed packages to the requirements they satisfy
+     */
+    private final HashMap<String, ArrayList<Requirement>> locks = new HashMap<>();
+    
+    /**
+     * Map from package names to selected packages conflicting with the name
+     */
+    private final HashMap<String, ArrayList<Candidate>> conflicting = new HashMap<>();
+    
+    /**
+     * Requirements, in the order they are visited
+     */
+    private final ArrayList<Requirement> agenda = new ArrayList<>();
+    
+    /**
+     * Changes to the state of the search, in the order they were made
+     */
+    private final ArrayList<Change> trail = new ArrayList<>();
+    
+    /**
+     * Requirements for which a candidate has been selected, and which may be revisited,
+     * the decision level of a decision is its index plus one
+     */
+    private final ArrayList<Decision> decisions = new ArrayList<>();
+    
+    /**
+     * Packages that have been proven impossible to select in the current search
+     */
+    private final HashSet<Candidate> doomed = new HashSet<>();
+    
+    /**
+     * The decision levels to blame for the failure to select the last tried candidate
+     */
+    private final BitSet culprits = new BitSet();
+    
+    /**
+     * The number of candidates tried in the current search
+     */
+    private int steps;
+    
+    
+    
+    /**
+     * Adds a package that can be installed
+     * 
+     * @param  pack  The package, with its exact version
+     * @param  info  The package's metadata
+     */
+    public void addAvailable(final VersionedPackage pack, final IndexedPackage info)
+    {
+        addAvailable(pack, info.dependencies, info.provides, info.conflicts, info.replaces);
+    }
+    
+    
+    /**
+     * Adds a package that can be installed
+     * 
+     * @param  pack          The package, with its exact version
+     * @param  dependencies  The package's dependencies
+     * @param  provides      The packages the package provides
+     * @param  conflicts     The packages the package conflicts with
+     * @param  replaces      The packages the package replaces
+     */
+    public void addAvailable(final VersionedPackage pack, final String[] dependencies, final String[] provides, final String[] conflicts, final String[] replaces)
+    {
+        add(pack, dependencies, provides, conflicts, replaces).available = true;
+    }
+    
+    
+    /**
+     * Adds an installed package
+     * 
+     * @param  pack  The package, with its exact version
+     * @param  info  The package's metadata
+     */
+    public void addInstalled(final VersionedPackage pack, final IndexedPackage info)
+    {
+        addInstalled(pack, info.dependencies, info.provides, info.conflicts, info.replaces);
+    }
+    
+    
+    /**
+     * Adds an installed package
+     * 
+     * @param  pack          The package, with its exact version
+     * @param  dependencies  The package's dependencies
+     * @param  provides      The packages the package provides
+     * @param  conflicts     The packages the package conflicts with
+     * @param  replaces      The packages the package replaces
+     */
+    public void addInstalled(final VersionedPackage pack, final String[] dependencies, final String[] provides, final String[] conflicts, final String[] replaces)
+    {
+        final Candidate candidate = add(pack, dependencies, provides, conflicts, replaces);
+        if (candidate.installed)
+            return;
+        candidate.installed = true;
+        this.installed.put(pack.name, candidate);
+        for (final VersionedPackage dependency : candidate.dependencies)
+            register(this.installedDependents, dependency.name, candidate);
+        for (final VersionedPackage conflict : candidate.conflicts)
+            register(this.installedConflicts, conflict.name, candidate);
+    }
+    
+    
+    /**
+     * Adds a package, unless it is already known
+     * 
+     * @param   pack          The package, with its exact version
+     * @param   dependencies  The package's dependencies
+     * @param   provides      The packages the package provides
+     * @param   conflicts     The packages the package conflicts with
+     * @param   replaces      The packages the package replaces
+     * @return                The package's candidate
+     */
+    private Candidate add(final VersionedPackage pack, final String[] dependencies, final String[] provides, final String[] conflicts, final String[] replaces)
+    {
+        Candidate candidate = this.candidates.get(pack.toString());
+        if (candidate != null)
+            return candidate;
+        
+        this.candidates.put(pack.toString(), candidate = new Candidate(pack, parse(dependencies), parse(provides), parse(conflicts), parse(replaces)));
+        register(this.packages, pack.name, candidate);
+        for (final VersionedPackage provide : candidate.provides)
+            if (provide.name.equals(pack.name) == false)
+                register(this.providers, provide.name, candidate);
+        this.unsorted = true;
+        return candidate;
+    }
+    
+    
+    /**
+     * Parses package strings
+     * 
+     * @param   packs  The package strings
+     * @return         The packages
+     */
+    private static VersionedPackage[] parse(final String[] packs)
+    {
+        final VersionedPackage[] rc = new VersionedPackage[packs.length];
+        for (int i = 0, n = packs.length; i < n; i++)
+            rc[i] = new VersionedPackage(packs[i]);
+        return rc;
+    }
+    
+    
+    /**
+     * Adds a candidate to a multimap
+     * 
+     * @param  map        The map
+     * @param  name       The key
+     * @param  candidate  The candidate
+     */
+    private static void register(final HashMap<String, ArrayList<Candidate>> map, final String name, final Candidate candidate)
+    {
+        ArrayList<Candidate> list = map.get(name);
+        if (list == null)
+            map.put(name, list = new ArrayList<Candidate>());
+        list.add(candidate);
+    }
+    
+    
+    /**
+     * Prevents packages from being selected, installed packages are kept
+     * 
+     * @param  pack  The package, with or without version bounds
+     */
+    public void ignore(final VersionedPackage pack)
+    {
+        this.ignored.add(pack);
+    }
+    
+    
+    /**
+     * Sets whether dependencies are ignored
+     * 
+     * @param  value  Whether dependencies are ignored
+     */
+    public void setIgnoreDependencies(final boolean value)
+    {
+        this.nodeps = value;
+    }
+    
+    
+    /**
+     * Sets whether dependencies are reinstalled even if they are satisfied by installed packages
+     * 
+     * @param  value  Whether dependencies are reinstalled
+     */
+    public void setReinstallDependencies(final boolean value)
+    {
+        this.recursive = value;
+    }
+    
+    
+    /**
+     * Sets the maximum number of candidates to try before giving up
+     * 
+     * @param  value  The maximum number of candidates to try
+     */
+    public void setStepLimit(final int value)
+    {
+        this.stepLimit = value;
+    }
+    
+    
+    /**
+     * Finds the packages to install and remove to install a set of packages
+     * 
+     * @param   requests   The packages to install, with or without version bounds
+     * @param   reinstall  Whether requested packages are reinstalled even if they are installed
+     * @return             The transaction plan
+     * 
+     * @throws  UnsatisfiableDependenciesException  If there is no such plan
+     */
+    public Plan solve(final Collection<VersionedPackage> requests, final boolean reinstall) throws UnsatisfiableDependenciesException
+    {
+        if (this.unsorted)
+        {   for (final ArrayList<Candidate> list : this.packages.values())
+                Collections.sort(list, NEWEST_FIRST);
+            for (final ArrayList<Candidate> list : this.providers.values())
+                Collections.sort(list, BY_NAME);
+            this.unsorted = false;
+        }
+        
+        this.selected.clear();
+        this.removed.clear();
+        this.locks.clear();
+        this.conflicting.clear();
+        this.agenda.clear();
+        this.trail.clear();
+        this.decisions.clear();
+        this.doomed.clear();
+        this.steps = 0;
+        
+        for (final VersionedPackage request : requests)
+            this.agenda.add(new Requirement(request, null, reinstall, 0, 0));
+        
+        String failure = null;
+        for (int position = 0;;)
+        {
+            if (position == this.agenda.size())
+                return plan();
+            
+            final Requirement requirement = this.agenda.get(position);
+            if ((requirement.dependent != null) && (isPresent(requirement.dependent) == false))
+            {   position++;
+                continue;
+            }
+            
+            final Candidate satisfier = satisfier(requirement.constraint, requirement.reinstall);
+            if (satisfier != null)
+            {   if (this.selected.get(satisfier.pack.name) != satisfier)
+                    lock(satisfier.pack.name, requirement);
+                position++;
+                continue;
+            }
+            
+            final Candidate[] options = options(requirement);
+            Decision decision = new Decision(position, this.agenda.size(), this.trail.size(), options, this.decisions.size() + 1);
+            decision.conflicts.set(requirement.level);
+            decision.conflicts.set(requirement.cause);
+            if (requirement.reinstall == false)
+                blameDisplaced(requirement.constraint, decision.conflicts);
+            this.decisions.add(decision);
+            
+            while (tryNext(decision) == false)
+            {
+                if (failure == null)
+                    failure = (options.length == 0 ? "No package satisfies " : "Cannot select a package satisfying ")
+                              + requirement.constraint + (requirement.dependent == null ? "" : ", required by " + requirement.dependent.pack);
+                
+                final BitSet conflicts = decision.conflicts;
+                conflicts.clear(0);
+                if (conflicts.length() > decision.level)
+                    conflicts.clear(decision.level, conflicts.length());
+                final int target = conflicts.length() - 1;
+                if (target < 1)
+                    throw new UnsatisfiableDependenciesException(failure);
+                
+                for (int i = this.decisions.size(); i > target;)
+                    this.decisions.remove(--i);
+                decision = this.decisions.get(target - 1);
+                conflicts.clear(target);
+                if (conflicts.isEmpty())
+                    this.doomed.add(decision.options[decision.next - 1]);
+                decision.conflicts.or(conflicts);
+            }
+            position = decision.position + 1;
+        }
+    }
+    
+    
+    /**
+     * Selects the next candidate of a decision that can be selected
+     * 
+     * @param   decision  The decision
+     * @return            Whether a candidate was selected
+     * 
+     * @throws  UnsatisfiableDependenciesException  If the step limit is reached
+     */
+    private boolean tryNext(final Decision decision) throws UnsatisfiableDependenciesException
+    {
+        while (decision.next < decision.options.length)
+        {
+            rollback(decision);
+            if (++this.steps > this.stepLimit)
+                throw new UnsatisfiableDependenciesException("Gave up resolving dependencies after " + this.stepLimit + " steps");
+            final Candidate candidate = decision.options[decision.next++];
+            this.culprits.clear();
+            if (select(candidate, decision.level))
+                return true;
+            this.culprits.clear(decision.level);
+            if (this.culprits.isEmpty())
+                this.doomed.add(candidate);
+            decision.conflicts.or(this.culprits);
+        }
+        rollback(decision);
+        return false;
+    }
+    
+    
+    /**
+     * Restores the state of the search to what it was before a decision was made
+     * 
+     * @param  decision  The decision
+     */
+    private void rollback(final Decision decision)
+    {
+        for (int i = this.agenda.size(); i > decision.agendaSize;)
+            this.agenda.remove(--i);
+        
+        for (int i = this.trail.size(); i > decision.trailSize;)
+        {
+            final Change change = this.trail.remove(--i);
+            final ArrayList<?> list;
+            switch (change.kind)
+            {
+                case SELECTED:    this.selected.remove(change.name);  break;
+                case REMOVED:     this.removed.remove(change.name);   break;
+                case LOCKED:      list = this.locks.get(change.name);        list.remove(list.size() - 1);  break;
+                case CONFLICTED:  list = this.conflicting.get(change.name);  list.remove(list.size() - 1);  break;
+            }
+        }
+    }
+    
+    
+    /**
+     * Lists the packages that can be selected to satisfy a requirement, in order of preference;
+     * if the requirement is a dependency of an installed package that has not been selected,
+     * the other versions of that package are included last, as upgrading it also resolves
+     * the requirement
+     * 
+     * @param   requirement  The requirement
+     * @return               The packages
+     */
+    private Candidate[] options(final Requirement requirement)
+    {
+        final VersionedPackage constraint = requirement.constraint;
+        final ArrayList<Candidate> rc = new ArrayList<>();
+        
+        final ArrayList<Candidate> named = this.packages.get(constraint.name);
+        if (named != null)
+            for (final Candidate candidate : named)
+                if (candidate.available && candidate.pack.intersects(constraint) && (isIgnored(candidate) == false))
+                    rc.add(candidate);
+        
+        final ArrayList<Candidate> providers = this.providers.get(constraint.name);
+        if (providers != null)
+            for (int pass = 0; pass < 2; pass++)
+                for (final Candidate candidate : providers)
+                    if ((current(candidate.pack.name) != null) == (pass == 0))
+                        if (candidate.available && provides(candidate, constraint) && (isIgnored(candidate) == false))
+                            rc.add(candidate);
+        
+        final Candidate dependent = requirement.dependent;
+        if ((dependent != null) && dependent.installed && (this.selected.get(dependent.pack.name) != dependent))
+            for (final Candidate candidate : this.packages.get(dependent.pack.name))
+                if ((candidate != dependent) && candidate.available && (isIgnored(candidate) == false) && (rc.contains(candidate) == false))
+                    rc.add(candidate);
+        
+        return rc.toArray(new Candidate[rc.size()]);
+    }
+    
+    
+    /**
+     * Selects a package, removing installed packages that it replaces or conflicts with,
+     * and adds its dependencies to the agenda; if the package cannot be selected, the
+     * decision levels to blame are added to {@link #culprits}
+     * 
+     * @param   candidate  The package
+     * @param   level      The current decision level
+     * @return             Whether the package could be selected, if not the state must be rolled back
+     */
+    private boolean select(final Candidate candidate, final int level)
+    {
+        if (this.doomed.contains(candidate))
+            return false;
+        final String name = candidate.pack.name;
+        final Candidate other = this.selected.get(name);
+        if (other != null)
+        {   this.culprits.set(other.level);
+            return other == candidate;
+        }
+        final Candidate culprit = conflictor(candidate);
+        if (culprit != null)
+        {   this.culprits.set(culprit.level);
+            return false;
+        }
+        
+        final Candidate previous = current(name);
+        candidate.level = level;
+        this.selected.put(name, candidate);
+        this.trail.add(new Change(SELECTED, name));
+        if ((previous != null) && (previous != candidate))
+            vacate(previous, level);
+        
+        for (final VersionedPackage conflict : candidate.conflicts)
+        {
+            ArrayList<Candidate> list = this.conflicting.get(conflict.name);
+            if (list == null)
+                this.conflicting.put(conflict.name, list = new ArrayList<Candidate>());
+            list.add(candidate);
+            this.trail.add(new Change(CONFLICTED, conflict.name));
+            
+            for (final Candidate conflictee : present(conflict))
+                if (conflictee != candidate)
+                    if (this.selected.get(conflictee.pack.name) == conflictee)
+                    {   this.culprits.set(conflictee.level);
+                        return false;
+                    }
+                    else
+                        remove(conflictee, level);
+        }
+        
+        for (int i = -1, n = candidate.provides.length; i < n; i++)
+        {
+            final String provide = i < 0 ? name : candidate.provides[i].name;
+            final ArrayList<Candidate> conflictors = this.installedConflicts.get(provide);
+            if (conflictors != null)
+                for (final Candidate conflictor : conflictors)
+                    if ((conflictor.pack.name.equals(name) == false) && isPresent(conflictor) && (this.selected.get(conflictor.pack.name) != conflictor))
+                        for (final VersionedPackage conflict : conflictor.conflicts)
+                            if (conflict.name.equals(provide) && matches(candidate, conflict))
+                            {   remove(conflictor, level);
+                                break;
+                            }
+        }
+        
+        for (final VersionedPackage replacee : candidate.replaces)
+        {
+            final Candidate installed = current(replacee.name);
+            if ((installed != null) && (installed != candidate) && (this.selected.get(replacee.name) != installed) && installed.pack.intersects(replacee))
+                remove(installed, level);
+        }
+        
+        if (this.nodeps == false)
+            for (final VersionedPackage dependency : candidate.dependencies)
+                this.agenda.add(new Requirement(dependency, candidate, this.recursive, level, 0));
+        return true;
+    }
+    
+    
+    /**
+     * Removes an installed package
+     * 
+     * @param  candidate  The package
+     * @param  level      The current decision level
+     */
+    private void remove(final Candidate candidate, final int level)
+    {
+        candidate.level = level;
+        this.removed.add(candidate.pack.name);
+        this.trail.add(new Change(REMOVED, candidate.pack.name));
+        vacate(candidate, level);
+    }
+    
+    
+    /**
+     * Adds the requirements an installed package satisfied, that are no longer satisfied now
+     * that it has been upgraded or removed, and the dependencies of the installed packages
+     * that depended on it, to the agenda
+     * 
+     * @param  candidate  The no longer present package
+     * @param  level      The current decision level
+     */
+    private void vacate(final Candidate candidate, final int level)
+    {
+        final ArrayList<Requirement> locks = this.locks.get(candidate.pack.name);
+        if (locks != null)
+            for (final Requirement lock : locks)
+                if ((lock.dependent == null) || isPresent(lock.dependent))
+                    if (satisfier(lock.constraint, false) == null)
+                        this.agenda.add(new Requirement(lock.constraint, lock.dependent, false, lock.level, level));
+        
+        if (this.nodeps == false)
+            for (int i = -1, n = candidate.provides.length; i < n; i++)
+            {
+                final String provide = i < 0 ? candidate.pack.name : candidate.provides[i].name;
+                final ArrayList<Candidate> dependents = this.installedDependents.get(provide);
+                if (dependents != null)
+                    for (final Candidate dependent : dependents)
+                        if (isPresent(dependent) && (this.selected.get(dependent.pack.name) != dependent))
+                            for (final VersionedPackage dependency : dependent.dependencies)
+                                if (dependency.name.equals(provide))
+                                    this.agenda.add(new Requirement(dependency, dependent, false, level, 0));
+            }
+    }
+    
+    
+    /**
+     * Records that a requirement is satisfied by an installed package
+     * 
+     * @param  name         The name of the installed package
+     * @param  requirement  The requirement
+     */
+    private void lock(final String name, final Requirement requirement)
+    {
+        ArrayList<Requirement> list = this.locks.get(name);
+        if (list == null)
+            this.locks.put(name, list = new ArrayList<Requirement>());
+        list.add(requirement);
+        this.trail.add(new Change(LOCKED, name));
+    }
+    
+    
+    /**
+     * Finds a selected package that conflicts with a package
+     * 
+     * @param   candidate  The package
+     * @return             The selected package, {@code null} if none
+     */
+    private Candidate conflictor(final Candidate candidate)
+    {
+        for (int i = -1, n = candidate.provides.length; i < n; i++)
+        {
+            final String provide = i < 0 ? candidate.pack.name : candidate.provides[i].name;
+            final ArrayList<Candidate> conflictors = this.conflicting.get(provide);
+            if (conflictors != null)
+                for (final Candidate conflictor : conflictors)
+                    if (conflictor != candidate)
+                        for (final VersionedPackage conflict : conflictor.conflicts)
+                            if (conflict.name.equals(provide) && matches(candidate, conflict))
+                                return conflictor;
+        }
+        return null;
+    }
+    
+    
+    /**
+     * Blames the decisions that upgraded or removed installed packages that would have
+     * satisfied a requirement
+     * 
+     * @param  constraint  The required package, with or without version bounds
+     * @param  conflicts   The set of decision levels to add the decisions to
+     */
+    private void blameDisplaced(final VersionedPackage constraint, final BitSet conflicts)
+    {
+        final Candidate candidate = this.installed.get(constraint.name);
+        if ((candidate != null) && (isPresent(candidate) == false) && candidate.pack.intersects(constraint))
+            conflicts.set(this.selected.containsKey(constraint.name) ? this.selected.get(constraint.name).level : candidate.level);
+        
+        final ArrayList<Candidate> providers = this.providers.get(constraint.name);
+        if (providers != null)
+            for (final Candidate provider : providers)
+                if (provider.installed && (isPresent(provider) == false) && provides(provider, constraint))
+                {   final Candidate other = this.selected.get(provider.pack.name);
+                    conflicts.set(other != null ? other.level : provider.level);
+                }
+    }
+    
+    
+    /**
+     * Checks whether a package is ignored
+     * 
+     * @param   candidate  The package
+     * @return             Whether the package is ignored
+     */
+    private boolean isIgnored(final Candidate candidate)
+    {
+        for (final VersionedPackage pack : this.ignored)
+            if (candidate.pack.intersects(pack))
+                return true;
+        return false;
+    }
+    
+    
+    /**
+     * Gets the package with a name that is on the system in the current state of the search
+     * 
+     * @param   name  The package name
+     * @return        The package, {@code null} if none
+     */
+    private Candidate current(final String name)
+    {
+        final Candidate candidate = this.selected.get(name);
+        if (candidate != null)
+            return candidate;
+        return this.removed.contains(name) ? null : this.installed.get(name);
+    }
+    
+    
+    /**
+     * Checks whether a package is on the system in the current state of the search
+     * 
+     * @param   candidate  The package
+     * @return             Whether the package is on the system
+     */
+    private boolean isPresent(final Candidate candidate)
+    {
+        return current(candidate.pack.name) == candidate;
+    }
+    
+    
+    /**
+     * Finds a package that satisfies a requirement in the current state of the search
+     * 
+     * @param   constraint    The required package, with or without version bounds
+     * @param   selectedOnly  Whether only selected packages may satisfy the requirement
+     * @return                The package, {@code null} if none
+     */
+    private Candidate satisfier(final VersionedPackage constraint, final boolean selectedOnly)
+    {
+        final Candidate candidate = selectedOnly ? this.selected.get(constraint.name) : current(constraint.name);
+        if ((candidate != null) && candidate.pack.intersects(constraint))
+            return candidate;
+        
+        final ArrayList<Candidate> providers = this.providers.get(constraint.name);
+        if (providers != null)
+            for (final Candidate provider : providers)
+                if ((selectedOnly ? this.selected.get(provider.pack.name) : current(provider.pack.name)) == provider)
+                    if (provides(provider, constraint))
+                        return provider;
+        return null;
+    }
+    
+    
+    /**
+     * Lists the packages on the system in the current state of the search that match a package
+     * 
+     * @param   constraint  The package, with or without version bounds
+     * @return              The packages
+     */
+    private ArrayList<Candidate> present(final VersionedPackage constraint)
+    {
+        final ArrayList<Candidate> rc = new ArrayList<>();
+        final Candidate candidate = current(constraint.name);
+        if ((candidate != null) && candidate.pack.intersects(constraint))
+            rc.add(candidate);
+        
+        final ArrayList<Candidate> providers = this.providers.get(constraint.name);
+        if (providers != null)
+            for (final Candidate provider : providers)
+                if (isPresent(provider) && provides(provider, constraint))
+                    rc.add(provider);
+        return rc;
+    }
+    
+    
+    /**
+     * Checks whether a package is, or provides, a package
+     * 
+     * @param   candidate   The package
+     * @param   constraint  The package, with or without version bounds, it may be or provide
+     * @return              Whether the package is or provides the package
+     */
+    private static boolean matches(final Candidate candidate, final VersionedPackage constraint)
+    {
+        return candidate.pack.intersects(constraint) || provides(candidate, constraint);
+    }
+    
+    
+    /**
+     * Checks whether a package provides a package
+     * 
+     * @param   candidate   The package
+     * @param   constraint  The package, with or without version bounds, it may provide
+     * @return              Whether the package provides the package
+     */
+    private static boolean provides(final Candidate candidate, final VersionedPackage constraint)
+    {
+        for (final VersionedPackage provide : candidate.provides)
+            if (provide.intersects(constraint))
+                return true;
+        return false;
+    }
+    
+    
+    /**
+     * Creates the plan for the current state of the search
+     * 
+     * @return  The plan
+     */
+    private Plan plan()
+    {
+        final ArrayList<Candidate> order = new ArrayList<>();
+        for (final Change change : this.trail)
+            if (change.kind == SELECTED)
+                order.add(this.selected.get(change.name));
+        
+        final HashMap<Candidate, ArrayList<Candidate>> edges = new HashMap<>();
+        final HashMap<VersionedPackage, ArrayList<VersionedPackage>> dependencies = new HashMap<>();
+        for (final Candidate candidate : order)
+        {
+            final ArrayList<Candidate> list = new ArrayList<>();
+            final ArrayList<VersionedPackage> packs = new ArrayList<>();
+            if (this.nodeps == false)
+                for (final VersionedPackage dependency : candidate.dependencies)
+                {   final Candidate satisfier = satisfier(dependency, false);
+                    if ((satisfier != null) && (satisfier != candidate) && (this.selected.get(satisfier.pack.name) == satisfier) && (list.contains(satisfier) == false))
+                    {   list.add(satisfier);
+                        packs.add(satisfier.pack);
+                }   }
+            edges.put(candidate, list);
+            dependencies.put(candidate.pack, packs);
+        }
+        
+        final ArrayList<VersionedPackage> install = new ArrayList<>();
+        final HashSet<Candidate> visited = new HashSet<>();
+        final Candidate[] stack = new Candidate[order.size()];
+        final int[] cursors = new int[order.size()];
+        for (final Candidate root : order)
+        {
+            if (visited.add(root) == false)
+                continue;
+            int depth = 0;
+            stack[0] = root;
+            cursors[0] = 0;
+            while (depth >= 0)
+            {
+                final ArrayList<Candidate> list = edges.get(stack[depth]);
+                if (cursors[depth] < list.size())
+                {   final Candidate dependency = list.get(cursors[depth]++);
+                    if (visited.add(dependency))
+                    {   stack[++depth] = dependency;
+                        cursors[depth] = 0;
+                }   }
+                else
+                    install.add(stack[depth--].pack);
+            }
+        }
+        
+        final ArrayList<VersionedPackage> remove = new ArrayList<>();
+        for (final String name : this.removed)
+            if (this.selected.containsKey(name) == false)
+                remove.add(this.installed.get(name).pack);
+        
+        return new Plan(install, remove, dependencies, this.steps);
+    }
+    
+    
+    
+    /**
+     * Transaction plan
+     */
+    public static final class Plan
+    {
+        /**
+         * Constructor
+         * 
+         * @param  install       Packages to install, dependencies first
+         * @param  remove        Installed packages to remove
+         * @param  dependencies  Map from packages to install to the packages to install they depend on
+         * @param  steps         The number of candidates tried
+         */
+        Plan(final ArrayList<VersionedPackage> install, final ArrayList<VersionedPackage> remove,
+             final HashMap<VersionedPackage, ArrayList<VersionedPackage>> dependencies, final int steps)
+        {
+            this.install = install;
+            this.remove = remove;
+            this.dependencies = dependencies;
+            this.steps = steps;
+        }
+        
+        
+        
+        /**
+         * Packages to install, each package after the packages in the plan it depends on,
+         * unless they depend on each other
+         */
+        public final ArrayList<VersionedPackage> install;
+        
+        /**
+         * Installed packages to remove, because a package in the plan replaces or conflicts
+         * with them; installed packages that are upgraded are not listed
+         */
+        public final ArrayList<VersionedPackage> remove;
+        
+        /**
+         * Map from packages to install to the packages to install they depend on
+         */
+        public final HashMap<VersionedPackage, ArrayList<VersionedPackage>> dependencies;
+        
+        /**
+         * The number of candidates tried to find the plan
+         */
+        public final int steps;
+        
+        
+        
+        /**
+         * Checks whether the plan does nothing
+         * 
+         * @return  Whether the plan does nothing
+         */
+        public boolean isEmpty()
+        {
+            return this.install.isEmpty() && this.remove.isEmpty();
+        }
+        
+    }
+    
+    
+    /**
+     * Known package
+     */
+    private static final class Candidate
+    {
+        /**
+         * Constructor
+         * 
+         * @param  pack          The package, with its exact version
+         * @param  dependencies  The package's dependencies
+         * @param  provides      The packages the package provides
+         * @param  conflicts     The packages the package conflicts with
+         * @param  replaces      The packages the package replaces
+         */
+        public Candidate(final VersionedPackage pack, final VersionedPackage[] dependencies, final VersionedPackage[] provides,
+                         final VersionedPackage[] conflicts, final VersionedPackage[] replaces)
+        {
+            this.pack = pack;
+            this.dependencies = dependencies;
+            this.provides = provides;
+            this.conflicts = conflicts;
+            this.replaces = replaces;
+        }
+        
+        
+        
+        /**
+         * The package, with its exact version
+         */
+        public final VersionedPackage pack;
+        
+        /**
+         * The package's dependencies
+         */
+        public final VersionedPackage[] dependencies;
+        
+        /**
+         * The packages the package provides
+         */
+        public final VersionedPackage[] provides;
+        
+        /**
+         * The packages the package conflicts with
+         */
+        public final VersionedPackage[] conflicts;
+        
+        /**
+         * The packages the package replaces
+         */
+        public final VersionedPackage[] replaces;
+        
+        /**
+         * Whether the package can be installed
+         */
+        public boolean available = false;
+        
+        /**
+         * Whether the package is installed
+         */
+        public boolean installed = false;
+        
+        /**
+         * The decision level at which the package was selected, or if it is installed, removed;
+         * valid while it is selected or removed
+         */
+        public int level = 0;
+        
+    }
+    
+    
+    /**
+     * Required package
+     */
+    private static final class Requirement
+    {
+        /**
+         * Constructor
+         * 
+         * @param  constraint  The required package, with or without version bounds
+         * @param  dependent   The package that requires it, {@code null} if requested
+         * @param  reinstall   Whether the requirement must be satisfied by a selected package
+         * @param  level       The decision level at which the requirement was added
+         * @param  cause       The decision level that broke the requirement, if it was satisfied before, otherwise zero
+         */
+        public Requirement(final VersionedPackage constraint, final Candidate dependent, final boolean reinstall, final int level, final int cause)
+        {
+            this.constraint = constraint;
+            this.dependent = dependent;
+            this.reinstall = reinstall;
+            this.level = level;
+            this.cause = cause;
+        }
+        
+        
+        
+        /**
+         * The required package, with or without version bounds
+         */
+        public final VersionedPackage constraint;
+        
+        /**
+         * The package that requires it, {@code null} if requested
+         */
+        public final Candidate dependent;
+        
+        /**
+         * Whether the requirement must be satisfied by a selected package
+         */
+        public final boolean reinstall;
+        
+        /**
+         * The decision level at which the requirement was added
+         */
+        public final int level;
+        
+        /**
+         * The decision level that broke the requirement, if it was satisfied before, otherwise zero
+         */
+        public final int cause;
+        
+    }
+    
+    
+    /**
+     * Requirement for which a candidate has been selected
+     */
+    private static final class Decision
+    {
+        /**
+         * Constructor
+         * 
+         * @param  position    The requirement's position in the agenda
+         * @param  agendaSize  The size of the agenda before the decision
+         * @param  trailSize   The size of the trail before the decision
+         * @param  options     The candidates, in order of preference
+         * @param  level       The decision level
+         */
+        public Decision(final int position, final int agendaSize, final int trailSize, final Candidate[] options, final int level)
+        {
+            this.position = position;
+            this.agendaSize = agendaSize;
+            this.trailSize = trailSize;
+            this.options = options;
+            this.level = level;
+        }
+        
+        
+        
+        /**
+         * The requirement's position in the agenda
+         */
+        public final int position;
+        
+        /**
+         * The size of the agenda before the decision
+         */
+        public final int agendaSize;
+        
+        /**
+         * The size of the trail before the decision
+         */
+        public final int trailSize;
+        
+        /**
+         * The candidates, in order of preference
+         */
+        public final Candidate[] options;
+        
+        /**
+         * The decision level
+         */
+        public final int level;
+        
+        /**
+         * The decision levels to blame for the candidates that could not be selected
+         */
+        public final BitSet conflicts = new BitSet();
+        
+        /**
+         * The index of the next candidate to try
+         */
+        public int next = 0;
+        
+    }
+    
+    
+    /**
+     * Change to the state of the search
+     */
+    private static final class Change
+    {
+        /**
+         * Constructor
+         * 
+         * @param  kind  The kind of change
+         * @param  name  The package name the change concerns
+         */
+        public Change(final int kind, final String name)
+        {
+            this.kind = kind;
+            this.name = name;
+        }
+        
+        
+        
+        /**
+         * The kind of change
+         */
+        public final int kind;
+        
+        /**
+         * The package name the change concerns
+         */
+        public final String name;
+        
+    }
+    
+}
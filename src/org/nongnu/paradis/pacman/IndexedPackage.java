@@ -0,0 +1,141 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.pacman;
+import org.nongnu.paradis.io.*;
+
+
+/**
+ * The metadata of a package that is needed to resolve and install it,
+ * as stored in the {@link PackageIndex}
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@Transferable
+public class IndexedPackage
+{
+    /**
+     * Constructor
+     * 
+     * @param  file                  The file name of the package's info file
+     * @param  modified              The modification time of the info file when it was indexed
+     * @param  size                  The size of the info file when it was indexed
+     * @param  packageName           Package name
+     * @param  packageVersion        Package version
+     * @param  provides              Logical packages proviced by the package
+     * @param  replaces              Physical packages replaced by the package
+     * @param  conflicts             Package conflicting with the package
+     * @param  groups                Package groups in which the package is included
+     * @param  dependencies          Manditory paradis dependencies
+     * @param  optionalDependencies  Optional paradis dependencies
+     * @param  files                 Files included in the package
+     */
+    public IndexedPackage(final String file, final long modified, final long size, final String packageName, final String packageVersion,
+                          final String[] provides, final String[] replaces, final String[] conflicts, final String[] groups,
+                          final String[] dependencies, final String[] optionalDependencies, final String[] files)
+    {
+        this.file                 = file;
+        this.modified             = modified;
+        this.size                 = size;
+        this.packageName          = packageName;
+        this.packageVersion       = packageVersion;
+        this.provides             = provides;
+        this.replaces             = replaces;
+        this.conflicts            = conflicts;
+        this.groups               = groups;
+        this.dependencies         = dependencies;
+        this.optionalDependencies = optionalDependencies;
+        this.files                = files;
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param  file      The file name of the package's info file
+     * @param  modified  The modification time of the info file
+     * @param  size      The size of the info file
+     * @param  info      The package's info
+     */
+    public IndexedPackage(final String file, final long modified, final long size, final PackageInfo info)
+    {
+        this(file, modified, size, info.packageName, info.packageVersion, info.provides, info.replaces, info.conflicts,
+             info.groups, info.dependencies, info.optionalDependencies, info.files);
+    }
+    
+    
+    
+    /**
+     * The file name of the package's info file
+     */
+    public final String file;
+    
+    /**
+     * The modification time of the info file when it was indexed
+     */
+    public final long modified;
+    
+    /**
+     * The size of the info file when it was indexed
+     */
+    public final long size;
+    
+    /**
+     * Package name
+     */
+    public final String packageName;
+    
+    /**
+     * Package version
+     */
+    public final String packageVersion;
+    
+    /**
+     * Logical packages proviced by the package, see {@link PackageInfo#provides}
+     */
+    public final String[] provides;
+    
+    /**
+     * Physical packages replaced by the package, see {@link PackageInfo#replaces}
+     */
+    public final String[] replaces;
+    
+    /**
+     * Package conflicting with the package, see {@link PackageInfo#conflicts}
+     */
+    public final String[] conflicts;
+    
+    /**
+     * Package groups in which the package is included
+     */
+    public final String[] groups;
+    
+    /**
+     * Manditory paradis dependencies, see {@link PackageInfo#dependencies}
+     */
+    public final String[] dependencies;
+    
+    /**
+     * Optional paradis dependencies, see {@link PackageInfo#optionalDependencies}
+     */
+    public final String[] optionalDependencies;
+    
+    /**
+     * Files included in the package, see {@link PackageInfo#files}
+     */
+    public final String[] files;
+    
+}
@@ -0,0 +1,583 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.pacman;
+import org.nongnu.paradis.io.*;
+import org.nongnu.paradis.*;
+
+import java.util.*;
+import java.util.zip.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+
+/**
+ * <p>Database of installed packages</p>
+ * <p>
+ *   The database file is a sorted array of fixed size records followed by a string
+ *   table, it is memory-mapped and looked up by binary search, so opening it does not
+ *   require reading it. Changes are appended to a journal, where each record has a
+ *   CRC-32 so a record torn by a crash is discarded, and they are merged into a new
+ *   database file, which replaces the old one atomically, when the journal grows large.
+ * </p>
+ * <p>
+ *   Database file layout, big-endian: magic, format, record count, string table offset,
+ *   each as an int, followed by the records, each a name offset (int), name length
+ *   (short), flags (short), package offset (int) and package length (int), where the
+ *   offsets are relative to the string table and the strings are UTF-8.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class InstalledDatabase
+{
+    /**
+     * The file where the database is saved
+     */
+    private static final String DATABASE_FILE = Pacman.INSTALLED_DATABASE_FILE;
+    
+    /**
+     * The file where changes to the database are journaled
+     */
+    private static final String JOURNAL_FILE = Pacman.INSTALLED_JOURNAL_FILE;
+    
+    /**
+     * Identifies database files
+     */
+    private static final int MAGIC = 0x50444200;
+    
+    /**
+     * The version of the database file format
+     */
+    private static final int FORMAT = 1;
+    
+    /**
+     * The size of the database file header
+     */
+    private static final int HEADER_SIZE = 16;
+    
+    /**
+     * The size of a database record
+     */
+    private static final int RECORD_SIZE = 16;
+    
+    /**
+     * Flag for explicitly installed packages
+     */
+    private static final int EXPLICIT = 1;
+    
+    /**
+     * Journal operation: add or replace a package
+     */
+    private static final byte PUT = 1;
+    
+    /**
+     * Journal operation: remove a package
+     */
+    private static final byte REMOVE = 2;
+    
+    /**
+     * The number of journal records at which the database is compacted
+     */
+    public static final int COMPACTION_THRESHOLD = 256;
+    
+    /**
+     * Character set for the strings
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    
+    
+    /**
+     * Constructor
+     * 
+     * @param  database  The file where the database is saved
+     * @param  journal   The file where changes to the database are journaled
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public InstalledDatabase(final String database, final String journal) throws IOException
+    {
+        this.databaseFile = new File(database);
+        this.journalFile = new File(journal);
+        map();
+        replay();
+    }
+    
+    
+    
+    /**
+     * The database of this process
+     */
+    private static InstalledDatabase instance = null;
+    
+    /**
+     * The file where the database is saved
+     */
+    private final File databaseFile;
+    
+    /**
+     * The file where changes to the database are journaled
+     */
+    private final File journalFile;
+    
+    /**
+     * The mapped database file, {@code null} if there is none
+     */
+    private ByteBuffer map = null;
+    
+    /**
+     * The number of records in {@link #map}
+     */
+    private int count = 0;
+    
+    /**
+     * The position of the string table in {@link #map}
+     */
+    private int strings = 0;
+    
+    /**
+     * Journaled changes by package name, a removed package maps to {@code null}
+     */
+    private final HashMap<String, Entry> journaled = new HashMap<>();
+    
+    /**
+     * The number of records in the journal
+     */
+    private int journalSize = 0;
+    
+    /**
+     * The journal, {@code null} until the first change
+     */
+    private FileChannel journal = null;
+    
+    
+    
+    /**
+     * Installed package
+     */
+    public static final class Entry
+    {
+        /**
+         * Constructor
+         * 
+         * @param  pack      The package with its version, as its file name without extension
+         * @param  explicit  Whether the package was installed explicitly
+         */
+        public Entry(final String pack, final boolean explicit)
+        {
+            this.pack = pack;
+            this.explicit = explicit;
+        }
+        
+        
+        
+        /**
+         * The package with its version, as its file name without extension
+         */
+        public final String pack;
+        
+        /**
+         * Whether the package was installed explicitly
+         */
+        public final boolean explicit;
+        
+    }
+    
+    
+    
+    /**
+     * Gets, and if not already opened, opens the database in {@link Pacman#INSTALLED_DATABASE_FILE},
+     * importing {@link Pacman#PACKAGES_FILE} if the database does not exist
+     * 
+     * @return  The database
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public static synchronized InstalledDatabase getInstance() throws IOException
+    {
+        if (instance == null)
+        {   instance = new InstalledDatabase(DATABASE_FILE, JOURNAL_FILE);
+            if (instance.isEmpty() && (instance.databaseFile.exists() == false) && (new File(Pacman.PACKAGES_FILE)).exists())
+                instance.importPackagesFile(Pacman.PACKAGES_FILE);
+        }
+        return instance;
+    }
+    
+    
+    /**
+     * Gets the name of a package
+     * 
+     * @param   pack  The package with its version
+     * @return        The package name
+     */
+    private static String nameOf(final String pack)
+    {
+        return (new VersionedPackage(pack)).name;
+    }
+    
+    
+    /**
+     * Maps the database file
+     * 
+     * @throws  IOException  If the file is malformed
+     */
+    private void map() throws IOException
+    {
+        this.map = null;
+        this.count = this.strings = 0;
+        if (this.databaseFile.exists() == false)
+            return;
+        
+        try (final FileChannel channel = FileChannel.open(this.databaseFile.toPath(), StandardOpenOption.READ))
+        {   if (channel.size() < HEADER_SIZE)
+                throw new IOException("Truncated installed package database: " + this.databaseFile);
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != FORMAT))
+                throw new IOException("Not an installed package database of format " + FORMAT + ": " + this.databaseFile);
+            this.count = buffer.getInt(8);
+            this.strings = buffer.getInt(12);
+            if ((this.count < 0) || (this.strings != HEADER_SIZE + this.count * RECORD_SIZE) || (this.strings > buffer.capacity()))
+                throw new IOException("Corrupt installed package database: " + this.databaseFile);
+            this.map = buffer;
+        }
+    }
+    
+    
+    /**
+     * Reads a string from the string table
+     * 
+     * @param   offset  The offset of the string in the string table
+     * @param   length  The length of the string in bytes
+     * @return          The string
+     */
+    private String string(final int offset, final int length)
+    {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer buffer = this.map.duplicate();
+        buffer.position(this.strings + offset);
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+    
+    
+    /**
+     * Reads the package name of a record
+     * 
+     * @param   index  The index of the record
+     * @return         The package name
+     */
+    private String nameAt(final int index)
+    {
+        final int record = HEADER_SIZE + index * RECORD_SIZE;
+        return string(this.map.getInt(record), this.map.getShort(record + 4) & 0xFFFF);
+    }
+    
+    
+    /**
+     * Reads a record
+     * 
+     * @param   index  The index of the record
+     * @return         The installed package
+     */
+    private Entry entryAt(final int index)
+    {
+        final int record = HEADER_SIZE + index * RECORD_SIZE;
+        final boolean explicit = (this.map.getShort(record + 6) & EXPLICIT) != 0;
+        return new Entry(string(this.map.getInt(record + 8), this.map.getInt(record + 12)), explicit);
+    }
+    
+    
+    /**
+     * Finds a package in the database file
+     * 
+     * @param   name  The package name
+     * @return        The index of the record, -1 if missing
+     */
+    private int find(final String name)
+    {
+        int low = 0, high = this.count - 1;
+        while (low <= high)
+        {   final int mid = (low + high) >>> 1;
+            final int comp = nameAt(mid).compareTo(name);
+            if      (comp < 0)  low = mid + 1;
+            else if (comp > 0)  high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+    
+    
+    /**
+     * Gets an installed package
+     * 
+     * @param   name  The package name
+     * @return        The installed package, {@code null} if not installed
+     */
+    public synchronized Entry get(final String name)
+    {
+        if (this.journaled.containsKey(name))
+            return this.journaled.get(name);
+        final int index = find(name);
+        return index < 0 ? null : entryAt(index);
+    }
+    
+    
+    /**
+     * Gets all installed packages
+     * 
+     * @return  The installed packages by package name, sorted by name
+     */
+    public synchronized TreeMap<String, Entry> entries()
+    {
+        final TreeMap<String, Entry> rc = new TreeMap<>();
+        for (int i = 0; i < this.count; i++)
+            rc.put(nameAt(i), entryAt(i));
+        for (final Map.Entry<String, Entry> change : this.journaled.entrySet())
+            if (change.getValue() == null)
+                rc.remove(change.getKey());
+            else
+                rc.put(change.getKey(), change.getValue());
+        return rc;
+    }
+    
+    
+    /**
+     * Gets whether there are no installed packages
+     * 
+     * @return  Whether there are no installed packages
+     */
+    public synchronized boolean isEmpty()
+    {
+        if (this.journaled.isEmpty())
+            return this.count == 0;
+        return entries().isEmpty();
+    }
+    
+    
+    /**
+     * Gets the number of changes in the journal
+     * 
+     * @return  The number of journal records
+     */
+    public synchronized int getJournalSize()
+    {
+        return this.journalSize;
+    }
+    
+    
+    /**
+     * Adds or replaces an installed package, the change is written to the journal
+     * but may not be on the disk until {@link #commit()} is invoked
+     * 
+     * @param   pack      The package with its version, as its file name without extension
+     * @param   explicit  Whether the package was installed explicitly
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public synchronized void put(final String pack, final boolean explicit) throws IOException
+    {
+        append(PUT, explicit, pack);
+        this.journaled.put(nameOf(pack), new Entry(pack, explicit));
+    }
+    
+    
+    /**
+     * Removes an installed package, the change is written to the journal
+     * but may not be on the disk until {@link #commit()} is invoked
+     * 
+     * @param   name  The package name
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public synchronized void remove(final String name) throws IOException
+    {
+        append(REMOVE, false, name);
+        this.journaled.put(name, null);
+    }
+    
+    
+    /**
+     * Forces journaled changes to the disk, and compacts the database if the journal has grown large
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public synchronized void commit() throws IOException
+    {
+        if (this.journal != null)
+            this.journal.force(false);
+        if (this.journalSize >= COMPACTION_THRESHOLD)
+            compact();
+    }
+    
+    
+    /**
+     * Writes a new database file with the journaled changes merged in, and empties the journal
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public synchronized void compact() throws IOException
+    {
+        final TreeMap<String, Entry> all = entries();
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        final ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + all.size() * RECORD_SIZE);
+        
+        records.putInt(MAGIC).putInt(FORMAT).putInt(all.size()).putInt(HEADER_SIZE + all.size() * RECORD_SIZE);
+        for (final Map.Entry<String, Entry> entry : all.entrySet())
+        {   final byte[] name = entry.getKey().getBytes(UTF_8);
+            final byte[] pack = entry.getValue().pack.getBytes(UTF_8);
+            records.putInt(table.size()).putShort((short)(name.length)).putShort((short)(entry.getValue().explicit ? EXPLICIT : 0));
+            table.write(name);
+            records.putInt(table.size()).putInt(pack.length);
+            table.write(pack);
+        }
+        records.flip();
+        
+        final File temp = new File(this.databaseFile.getPath() + ".new");
+        try (final FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {   while (records.hasRemaining())
+                channel.write(records);
+            final ByteBuffer strings = ByteBuffer.wrap(table.toByteArray());
+            while (strings.hasRemaining())
+                channel.write(strings);
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), this.databaseFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        if (this.journal != null)
+        {   this.journal.truncate(0);
+            this.journal.force(true);
+        }
+        else
+            Files.deleteIfExists(this.journalFile.toPath());
+        this.journaled.clear();
+        this.journalSize = 0;
+        map();
+    }
+    
+    
+    /**
+     * Appends a record to the journal
+     * 
+     * @param   op        The operation
+     * @param   explicit  Whether the package was installed explicitly
+     * @param   string    The package with its version, or the package name
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    private void append(final byte op, final boolean explicit, final String string) throws IOException
+    {
+        if (this.journal == null)
+            this.journal = FileChannel.open(this.journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        
+        final byte[] bytes = string.getBytes(UTF_8);
+        final ByteBuffer record = ByteBuffer.allocate(4 + 2 + bytes.length + 4);
+        record.putInt(bytes.length).put(op).put((byte)(explicit ? 1 : 0)).put(bytes);
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int)(crc.getValue()));
+        record.flip();
+        while (record.hasRemaining())
+            this.journal.write(record);
+        this.journalSize++;
+    }
+    
+    
+    /**
+     * Reads the journal, a torn or corrupt record and everything after it is discarded
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    private void replay() throws IOException
+    {
+        if (this.journalFile.exists() == false)
+            return;
+        
+        long valid = 0;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile))))
+        {   final CRC32 crc = new CRC32();
+            for (;;)
+            {   final int length;
+                try
+                {   length = in.readInt();
+                }
+                catch (final EOFException ignore)
+                {   break;
+                }
+                if ((length < 0) || (length > 0xFFFF))
+                    break;
+                final byte[] record = new byte[4 + 2 + length];
+                ByteBuffer.wrap(record).putInt(length);
+                in.readFully(record, 4, 2 + length);
+                crc.reset();
+                crc.update(record, 0, record.length);
+                if (in.readInt() != (int)(crc.getValue()))
+                    break;
+                
+                final String string = new String(record, 6, length, UTF_8);
+                if (record[4] == PUT)
+                    this.journaled.put(nameOf(string), new Entry(string, record[5] != 0));
+                else
+                    this.journaled.put(string, null);
+                this.journalSize++;
+                valid += record.length + 4;
+            }
+        }
+        catch (final EOFException ignore)
+        {   //Torn record
+        }
+        
+        if (valid < this.journalFile.length())
+        {   System.err.println("Discarding torn records at the end of " + this.journalFile);
+            try (final FileChannel channel = FileChannel.open(this.journalFile.toPath(), StandardOpenOption.WRITE))
+            {   channel.truncate(valid);
+            }
+        }
+    }
+    
+    
+    /**
+     * Imports an installed package list in the format used before this database,
+     * a sequence of package strings, each followed by whether it was installed explicitly
+     * 
+     * @param   file  The file to import
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    private void importPackagesFile(final String file) throws IOException
+    {
+        try (final TransferInputStream tis = TransferStreamPool.input(new FileInputStream(file)))
+        {   for (;;)
+            {   final String pack;
+                try
+                {   if ((pack = tis.readObject(String.class)).isEmpty())
+                        break;
+                }
+                catch (final EOFException ignore)
+                {   break;
+                }
+                put(pack, tis.readBoolean());
+        }   }
+        compact();
+    }
+    
+}
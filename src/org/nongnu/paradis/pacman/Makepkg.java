@@ -41,6 +41,16 @@ public class Makepkg
      */
     private static int DEFAULT_BLOCK_SIZE = 8 << 10;
     
+    /**
+     * The default XZ compression preset
+     */
+    public static final int DEFAULT_PRESET = LZMA2Options.PRESET_MAX;
+    
+    /**
+     * The prefix of file checksums, identifying the algorithm
+     */
+    public static final String CHECKSUM_PREFIX = "sha3[576,1024,1024]:";
+    
     
     
     /**
@@ -72,7 +82,20 @@ public class Makepkg
                 exec(edit + " '" + args[1].replace("\\'", "'\\''") + fs + "PKGBUILD'");
             }
             else if (args[0].equals("--make"))
-            {   make(args[1]);
+            {   int preset = DEFAULT_PRESET;
+                int blockSize = ParallelXZOutputStream.DEFAULT_BLOCK_SIZE;
+                int threads = Runtime.getRuntime().availableProcessors();
+                for (int i = 2; i < args.length; i++)
+                    if      (args[i].startsWith("--preset="))      preset    = parseInteger(args[i].substring("--preset=".length()));
+                    else if (args[i].startsWith("--block-size="))  blockSize = parseInteger(args[i].substring("--block-size=".length())) << 10;
+                    else if (args[i].startsWith("--threads="))     threads   = parseInteger(args[i].substring("--threads=".length()));
+                make(args[1], preset, blockSize, threads);
+            }
+            else if (args[0].equals("--delta"))
+            {   final File delta = PackageDelta.getFile(args[2], args[1]);
+                final int patches = PackageDelta.create(args[1] + ".tar.xz", args[2] + ".tar.xz", delta, new LZMA2Options(DEFAULT_PRESET));
+                System.out.println("Package delta created: " + delta.getPath());
+                System.out.println(patches + " patched files, " + delta.length() + " bytes, " + (new File(args[2] + ".tar.xz")).length() + " bytes in the full tarball");
             }
             else if (args[0].equals("--reverse"))
             {
@@ -115,14 +138,30 @@ public class Makepkg
     
     
     /**
-     * Build a package
+     * Build a package, with the default compression settings
      * 
      * @param  directory  The package directory
      * 
      * @throws  IOException  On I/O exception
      */
-    @requires({"java-runtime>=6", "java-environment>=7"})
     public static void make(final String directory) throws IOException
+    {
+        make(directory, DEFAULT_PRESET, ParallelXZOutputStream.DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+    
+    
+    /**
+     * Build a package, the files are compressed in independent blocks on multiple threads
+     * 
+     * @param  directory  The package directory
+     * @param  preset     The XZ compression preset, 0 to 9
+     * @param  blockSize  The number of uncompressed bytes per compression block
+     * @param  threads    The number of blocks to compress concurrently
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    @requires({"java-runtime>=6", "java-environment>=7"})
+    public static void make(final String directory, final int preset, final int blockSize, final int threads) throws IOException
     {
         final String fs = Properties.getFileSeparator();
         final String pkgfile = directory + fs + "PKGBUILD";
@@ -168,6 +207,9 @@ public class Makepkg
         final UUID uuid   = map.containsKey("uuid") ? parseUUID(map.get("uuid")) : new UUID();
         
         String checksums = map.get("checksums");
+        final String[] paths = new String[files.length];
+        for (int i = 0, n = files.length; i < n; i++)
+            paths[i] = directory + files[i].replace("/", fs);
         final PackageInfo info = new PackageInfo(parseStrings(map.get("optionalSystemDependencies")),
                                                  parseStrings(map.get("optionalDependencies")),
                                                  parseStrings(map.get("systemDependencies")),
@@ -192,7 +234,7 @@ public class Makepkg
                                                  parseStrings(map.get("groups")),
                                                  files,
                                                  backup,
-                                                 checksums != null ? parseStrings(checksums) : checksums(files),
+                                                 checksums != null ? parseStrings(checksums) : checksums(paths),
                                                  parseString(map.get("category")),
                                                  uuid
                                                  );
@@ -213,21 +255,38 @@ public class Makepkg
         final String root = directory + fs + map.get("packageName") + "=" + epoch + ";" + map.get("packageVersion") + "-" + release;
         final String pkgxz = root + ".pkg.xz"; //Create first
         final String tarxz = root + ".tar.xz"; //Create last
-        final LZMA2Options lzma2 = new LZMA2Options(LZMA2Options.PRESET_MAX);
-        try (final TransferOutputStream tos = new TransferOutputStream(new XZOutputStream(new FileOutputStream(pkgxz), lzma2)))
+        final File tarIndex = TarIndex.forTarball(tarxz);
+        final LZMA2Options lzma2 = new LZMA2Options(preset);
+        try (final FileOutputStream fos = new FileOutputStream(pkgxz);
+             final ParallelXZOutputStream xz = new ParallelXZOutputStream(fos, lzma2, blockSize, threads);
+             final TransferOutputStream tos = TransferStreamPool.output(xz))
         {
             tos.writeObject(info);
             tos.flush();
             System.out.println("Package info file created: " + pkgxz);
         }
-        try (final TarOutputStream tar = new TarOutputStream(new XZOutputStream(new FileOutputStream(tarxz), lzma2)))
+        final byte[] buffer = new byte[DEFAULT_BLOCK_SIZE];
+        final TarIndex index = new TarIndex();
+        try (final FileOutputStream fos = new FileOutputStream(tarxz);
+             final ParallelXZOutputStream xz = new ParallelXZOutputStream(fos, lzma2, blockSize, threads);
+             final TarCounter counter = new TarCounter(xz);
+             final TarOutputStream tar = new TarOutputStream(counter, TarCounter.BLOCK, TarCounter.BLOCK))
         {   for (final String file : files)
             {
                 final TarEntry entry = new TarEntry(new File(directory + file));
                 entry.setName(file.substring(1));
                 tar.putNextEntry(entry);
+                /* the tar buffer holds back the last block it was given, which is the entry's header */
+                index.add(entry.getName(), counter.count + TarCounter.BLOCK, entry.getSize());
+                try (final InputStream is = new FileInputStream(directory + file))
+                {   for (int n; (n = is.read(buffer)) > 0;)
+                        tar.write(buffer, 0, n);
+                }
+                tar.closeEntry();
         }   }
         System.out.println("Package file tarball created: " + tarxz);
+        index.write(tarIndex);
+        System.out.println("Package file index created: " + tarIndex.getPath());
         
         System.out.println("Package UUID: " + uuid.toString());
         System.out.println("\nPackage ready for adding to database [pacman -Da]:");
@@ -235,6 +294,93 @@ public class Makepkg
     }
     
     
+    /**
+     * Stream that counts the bytes written to a tarball, the tarball is written one block at the time
+     * so that the count is exact, and is padded to a full standard record when closed
+     */
+    private static class TarCounter extends FilterOutputStream
+    {
+        /**
+         * The size of tar blocks
+         */
+        public static final int BLOCK = 512;
+        
+        /**
+         * The size of standard tar records
+         */
+        public static final int RECORD = 20 * BLOCK;
+        
+        
+        
+        /**
+         * Constructor
+         * 
+         * @param  next  The next stream in the chain
+         */
+        public TarCounter(final OutputStream next)
+        {
+            super(next);
+        }
+        
+        
+        
+        /**
+         * The number of bytes written
+         */
+        public long count = 0;
+        
+        /**
+         * Whether the stream has been closed
+         */
+        private boolean closed = false;
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final int b) throws IOException
+        {
+            this.out.write(b);
+            this.count++;
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final byte[] data, final int offset, final int length) throws IOException
+        {
+            this.out.write(data, offset, length);
+            this.count += length;
+        }
+        
+        
+        /**
+         * Pads the tarball with zeroes to a full record, with at least the second end-of-archive block, and closes it
+         * 
+         * @throws  IOException  On I/O exception
+         */
+        @Override
+        public void close() throws IOException
+        {
+            if (this.closed)
+                return;
+            this.closed = true;
+            try
+            {   final int pad = (int)(RECORD - (this.count + BLOCK) % RECORD) % RECORD + BLOCK;
+                write(new byte[pad], 0, pad);
+            }
+            finally
+            {   super.close();
+            }
+        }
+        
+    }
+    
+    
     /**
      * Creates a map of all keys and values (encoded) in a PKGBUILD file
      * 
@@ -364,26 +510,36 @@ public class Makepkg
     {
 	if (files == null)
 	    return null;
-	synchronized(SHA3.class)
-	{   final String[] rc = new String[files.length];
-	    final byte[] buffer = new byte[DEFAULT_BLOCK_SIZE];
-	    
-	    int index = 0;
-	    for (final String file : files)
-	    {   SHA3.initialise(576, 1024, 1024);
-		final int blocksize = DEFAULT_BLOCK_SIZE; // XXX: ask the from file
-		try (final InputStream is = new FileInputStream(file))
-		{   for (;;)
-		    {   int read = is.read(buffer);
-			if (read <= 0)
-			    break;
-			SHA3.update(buffer, read);
-		}   }
-		rc[index] = "sha3[576,1024,1024]:" + hexsum(SHA3.digest());
+	final String[] rc = new String[files.length];
+	int index = 0;
+	for (final String file : files)
+	    try (final InputStream is = new FileInputStream(file))
+	    {   rc[index++] = checksum(is);
 	    }
-	    
-	    return rc;
+	return rc;
+    }
+    
+    
+    /**
+     * Gets the checksum of a file, in the format used in {@link PackageInfo#checksums}
+     * 
+     * @param   is  The file's contents, the stream is read until its end
+     * @return      The file's checksum
+     * 
+     * @throws  IOException  On file reading error
+     */
+    public static String checksum(final InputStream is) throws IOException
+    {
+	final SHA3 sha3 = new SHA3(); /* one sponge per call, so files can be hashed concurrently */
+	final byte[] buffer = new byte[DEFAULT_BLOCK_SIZE];
+	sha3.initialise(576, 1024, 1024);
+	for (;;)
+	{   int read = is.read(buffer);
+	    if (read <= 0)
+		break;
+	    sha3.update(buffer, read);
 	}
+	return CHECKSUM_PREFIX + hexsum(sha3.digest());
     }
     
     
@@ -0,0 +1,452 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.pacman;
+import org.nongnu.paradis.local.Properties; //Explicit
+import org.nongnu.paradis.io.*;
+import org.nongnu.paradis.*;
+
+import org.tukaani.xz.*;
+import com.ice.tar.*;
+
+import java.util.*;
+import java.util.zip.*;
+import java.io.*;
+
+
+/**
+ * Binary delta between two versions of a package. For every file in the new version the
+ * delta stores either that the file is unchanged, its full contents, or a patch against the
+ * old version of the file, made of copies from the old file and literal data, found by
+ * matching blocks of the old file with a rolling checksum, as in rsync. The new version's
+ * tarball can be reconstructed from the delta and the old version's installed files.
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class PackageDelta
+{
+    /**
+     * Non-constructor
+     */
+    private PackageDelta()
+    {
+        assert false : "You may not create instances of this class [PackageDelta].";
+    }
+    
+    
+    
+    /**
+     * The size of the blocks of old files that are matched
+     */
+    private static final int BLOCK = 1 << 10;
+    
+    /**
+     * File format magic number
+     */
+    private static final int MAGIC = 0x50444C31;
+    
+    /**
+     * The file is identical in both versions
+     */
+    private static final byte KEEP = 0;
+    
+    /**
+     * The file's contents are stored in full
+     */
+    private static final byte FULL = 1;
+    
+    /**
+     * The file is stored as a patch against the old version
+     */
+    private static final byte PATCH = 2;
+    
+    /**
+     * Patch operation: end of patch
+     */
+    private static final byte END = 0;
+    
+    /**
+     * Patch operation: copy from the old file
+     */
+    private static final byte COPY = 1;
+    
+    /**
+     * Patch operation: literal data
+     */
+    private static final byte DATA = 2;
+    
+    /**
+     * The XZ compression preset for reconstructed tarballs, which are only used locally
+     */
+    private static final int TARBALL_PRESET = 1;
+    
+    
+    
+    /**
+     * Gets the delta file between two versions of a package
+     * 
+     * @param   newRoot  The new version's package files without extension, for example {@code name=0;1.1-0}
+     * @param   oldRoot  The old version's package files without extension, for example {@code name=0;1.0-0}
+     * @return           The delta file, which may not exist
+     */
+    public static File getFile(final String newRoot, final String oldRoot)
+    {
+        return new File(newRoot + "~" + oldRoot.substring(oldRoot.lastIndexOf("=") + 1) + ".delta.xz");
+    }
+    
+    
+    /**
+     * Creates a delta between two tarballs, the old tarball's files are kept in memory
+     * 
+     * @param   oldTarball  The old version's tarball
+     * @param   newTarball  The new version's tarball
+     * @param   delta       The delta file to create
+     * @param   options     Compression options for the delta file
+     * @return              The number of files that are stored as patches
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public static int create(final String oldTarball, final String newTarball, final File delta, final LZMA2Options options) throws IOException
+    {
+        final HashMap<String, byte[]> old = new HashMap<>();
+        try (final TarInputStream tar = new TarInputStream(new XZInputStream(new BufferedInputStream(new FileInputStream(oldTarball)))))
+        {   for (TarEntry entry; (entry = tar.getNextEntry()) != null;)
+                if (entry.isDirectory() == false)
+                    old.put(entry.getName(), readFully(tar, entry.getSize()));
+        }
+        
+        final ArrayList<String> names = new ArrayList<>();
+        final ArrayList<byte[]> files = new ArrayList<>();
+        try (final TarInputStream tar = new TarInputStream(new XZInputStream(new BufferedInputStream(new FileInputStream(newTarball)))))
+        {   for (TarEntry entry; (entry = tar.getNextEntry()) != null;)
+                if (entry.isDirectory() == false)
+                {   names.add(entry.getName());
+                    files.add(readFully(tar, entry.getSize()));
+        }       }
+        
+        int patches = 0;
+        try (final DataOutputStream os = new DataOutputStream(new ParallelXZOutputStream(new FileOutputStream(delta), options)))
+        {   os.writeInt(MAGIC);
+            os.writeInt(names.size());
+            for (int i = 0, n = names.size(); i < n; i++)
+            {
+                final byte[] data = files.get(i);
+                final byte[] base = old.get(names.get(i));
+                os.writeUTF(names.get(i));
+                if ((base != null) && Arrays.equals(base, data))
+                {   os.writeByte(KEEP);
+                    os.writeLong(data.length);
+                    os.writeLong(crc(data));
+                    continue;
+                }
+                final byte[] patch = base == null ? null : diff(base, data);
+                if (patch == null)
+                {   os.writeByte(FULL);
+                    os.writeLong(data.length);
+                    os.write(data);
+                }
+                else
+                {   os.writeByte(PATCH);
+                    os.writeLong(base.length);
+                    os.writeLong(crc(base));
+                    os.writeLong(data.length);
+                    os.writeLong(crc(data));
+                    os.write(patch);
+                    patches++;
+        }   }   }
+        return patches;
+    }
+    
+    
+    /**
+     * Reconstructs a tarball from a delta and the old version's installed files, the
+     * installed files are verified against the delta, and the tarball is written to
+     * a temporary file that is only moved into place if everything is correct
+     * 
+     * @param   delta     The delta file
+     * @param   fileRoot  The directory the old version is installed in
+     * @param   tarball   The tarball to create
+     * @return            The number of bytes read from the delta file
+     * 
+     * @throws  IOException  On I/O exception, or if an installed file does not match the delta
+     */
+    public static long apply(final File delta, final String fileRoot, final File tarball) throws IOException
+    {
+        final String fs = Properties.getFileSeparator();
+        final File temp = new File(tarball.getPath() + ".part");
+        final byte[] buffer = new byte[BLOCK << 6];
+        
+        try (final DataInputStream is = new DataInputStream(new XZInputStream(new BufferedInputStream(new FileInputStream(delta))));
+             final TarOutputStream tar = new TarOutputStream(new ParallelXZOutputStream(new FileOutputStream(temp), new LZMA2Options(TARBALL_PRESET))))
+        {
+            if (is.readInt() != MAGIC)
+                throw new IOException("Not a package delta: " + delta.getPath());
+            
+            for (int i = 0, n = is.readInt(); i < n; i++)
+            {
+                final String name = is.readUTF();
+                final byte kind = is.readByte();
+                final File file = new File(fileRoot + name.replace("/", fs));
+                
+                final TarEntry entry = new TarEntry(name);
+                if (kind == FULL)
+                {   final long size = is.readLong();
+                    entry.setSize(size);
+                    tar.putNextEntry(entry);
+                    for (long left = size; left > 0;)
+                    {   final int r = is.read(buffer, 0, (int)Math.min(buffer.length, left));
+                        if (r < 0)
+                            throw new EOFException();
+                        tar.write(buffer, 0, r);
+                        left -= r;
+                }   }
+                else
+                {   final byte[] base = readInstalled(file, is.readLong(), is.readLong());
+                    if (kind == KEEP)
+                    {   entry.setSize(base.length);
+                        tar.putNextEntry(entry);
+                        tar.write(base);
+                    }
+                    else
+                    {   final long size = is.readLong();
+                        final long sum = is.readLong();
+                        final CRC32 crc = new CRC32();
+                        entry.setSize(size);
+                        tar.putNextEntry(entry);
+                        long written = 0;
+                        for (byte op; (op = is.readByte()) != END;)
+                            if (op == COPY)
+                            {   final int off = is.readInt(), len = is.readInt();
+                                tar.write(base, off, len);
+                                crc.update(base, off, len);
+                                written += len;
+                            }
+                            else
+                                for (int left = is.readInt(); left > 0;)
+                                {   final int r = is.read(buffer, 0, Math.min(buffer.length, left));
+                                    if (r < 0)
+                                        throw new EOFException();
+                                    tar.write(buffer, 0, r);
+                                    crc.update(buffer, 0, r);
+                                    written += r;
+                                    left -= r;
+                                }
+                        if ((written != size) || (crc.getValue() != sum))
+                            throw new IOException("Package delta produced a corrupt file: " + name);
+                }   }
+                tar.closeEntry();
+            }
+        }
+        catch (final IOException err)
+        {   temp.delete();
+            throw err;
+        }
+        
+        if (temp.renameTo(tarball) == false)
+        {   temp.delete();
+            throw new IOException("Cannot create " + tarball.getPath());
+        }
+        return delta.length();
+    }
+    
+    
+    /**
+     * Creates a patch from one version of a file to another
+     * 
+     * @param   base  The old version
+     * @param   data  The new version
+     * @return        The patch, {@code null} if it would not be smaller than the new version
+     * 
+     * @throws  IOException  Never
+     */
+    private static byte[] diff(final byte[] base, final byte[] data) throws IOException
+    {
+        final int blocks = base.length / BLOCK;
+        int mask = 1;
+        while (mask < blocks << 1)
+            mask <<= 1;
+        final int[] heads = new int[mask--];
+        final int[] chain = new int[blocks];
+        Arrays.fill(heads, -1);
+        for (int b = blocks - 1; b >= 0; b--)
+        {   final int h = hash(base, b * BLOCK) & mask;
+            chain[b] = heads[h];
+            heads[h] = b;
+        }
+        
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream os = new DataOutputStream(baos);
+        int literal = 0, pos = 0;
+        
+        if (blocks > 0)
+        {
+            int a = 0, b = 0;
+            for (int i = 0; (i < BLOCK) && (i < data.length); i++)
+            {   a += data[i] & 255;
+                b += (BLOCK - i) * (data[i] & 255);
+            }
+            
+            while (pos + BLOCK <= data.length)
+            {
+                int match = -1, length = 0, back = 0;
+                for (int c = heads[((a & 0xFFFF) | (b << 16)) & mask]; c >= 0; c = chain[c])
+                    if (equals(base, c * BLOCK, data, pos, BLOCK))
+                    {   match = c * BLOCK;
+                        break;
+                    }
+                if (match < 0)
+                {   final int out = data[pos] & 255;
+                    final int in = pos + BLOCK < data.length ? data[pos + BLOCK] & 255 : 0;
+                    a += in - out;
+                    b += a - BLOCK * out;
+                    pos++;
+                    continue;
+                }
+                
+                length = BLOCK;
+                while ((match + length < base.length) && (pos + length < data.length) && (base[match + length] == data[pos + length]))
+                    length++;
+                while ((pos - back > literal) && (match - back > 0) && (base[match - back - 1] == data[pos - back - 1]))
+                    back++;
+                
+                if (pos - back > literal)
+                {   os.writeByte(DATA);
+                    os.writeInt(pos - back - literal);
+                    os.write(data, literal, pos - back - literal);
+                }
+                os.writeByte(COPY);
+                os.writeInt(match - back);
+                os.writeInt(length + back);
+                literal = pos += length;
+                
+                a = b = 0;
+                for (int i = 0; (i < BLOCK) && (pos + i < data.length); i++)
+                {   a += data[pos + i] & 255;
+                    b += (BLOCK - i) * (data[pos + i] & 255);
+                }
+            }
+        }
+        
+        if (data.length > literal)
+        {   os.writeByte(DATA);
+            os.writeInt(data.length - literal);
+            os.write(data, literal, data.length - literal);
+        }
+        os.writeByte(END);
+        os.flush();
+        return baos.size() < data.length ? baos.toByteArray() : null;
+    }
+    
+    
+    /**
+     * Calculates the rolling checksum of a block
+     * 
+     * @param   data  The data
+     * @param   off   The offset of the block
+     * @return        The checksum
+     */
+    private static int hash(final byte[] data, final int off)
+    {
+        int a = 0, b = 0;
+        for (int i = 0; i < BLOCK; i++)
+        {   a += data[off + i] & 255;
+            b += (BLOCK - i) * (data[off + i] & 255);
+        }
+        return (a & 0xFFFF) | (b << 16);
+    }
+    
+    
+    /**
+     * Compares two ranges of bytes
+     * 
+     * @param   a     The first array
+     * @param   aoff  The offset in the first array
+     * @param   b     The second array
+     * @param   boff  The offset in the second array
+     * @param   len   The number of bytes to compare
+     * @return        Whether the ranges are equal
+     */
+    private static boolean equals(final byte[] a, final int aoff, final byte[] b, final int boff, final int len)
+    {
+        for (int i = 0; i < len; i++)
+            if (a[aoff + i] != b[boff + i])
+                return false;
+        return true;
+    }
+    
+    
+    /**
+     * Calculates the CRC-32 of data
+     * 
+     * @param   data  The data
+     * @return        The CRC-32
+     */
+    private static long crc(final byte[] data)
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+    
+    
+    /**
+     * Reads an installed file, and verifies it
+     * 
+     * @param   file  The file
+     * @param   size  The expected size
+     * @param   sum   The expected CRC-32
+     * @return        The file's contents
+     * 
+     * @throws  IOException  On I/O exception, or if the file does not match
+     */
+    private static byte[] readInstalled(final File file, final long size, final long sum) throws IOException
+    {
+        if (file.length() != size)
+            throw new IOException("Installed file does not match the package delta: " + file.getPath());
+        final byte[] rc;
+        try (final InputStream is = new FileInputStream(file))
+        {   rc = readFully(is, size);
+        }
+        if (crc(rc) != sum)
+            throw new IOException("Installed file does not match the package delta: " + file.getPath());
+        return rc;
+    }
+    
+    
+    /**
+     * Reads a number of bytes from a stream
+     * 
+     * @param   is    The stream
+     * @param   size  The number of bytes
+     * @return        The read bytes
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    private static byte[] readFully(final InputStream is, final long size) throws IOException
+    {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("File too large for package deltas");
+        final byte[] rc = new byte[(int)size];
+        for (int off = 0, r; off < rc.length; off += r)
+            if ((r = is.read(rc, off, rc.length - off)) < 0)
+                throw new EOFException();
+        return rc;
+    }
+    
+}
+
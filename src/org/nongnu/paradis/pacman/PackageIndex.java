@@ -0,0 +1,211 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.pacman;
+import org.nongnu.paradis.io.*;
+import org.nongnu.paradis.*;
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+
+
+/**
+ * <p>On-disk index of the metadata of the packages in {@link Pacman#PACKAGE_DIR}</p>
+ * <p>
+ *   An entry is used only if the modification time and size of the package's info
+ *   file are unchanged since it was indexed, otherwise the info file is decoded
+ *   and the entry is replaced, so the index never has to be rebuilt by hand.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class PackageIndex
+{
+    /**
+     * The file where the index is saved
+     */
+    private static final String INDEX_FILE = Pacman.PACKAGE_INDEX_FILE;
+    
+    /**
+     * The version of the index file format, a file of another version is discarded
+     */
+    private static final int FORMAT = 1;
+    
+    
+    
+    /**
+     * Constructor
+     */
+    private PackageIndex()
+    {
+        load();
+    }
+    
+    
+    
+    /**
+     * The index of this process
+     */
+    private static PackageIndex instance = null;
+    
+    /**
+     * Index entries by info file name
+     */
+    private final HashMap<String, IndexedPackage> entries = new HashMap<>();
+    
+    /**
+     * Whether the index has changed since it was loaded or saved
+     */
+    private boolean dirty = false;
+    
+    
+    
+    /**
+     * Gets, and if not already loaded, loads the index
+     * 
+     * @return  The index
+     */
+    public static synchronized PackageIndex getInstance()
+    {
+        if (instance == null)
+            instance = new PackageIndex();
+        return instance;
+    }
+    
+    
+    /**
+     * Gets the index entry for a package, and indexes the package if the entry is missing or out of date
+     * 
+     * @param   file  The package's info file
+     * @return        The index entry
+     * 
+     * @throws  IOException  If the package had to be indexed, and its info file could not be read
+     */
+    public IndexedPackage get(final File file) throws IOException
+    {
+        final String key = file.getName();
+        final long modified = file.lastModified();
+        final long size = file.length();
+        
+        IndexedPackage entry;
+        synchronized (this.entries)
+        {   entry = this.entries.get(key);
+        }
+        if ((entry != null) && (entry.modified == modified) && (entry.size == size))
+            return entry;
+        
+        entry = new IndexedPackage(key, modified, size, PackageInfo.fromFile(file));
+        synchronized (this.entries)
+        {   this.entries.put(key, entry);
+            this.dirty = true;
+        }
+        return entry;
+    }
+    
+    
+    /**
+     * Indexes a package, even if it already has an up to date entry
+     * 
+     * @param   file  The package's info file
+     * @return        The new index entry
+     * 
+     * @throws  IOException  If the package's info file could not be read
+     */
+    public IndexedPackage update(final File file) throws IOException
+    {
+        final IndexedPackage entry = new IndexedPackage(file.getName(), file.lastModified(), file.length(), PackageInfo.fromFile(file));
+        synchronized (this.entries)
+        {   this.entries.put(entry.file, entry);
+            this.dirty = true;
+        }
+        return entry;
+    }
+    
+    
+    /**
+     * Removes a package from the index
+     * 
+     * @param  file  The package's info file
+     */
+    public void remove(final File file)
+    {
+        synchronized (this.entries)
+        {   if (this.entries.remove(file.getName()) != null)
+                this.dirty = true;
+        }
+    }
+    
+    
+    /**
+     * Loads the index file, an unreadable index file is treated as empty
+     */
+    private void load()
+    {
+        try (final TransferInputStream tis = TransferStreamPool.input(new FileInputStream(INDEX_FILE)))
+        {
+            if (tis.readInt() != FORMAT)
+                return;
+            for (int i = 0, n = tis.readInt(); i < n; i++)
+            {   final IndexedPackage entry = tis.readObject(IndexedPackage.class);
+                this.entries.put(entry.file, entry);
+            }
+        }
+        catch (final FileNotFoundException ignore)
+        {   //Ignore
+        }
+        catch (final Throwable err)
+        {   System.err.println("Discarding unreadable package index: " + err.toString());
+            this.entries.clear();
+        }
+    }
+    
+    
+    /**
+     * Saves the index, if it has changed, and drops entries for packages that no longer exist
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public void save() throws IOException
+    {
+        synchronized (this.entries)
+        {
+            final Iterator<IndexedPackage> iterator = this.entries.values().iterator();
+            while (iterator.hasNext())
+                if ((new File(Pacman.PACKAGE_DIR + iterator.next().file)).exists() == false)
+                {   iterator.remove();
+                    this.dirty = true;
+                }
+            
+            if (this.dirty == false)
+                return;
+            
+            final File temp = new File(INDEX_FILE + ".new");
+            try (final TransferOutputStream tos = TransferStreamPool.output(new FileOutputStream(temp)))
+            {   tos.writeInt(FORMAT);
+                tos.writeInt(this.entries.size());
+                for (final IndexedPackage entry : this.entries.values())
+                    tos.writeObject(entry);
+                tos.flush();
+            }
+            Files.move(temp.toPath(), (new File(INDEX_FILE)).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.dirty = false;
+        }
+    }
+    
+}
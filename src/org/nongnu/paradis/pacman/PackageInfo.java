@@ -18,11 +18,13 @@
 package org.nongnu.paradis.pacman;
 import org.nongnu.paradis.net.*;
 import org.nongnu.paradis.io.*;
+import org.nongnu.paradis.util.*;
 import org.nongnu.paradis.*;
 
 import org.tukaani.xz.*;
 
 import java.io.*;
+import java.util.concurrent.atomic.*;
 
 
 /**
@@ -32,6 +34,13 @@ import java.io.*;
  */
 public final class PackageInfo
 {
+    /**
+     * The maximum number of decoded infos kept by {@link #fromFile(File)}
+     */
+    public static final int CACHE_SIZE = 256;
+    
+    
+    
     //TODO unimplementied fields: isFreeSoftware arch os backup checksums category uuid
     /**
      * Constructor
@@ -440,7 +449,88 @@ public final class PackageInfo
     
     
     /**
-     * Loads an {@link PackageInfo} from a file, that may be compressed with xz
+     * Recently loaded infos by file identity
+     */
+    private static final LRUMap<FileKey, PackageInfo> cache = new LRUMap<>(CACHE_SIZE);
+    
+    /**
+     * The number of loads answered by {@link #cache}
+     */
+    private static final AtomicLong cacheHits = new AtomicLong();
+    
+    /**
+     * The number of loads that had to decode the file
+     */
+    private static final AtomicLong cacheMisses = new AtomicLong();
+    
+    
+    
+    /**
+     * Identity of a file version: its path, modification time and size
+     */
+    private static final class FileKey
+    {
+        /**
+         * Constructor
+         * 
+         * @param  file  The file
+         */
+        public FileKey(final File file)
+        {
+            this.path = file.getAbsolutePath();
+            this.modified = file.lastModified();
+            this.size = file.length();
+        }
+        
+        
+        
+        /**
+         * The absolute path of the file
+         */
+        private final String path;
+        
+        /**
+         * The modification time of the file
+         */
+        private final long modified;
+        
+        /**
+         * The size of the file
+         */
+        private final long size;
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object other)
+        {
+            if ((other == null) || (other instanceof FileKey == false))
+                return false;
+            final FileKey key = (FileKey)other;
+            return (this.modified == key.modified) && (this.size == key.size) && this.path.equals(key.path);
+        }
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return this.path.hashCode() ^ (int)(this.modified ^ (this.modified >>> 32)) ^ (int)(this.size * 31);
+        }
+        
+    }
+    
+    
+    
+    /**
+     * Loads an {@link PackageInfo} from a file, that may be compressed with xz, recently
+     * loaded files are not decoded again unless they have been modified.
+     * The returned info is shared, so its arrays must not be modified.
      * 
      * @param   file  The file to load
      * @return        The loaded {@link PackageInfo}
@@ -450,9 +540,24 @@ public final class PackageInfo
     @requires({"java-environment>=7", "xz-java"})
     public static PackageInfo fromFile(final File file) throws IOException
     {
-        try (final InputStream fis = new FileInputStream(file) ; final TransferInputStream tis = new TransferInputStream(file.getAbsolutePath().endsWith(".xz") ? new XZInputStream(fis) : fis))
-        {   return tis.readObject(PackageInfo.class);
+        final FileKey key = new FileKey(file);
+        PackageInfo info;
+        synchronized (cache)
+        {   info = cache.get(key);
         }
+        if (info != null)
+        {   cacheHits.incrementAndGet();
+            return info;
+        }
+        
+        cacheMisses.incrementAndGet();
+        try (final InputStream fis = new FileInputStream(file) ; final TransferInputStream tis = TransferStreamPool.input(file.getAbsolutePath().endsWith(".xz") ? new XZInputStream(fis) : fis))
+        {   info = tis.readObject(PackageInfo.class);
+        }
+        synchronized (cache)
+        {   cache.put(key, info);
+        }
+        return info;
     }
     
     /**
@@ -468,5 +573,27 @@ public final class PackageInfo
         return fromFile(new File(file));
     }
     
+    
+    /**
+     * Gets the number of loads that were answered without decoding the file
+     * 
+     * @return  The number of cache hits
+     */
+    public static long getCacheHits()
+    {
+        return cacheHits.get();
+    }
+    
+    
+    /**
+     * Gets the number of loads that had to decode the file
+     * 
+     * @return  The number of cache misses
+     */
+    public static long getCacheMisses()
+    {
+        return cacheMisses.get();
+    }
+    
 }
 
@@ -36,10 +36,25 @@ public class Pacman
     public static final String PACKAGE_DIR = FSH.SITE_PKG + "packages/".replace("/", Properties.getFileSeparator());
     
     /**
-     * The file where the data are saved
+     * The file where the installed packages were saved before {@link InstalledDatabase}
      */
     public static final String PACKAGES_FILE = FSH.SITE_PKG + "packages.data".replace("/", Properties.getFileSeparator());
     
+    /**
+     * The file where the installed packages are saved
+     */
+    public static final String INSTALLED_DATABASE_FILE = FSH.SITE_PKG + "packages.db".replace("/", Properties.getFileSeparator());
+    
+    /**
+     * The file where changes to the installed packages are journaled
+     */
+    public static final String INSTALLED_JOURNAL_FILE = FSH.SITE_PKG + "packages.journal".replace("/", Properties.getFileSeparator());
+    
+    /**
+     * The file where the package metadata index is saved
+     */
+    public static final String PACKAGE_INDEX_FILE = FSH.SITE_PKG + "packages.index".replace("/", Properties.getFileSeparator());
+    
     /**
      * File root for installed files
      */
@@ -108,6 +123,9 @@ public class Pacman
     /** Include all installed non-up to date packages
      */ public static final String SYNC_UPGRADE = "--upgrade"; // -u
     
+    /** Only write files that differ from the installed files, and verify written files
+     */ public static final String SYNC_INCREMENTAL = "--incremental"; // -k
+    
     
     /** Remove-and-install process
      */ public static final String UPGRADE = "--upgrade"; // -U
@@ -142,6 +160,9 @@ public class Pacman
     /** Include all installed non-up to date packages
      */ public static final String UPGRADE_UPGRADE = "--upgrade"; // -u
     
+    /** Only write files that differ from the installed files, and verify written files
+     */ public static final String UPGRADE_INCREMENTAL = "--incremental"; // -k
+    
     
     /** Uninstall packages
      */ public static final String REMOVE = "--remove"; // -R
@@ -232,18 +253,31 @@ public class Pacman
         D.put("d", DATABASE_DEPS);          S.put("e", SYNC_ASEXPLICIT);  U.put("e", UPGRADE_ASEXPLICIT);  R.put("d", REMOVE_NODEPS);     Q.put("s", QUERY_SEARCH);
         D.put("e", DATABASE_EXPLICIT);      S.put("f", SYNC_FORCE);       U.put("f", UPGRADE_FORCE);       R.put("o", REMOVE_DBONLY);     Q.put("t", QUERY_UNREQUIRED);
         D.put("f", DATABASE_FILES);         S.put("i", SYNC_ASDEPS);      U.put("i", UPGRADE_ASDEPS);      R.put("r", REMOVE_RECURSIVE);  Q.put("u", QUERY_UPGRADE);
+                                            S.put("k", SYNC_INCREMENTAL); U.put("k", UPGRADE_INCREMENTAL);
         D.put("i", DATABASE_INSTALLED);     S.put("n", SYNC_NEEDED);      U.put("n", UPGRADE_NEEDED);      R.put("s", REMOVE_SEARCH);
         D.put("n", DATABASE_NONINSTALLED);  S.put("o", SYNC_DBONLY);      U.put("o", UPGRADE_DBONLY);      R.put("t", REMOVE_UNREQUIRED);
         D.put("r", DATABASE_REMOVE);        S.put("r", SYNC_RECURSIVE);   U.put("r", UPGRADE_RECURSIVE);   R.put("u", REMOVE_UNNEEDED);
         D.put("s", DATABASE_SEARCH);        S.put("s", SYNC_SEARCH);      U.put("s", UPGRADE_SEARCH);
                                             S.put("u", SYNC_UPGRADE);     U.put("u", UPGRADE_UPGRADE);
         
-        Blackboard.getInstance("pacman").registerObserver(new PacmanDatabase());
-        Blackboard.getInstance("pacman").registerObserver(new PacmanSync());
-        Blackboard.getInstance("pacman").registerObserver(new PacmanUpgrade());
-        Blackboard.getInstance("pacman").registerObserver(new PacmanRemove());
-        Blackboard.getInstance("pacman").registerObserver(new PacmanQuery());
-        Blackboard.getInstance("pacman").registerObserver(new PacmanDeptest());
+        registerObservers();
+    }
+    
+    
+    
+    /**
+     * Registers the package manager operations on the package manager's blackboard
+     */
+    @SuppressWarnings("unchecked")
+    private static void registerObservers()
+    {
+        final Blackboard blackboard = Blackboard.getInstance("pacman");
+        blackboard.registerObserver(new PacmanDatabase(), PacmanInvoke.class);
+        blackboard.registerObserver(new PacmanSync(), PacmanInvoke.class);
+        blackboard.registerObserver(new PacmanUpgrade(), PacmanInvoke.class);
+        blackboard.registerObserver(new PacmanRemove(), PacmanInvoke.class);
+        blackboard.registerObserver(new PacmanQuery(), PacmanInvoke.class);
+        blackboard.registerObserver(new PacmanDeptest(), PacmanInvoke.class);
     }
     
     
@@ -38,11 +38,6 @@ public class PacmanDatabase implements Blackboard.BlackboardObserver
      */
     private static final String PACKAGE_DIR = Pacman.PACKAGE_DIR;
     
-    /**
-     * The file where the data are saved
-     */
-    static final String PACKAGES_FILE = Pacman.PACKAGES_FILE;
-    
     
     /** Add, remove or list packages
      */ private static final String DATABASE = Pacman.DATABASE;
@@ -90,12 +85,21 @@ public class PacmanDatabase implements Blackboard.BlackboardObserver
         final ArrayList<String> packages = ((Pacman.PacmanInvoke)message).packages;
         
         final String fs = Properties.getFileSeparator();
+        final PackageIndex index = PackageIndex.getInstance();
         if (options.contains(DATABASE_ADD))
             for (final String pack : packages)
                 try
                 {   final String base = PACKAGE_DIR + pack.substring(pack.lastIndexOf(fs) + 1);
-                    Files.move((new File(pack + ".tar.xz")).toPath(), (new File(base + ".tar.xz")).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    if ((new File(pack + ".tar.xz")).exists())
+                        Files.move((new File(pack + ".tar.xz")).toPath(), (new File(base + ".tar.xz")).toPath(), StandardCopyOption.REPLACE_EXISTING);
                     Files.move((new File(pack + ".pkg.xz")).toPath(), (new File(base + ".pkg.xz")).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    for (final File delta : getDeltas(pack))
+                        Files.move(delta.toPath(), (new File(PACKAGE_DIR + delta.getName())).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    if ((new File(pack + TarIndex.SUFFIX)).exists())
+                        Files.move((new File(pack + TarIndex.SUFFIX)).toPath(), (new File(base + TarIndex.SUFFIX)).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    else
+                        Files.deleteIfExists((new File(base + TarIndex.SUFFIX)).toPath());
+                    index.update(new File(base + ".pkg.xz"));
                 }
                 catch (final Throwable err)
                 {   System.err.println(err.toString());
@@ -104,14 +108,47 @@ public class PacmanDatabase implements Blackboard.BlackboardObserver
             for (final String pack : packages)
                 try
                 {   final String base = PACKAGE_DIR + pack.substring(pack.lastIndexOf(fs) + 1);
-                    Files.delete((new File(base + ".tar.xz")).toPath());
+                    Files.deleteIfExists((new File(base + ".tar.xz")).toPath());
                     Files.delete((new File(base + ".pkg.xz")).toPath());
+                    Files.deleteIfExists((new File(base + TarIndex.SUFFIX)).toPath());
+                    for (final File delta : getDeltas(base))
+                        Files.delete(delta.toPath());
+                    index.remove(new File(base + ".pkg.xz"));
                 }
                 catch (final Throwable err)
                 {   System.err.println(err.toString());
                 }
         else
             search(options, packages, System.out);
+        
+        try
+        {   index.save();
+        }
+        catch (final Throwable err)
+        {   System.err.println(err.toString());
+        }
+    }
+    
+    
+    /**
+     * Gets all {@link PackageDelta package deltas} to a package
+     * 
+     * @param   root  The package files without extension
+     * @return        The delta files
+     */
+    private static File[] getDeltas(final String root)
+    {
+        final File dir = (new File(root)).getAbsoluteFile().getParentFile();
+        final String prefix = (new File(root)).getName() + "~";
+        final File[] rc = dir.listFiles(new FilenameFilter()
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public boolean accept(final File directory, final String name)
+                    {   return name.startsWith(prefix) && name.endsWith(".delta.xz");
+                }   });
+        return rc == null ? new File[0] : rc;
     }
     
     
@@ -172,17 +209,9 @@ public class PacmanDatabase implements Blackboard.BlackboardObserver
                         }
                         
                         if (this.installed ^ this.noninstalled)
-                            try (final TransferInputStream tis = new TransferInputStream(new FileInputStream(PACKAGES_FILE)))
-                            {   for (;;)
-                                {
-                                    final String pack = tis.readObject(String.class);
-                                    if (pack.isEmpty())
-                                        break;
-                                    final Boolean expl = Boolean.valueOf(tis.readBoolean());
-                                    this.installmap.put(pack, expl);
-                            }   }
-                            catch (final FileNotFoundException ignore)
-                            {   //Ignore
+                            try
+                            {   for (final InstalledDatabase.Entry entry : InstalledDatabase.getInstance().entries().values())
+                                    this.installmap.put(entry.pack, Boolean.valueOf(entry.explicit));
                             }
                             catch (final Throwable err)
                             {   System.err.println(err.toString());
@@ -228,9 +257,9 @@ public class PacmanDatabase implements Blackboard.BlackboardObserver
         {   out.println(pack.toString());
             if (files)
                 try
-                {   final PackageInfo info = PackageInfo.fromFile(common.packageMap.get(pack));
-                    Arrays.sort(info.files);
-                    for (final String file : info.files)
+                {   final String[] packfiles = common.index.get(common.packageMap.get(pack.toString())).files.clone();
+                    Arrays.sort(packfiles);
+                    for (final String file : packfiles)
                         out.println("\t" + file);
                 }
                 catch (final Throwable err)
@@ -59,7 +59,7 @@ public class PacmanDeptest implements Blackboard.BlackboardObserver
             VersionedPackage tmp;
             
             for (final VersionedPackage pack : common.installedMap.values())
-            {   final PackageInfo info = PackageInfo.fromFile(common.packageMap.get(pack.toString()));
+            {   final IndexedPackage info = common.index.get(common.packageMap.get(pack.toString()));
                 provided.put(pack, pack);
                 for (final String p : info.provides)   provided.put(tmp = new VersionedPackage(p), tmp);
                 for (final String c : info.conflicts)  conflict.put(tmp = new VersionedPackage(c), tmp);
@@ -146,7 +146,7 @@ public class PacmanDeptest implements Blackboard.BlackboardObserver
                 }
                 provided.put(pack, pack);
                 
-                final PackageInfo info = PackageInfo.fromFile(common.packageMap.get(pack.toString()));
+                final IndexedPackage info = common.index.get(common.packageMap.get(pack.toString()));
                 for (final String p : info.provides)
                 {   if (pack.intersects(conflict.get(pack)))
                     {   System.out.println(pack + " conflicts with " + conflict.get(pack).toString());
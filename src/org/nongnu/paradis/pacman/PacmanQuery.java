@@ -197,7 +197,7 @@ public class PacmanQuery implements Blackboard.BlackboardObserver //FIXME Print
             
             try
             {
-                final PackageInfo info = PackageInfo.fromFile(common.packageMap.get(dependent));
+                final IndexedPackage info = common.index.get(common.packageMap.get(dependent.toString()));
                 final String[] opts = info.optionalDependencies;
                 final String[] deps = info.dependencies;
                 
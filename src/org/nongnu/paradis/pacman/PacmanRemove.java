@@ -111,7 +111,7 @@ public class PacmanRemove implements Blackboard.BlackboardObserver
                 if (cascade)
                     for (final VersionedPackage pack : common.installedMap.values())
                     {
-                        final PackageInfo info = PackageInfo.fromFile(common.packageMap.get(pack.toString()));
+                        final IndexedPackage info = common.index.get(common.packageMap.get(pack.toString()));
                         for (final String[] ds : new String[][] { info.dependencies, info.optionalDependencies })
                             for (final String d : ds)
                             {
@@ -133,7 +133,7 @@ public class PacmanRemove implements Blackboard.BlackboardObserver
                         if (common.groupMap.get(pack).isEmpty() == false)    continue;
                         if (pack.intersects(skips.get(pack)))                continue;
                         if (common.installedMap.containsKey(pack) == false)  continue;
-                        final PackageInfo info = PackageInfo.fromFile(common.packageMap.get(pack.toString()));
+                        final IndexedPackage info = common.index.get(common.packageMap.get(pack.toString()));
                         if (recursive)
                         {   for (final String d : info.dependencies)          queue.offerLast(new VersionedPackage(d));
                             for (final String d : info.optionalDependencies)  queue.offerLast(new VersionedPackage(d));
@@ -58,6 +58,9 @@ public class PacmanUpgrade implements Blackboard.BlackboardObserver
     /** Include all installed non-up to date packages
      */ private static final String UPGRADE_UPGRADE = Pacman.UPGRADE_UPGRADE;
     
+    /** Only write files that differ from the installed files, and verify written files
+     */ private static final String UPGRADE_INCREMENTAL = Pacman.UPGRADE_INCREMENTAL;
+    
     
     
     //Has default constructor
@@ -84,6 +87,7 @@ public class PacmanUpgrade implements Blackboard.BlackboardObserver
         final boolean dbonly    = options.contains(UPGRADE_DBONLY);
         final boolean recursive = options.contains(UPGRADE_RECURSIVE);
         final boolean upgrade   = options.contains(UPGRADE_UPGRADE);
+        final boolean increment = options.contains(UPGRADE_INCREMENTAL);
         
         final Common common = new Common();
         try
@@ -92,7 +96,7 @@ public class PacmanUpgrade implements Blackboard.BlackboardObserver
                 PacmanQuery.search(common.installedMap, packages, ignores, options.contains(UPGRADE_SEARCH));
             }
             else
-                PacmanSync.sync(packages, ignores, true, nodeps, asexpl, asdeps, force, needed, dbonly, recursive, upgrade);
+                PacmanSync.sync(packages, ignores, true, nodeps, asexpl, asdeps, force, needed, dbonly, recursive, upgrade, increment);
         }
         catch (final Throwable err)
         {   System.err.println(err.toString());
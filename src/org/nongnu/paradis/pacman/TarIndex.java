@@ -0,0 +1,248 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.pacman;
+import org.nongnu.paradis.*;
+
+import org.tukaani.xz.*;
+
+import java.util.*;
+import java.io.*;
+
+
+/**
+ * Index of the files in a package tarball, mapping each file to the position of its
+ * contents in the uncompressed tarball, so that individual files can be extracted
+ * by seeking in the tarball, which is cheap for tarballs compressed in many blocks
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class TarIndex
+{
+    /**
+     * The file name suffix of index files, the index is stored next to the tarball
+     */
+    public static final String SUFFIX = ".tar.idx";
+    
+    
+    
+    //Has default constructor
+    
+    
+    
+    /**
+     * A file in the tarball
+     */
+    public static final class Entry
+    {
+        /**
+         * Constructor
+         * 
+         * @param  name    The name of the file in the tarball
+         * @param  offset  The position of the file's contents in the uncompressed tarball
+         * @param  size    The size of the file
+         */
+        public Entry(final String name, final long offset, final long size)
+        {
+            this.name = name;
+            this.offset = offset;
+            this.size = size;
+        }
+        
+        
+        
+        /**
+         * The name of the file in the tarball
+         */
+        public final String name;
+        
+        /**
+         * The position of the file's contents in the uncompressed tarball
+         */
+        public final long offset;
+        
+        /**
+         * The size of the file
+         */
+        public final long size;
+        
+    }
+    
+    
+    
+    /**
+     * The files, in tarball order
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    
+    
+    
+    /**
+     * Gets the index file for a tarball
+     * 
+     * @param   tarball  The tarball, ending with {@code .tar.xz}
+     * @return           The index file, which may not exist
+     */
+    public static File forTarball(final String tarball)
+    {
+        return new File(tarball.substring(0, tarball.length() - ".tar.xz".length()) + SUFFIX);
+    }
+    
+    
+    /**
+     * Reads an index file
+     * 
+     * @param   file  The index file
+     * @return        The index
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public static TarIndex read(final File file) throws IOException
+    {
+        final TarIndex rc = new TarIndex();
+        try (final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {   for (int i = 0, n = is.readInt(); i < n; i++)
+                rc.add(is.readUTF(), is.readLong(), is.readLong());
+        }
+        return rc;
+    }
+    
+    
+    /**
+     * Writes the index to a file
+     * 
+     * @param   file  The index file
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public void write(final File file) throws IOException
+    {
+        try (final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+        {   os.writeInt(this.entries.size());
+            for (final Entry entry : this.entries.values())
+            {   os.writeUTF(entry.name);
+                os.writeLong(entry.offset);
+                os.writeLong(entry.size);
+        }   }
+    }
+    
+    
+    /**
+     * Adds a file to the index, files must be added in tarball order
+     * 
+     * @param  name    The name of the file in the tarball
+     * @param  offset  The position of the file's contents in the uncompressed tarball
+     * @param  size    The size of the file
+     */
+    public void add(final String name, final long offset, final long size)
+    {
+        this.entries.put(name, new Entry(name, offset, size));
+    }
+    
+    
+    /**
+     * Looks up a file
+     * 
+     * @param   name  The name of the file, with or without leading slash
+     * @return        The file, {@code null} if not in the tarball
+     */
+    public Entry get(final String name)
+    {
+        return this.entries.get(name.startsWith("/") ? name.substring(1) : name);
+    }
+    
+    
+    /**
+     * Gets all files in the tarball
+     * 
+     * @return  The files, in tarball order
+     */
+    public Collection<Entry> entries()
+    {
+        return this.entries.values();
+    }
+    
+    
+    /**
+     * Gets the number of files in the tarball
+     * 
+     * @return  The number of files in the tarball
+     */
+    public int size()
+    {
+        return this.entries.size();
+    }
+    
+    
+    /**
+     * Creates a stream of a file's contents, by seeking in the tarball, the tarball
+     * must not be used by anything else until the returned stream has been read
+     * 
+     * @param   tarball  The tarball
+     * @param   entry    The file
+     * @return           The file's contents, closing this stream does not close the tarball
+     * 
+     * @throws  IOException  On I/O exception
+     */
+    public static InputStream open(final SeekableXZInputStream tarball, final Entry entry) throws IOException
+    {
+        tarball.seek(entry.offset);
+        return new InputStream()
+                {
+                    /**
+                     * The number of bytes left of the file
+                     */
+                    private long left = entry.size;
+                    
+                    
+                    
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public int read() throws IOException
+                    {
+                        if (this.left == 0)
+                            return -1;
+                        final int rc = tarball.read();
+                        if (rc < 0)
+                            throw new EOFException();
+                        this.left--;
+                        return rc;
+                    }
+                    
+                    
+                    /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public int read(final byte[] buffer, final int offset, final int length) throws IOException
+                    {
+                        if (this.left == 0)
+                            return -1;
+                        final int rc = tarball.read(buffer, offset, (int)Math.min(length, this.left));
+                        if (rc < 0)
+                            throw new EOFException();
+                        this.left -= rc;
+                        return rc;
+                    }
+            };
+    }
+    
+}
+
@@ -0,0 +1,398 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.pacman;
+import org.nongnu.paradis.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+
+/**
+ * Executes the installations of a transaction plan, extracting packages concurrently.
+ * A package is extracted when the packages in the plan it depends on have been installed,
+ * and if one of them fails, it is not installed. The throughput of each package is reported
+ * as it completes.
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@requires("java-environment>=7")
+public class TransactionExecutor
+{
+    /**
+     * Constructor, one thread per processor is used
+     * 
+     * @param  common       Package manager state
+     * @param  dbonly       Do not install files
+     * @param  force        Force installation of files
+     * @param  incremental  Only write files that differ from the installed files, and verify written files
+     */
+    public TransactionExecutor(final Common common, final boolean dbonly, final boolean force, final boolean incremental)
+    {
+        this(common, dbonly, force, incremental, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param  common       Package manager state
+     * @param  dbonly       Do not install files
+     * @param  force        Force installation of files
+     * @param  incremental  Only write files that differ from the installed files, and verify written files
+     * @param  threads      The maximum number of packages to extract at the same time
+     */
+    public TransactionExecutor(final Common common, final boolean dbonly, final boolean force, final boolean incremental, final int threads)
+    {
+        assert threads > 0 : "Invalid thread count: " + threads;
+        
+        this.common = common;
+        this.dbonly = dbonly;
+        this.force = force;
+        this.incremental = incremental;
+        this.threads = threads;
+    }
+    
+    
+    
+    /**
+     * Package manager state
+     */
+    private final Common common;
+    
+    /**
+     * Do not install files
+     */
+    private final boolean dbonly;
+    
+    /**
+     * Force installation of files
+     */
+    private final boolean force;
+    
+    /**
+     * Only write files that differ from the installed files, and verify written files
+     */
+    private final boolean incremental;
+    
+    /**
+     * The maximum number of packages to extract at the same time
+     */
+    private final int threads;
+    
+    /**
+     * The thread pool, during {@link #execute(DependencySolver.Plan, Set)}
+     */
+    private ExecutorService pool = null;
+    
+    /**
+     * The number of packages that have been installed, have failed, or have been skipped
+     */
+    private int done;
+    
+    /**
+     * The number of packages that have been installed
+     */
+    private int installed;
+    
+    /**
+     * The total number of bytes written
+     */
+    private long written;
+    
+    /**
+     * The first error, {@code null} if none
+     */
+    private IOException error;
+    
+    /**
+     * Whether the installation has been interrupted, no more packages are started once it has
+     */
+    private boolean aborted;
+    
+    
+    
+    /**
+     * Installs the packages of a plan, installed packages that the plan removes should already
+     * have been uninstalled; the installed packages are registered in {@link Common#installedMap}
+     * as they complete, even if the transaction fails, so {@link Common#syncInstalledMap()} should
+     * be invoked afterwards in either case
+     * 
+     * @param  plan      The plan
+     * @param  explicit  The names of the packages to mark as explicitly installed
+     * 
+     * @throws  IOException  If a package could not be installed, the first error is thrown after
+     *                       all packages that could be installed have been installed
+     */
+    public void execute(final DependencySolver.Plan plan, final Set<String> explicit) throws IOException
+    {
+        final int n = plan.install.size();
+        final Task[] tasks = new Task[n];
+        final HashMap<String, Task> byName = new HashMap<>();
+        final HashMap<String, Task> owners = new HashMap<>();
+        
+        for (int i = 0; i < n; i++)
+        {
+            final VersionedPackage pack = plan.install.get(i);
+            final HashSet<String> files = this.dbonly ? null : this.common.getInstallFiles(pack, this.force);
+            byName.put(pack.name, tasks[i] = new Task(i, pack, files, explicit.contains(pack.name)));
+            if (files != null)
+                for (final String file : new ArrayList<String>(files))
+                {   final Task owner = owners.get(file);
+                    if (owner == null)
+                        owners.put(file, tasks[i]);
+                    else if (this.force)
+                    {   owner.files.remove(file);
+                        owners.put(file, tasks[i]);
+                    }
+                    else
+                    {   files.remove(file);
+                        System.out.println("Skipping " + file.substring(Common.FILE_ROOT.length()) + ", installed by " + owner.pack);
+                }   }
+        }
+        
+        /* The plan lists dependencies first, except within dependency cycles, which are broken there */
+        for (final Task task : tasks)
+        {   final ArrayList<VersionedPackage> dependencies = plan.dependencies.get(task.pack);
+            if (dependencies != null)
+                for (final VersionedPackage dependency : dependencies)
+                {   final Task other = byName.get(dependency.name);
+                    if ((other != null) && (other.index < task.index))
+                    {   other.dependents.add(task);
+                        task.pending++;
+        }   }   }
+        
+        this.done = this.installed = 0;
+        this.written = 0;
+        this.error = null;
+        this.aborted = false;
+        final long start = System.nanoTime();
+        
+        this.pool = Executors.newFixedThreadPool(this.threads, new ThreadFactory()
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public Thread newThread(final Runnable runnable)
+                    {   return Blackboard.DAEMON_THREADING.createThread(runnable);
+                }   });
+        try
+        {   synchronized (this)
+            {   for (final Task task : tasks)
+                    if (task.pending == 0)
+                        this.pool.execute(task);
+                while (this.done < n)
+                    try
+                    {   this.wait();
+                    }
+                    catch (final InterruptedException err)
+                    {   this.aborted = true;
+                        throw new InterruptedIOException();
+            }       }
+        }
+        finally
+        {   this.pool.shutdown();
+            awaitTermination();
+            this.pool = null;
+        }
+        
+        final long time = System.nanoTime() - start;
+        if (this.dbonly == false)
+            System.out.println("Installed " + this.installed + " of " + n + " packages, " + throughput(this.written, time));
+        if (this.error != null)
+            throw this.error;
+    }
+    
+    
+    /**
+     * Registers that a package has been installed or has failed, and starts or skips its dependents
+     * 
+     * @param  task   The package's task
+     * @param  err    The error, {@code null} if the package was installed
+     * @param  bytes  The number of bytes written
+     * @param  time   The time it took to install the package, in nanoseconds
+     */
+    private synchronized void finished(final Task task, final IOException err, final long bytes, final long time)
+    {
+        if (err == null)
+        {
+            this.common.register(task.pack, task.explicit);
+            this.installed++;
+            this.written += bytes;
+            if (this.dbonly == false)
+                System.out.println("Installed " + task.pack + ": " + throughput(bytes, time)
+                                   + (this.incremental ? ", " + task.unchanged + " unchanged files skipped" : ""));
+            for (final Task dependent : task.dependents)
+                if ((--dependent.pending == 0) && (dependent.skipped == false) && (this.aborted == false))
+                    this.pool.execute(dependent);
+        }
+        else
+        {
+            System.err.println("Failed to install " + task.pack + ": " + err.toString());
+            if (this.error == null)
+                this.error = err;
+            
+            final ArrayDeque<Task> queue = new ArrayDeque<>();
+            queue.offerLast(task);
+            for (Task failed; (failed = queue.pollFirst()) != null;)
+                for (final Task dependent : failed.dependents)
+                    if (dependent.skipped == false)
+                    {   dependent.skipped = true;
+                        this.done++;
+                        System.err.println("Not installing " + dependent.pack + ", it depends on " + failed.pack);
+                        queue.offerLast(dependent);
+                    }
+        }
+        
+        this.done++;
+        this.notifyAll();
+    }
+    
+    
+    /**
+     * Waits for the packages that are being installed to finish, so that
+     * they are registered before the caller continues, even if interrupted
+     */
+    private void awaitTermination()
+    {
+        boolean interrupted = false;
+        for (;;)
+            try
+            {   if (this.pool.awaitTermination(1, TimeUnit.MINUTES))
+                    break;
+            }
+            catch (final InterruptedException err)
+            {   interrupted = true;
+            }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+    
+    
+    /**
+     * Formats an amount of data and the time it took to write it
+     * 
+     * @param   bytes  The number of bytes
+     * @param   time   The time, in nanoseconds
+     * @return         Human readable size, time and throughput
+     */
+    private static String throughput(final long bytes, final long time)
+    {
+        final double mib = bytes / (1024. * 1024.);
+        return String.format("%.2f MiB in %d ms, %.1f MiB/s", mib, time / 1000000, time == 0 ? 0. : mib * 1e9 / time);
+    }
+    
+    
+    
+    /**
+     * The installation of a package
+     */
+    private final class Task implements Runnable
+    {
+        /**
+         * Constructor
+         * 
+         * @param  index     The package's position in the plan
+         * @param  pack      The package
+         * @param  files     The files to write, {@code null} if files are not installed
+         * @param  explicit  Whether the package is installed explicitly
+         */
+        public Task(final int index, final VersionedPackage pack, final HashSet<String> files, final boolean explicit)
+        {
+            this.index = index;
+            this.pack = pack;
+            this.files = files;
+            this.explicit = explicit;
+        }
+        
+        
+        
+        /**
+         * The package's position in the plan
+         */
+        public final int index;
+        
+        /**
+         * The package
+         */
+        public final VersionedPackage pack;
+        
+        /**
+         * The files to write, {@code null} if files are not installed
+         */
+        public final HashSet<String> files;
+        
+        /**
+         * Whether the package is installed explicitly
+         */
+        public final boolean explicit;
+        
+        /**
+         * Packages in the plan that depend on this package
+         */
+        public final ArrayList<Task> dependents = new ArrayList<>();
+        
+        /**
+         * The number of packages this package depends on that have not been installed yet
+         */
+        public int pending = 0;
+        
+        /**
+         * Whether the package will not be installed because a dependency failed
+         */
+        public boolean skipped = false;
+        
+        /**
+         * The number of files that were not written because they were already installed
+         */
+        public int unchanged = 0;
+        
+        
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run()
+        {
+            final long start = System.nanoTime();
+            long bytes = 0;
+            IOException error = null;
+            try
+            {   final Common common = TransactionExecutor.this.common;
+                if ((this.files != null) && TransactionExecutor.this.incremental)
+                {   final HashMap<String, String> checksums = common.getChecksums(this.pack);
+                    this.unchanged = common.removeUnchanged(this.files, checksums);
+                    if (this.files.isEmpty() == false)
+                        bytes = common.extract(this.pack, this.files);
+                    common.verify(this.files, checksums);
+                }
+                else if (this.files != null)
+                    bytes = common.extract(this.pack, this.files);
+            }
+            catch (final IOException err)
+            {   error = err;
+            }
+            catch (final Throwable err)
+            {   error = new IOException(err);
+            }
+            finished(this, error, bytes, System.nanoTime() - start);
+        }
+        
+    }
+    
+}
@@ -33,7 +33,7 @@ public class Version implements Comparable<Version>
     public Version(final String version)
     {
         final String ver = version.replace(";", ":");
-        final int te = ver.contains("=")
+        final int te = ver.contains(":")
                        ? Integer.parseInt(ver.substring(0, ver.indexOf(":")))
                        : 0;
         
@@ -55,9 +55,10 @@ public class Version implements Comparable<Version>
         
         t = t.substring(_tv.length());  if (t.startsWith("-"))  t = t.substring(1);
         
-        final int tr = t.contains("-") ? Integer.parseInt(t.substring(t.indexOf("-") + 1)) : 0;
+        final int tr = t.contains("-") ? Integer.parseInt(t.substring(t.indexOf("-") + 1))
+                       : (t.isEmpty() || t.startsWith("rc")) ? 0 : Integer.parseInt(t);
         
-        final String[] _tvs = _tv.split(".");
+        final String[] _tvs = _tv.split("\\.");
         final int[] tvs = this.versions = new int[_tvs.length];
         
         final StringBuilder v = new StringBuilder();
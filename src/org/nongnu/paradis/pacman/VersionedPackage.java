@@ -220,6 +220,11 @@ public class VersionedPackage implements Comparable<VersionedPackage>
             return comp == 0 ? (other.lowClosed && this.highClosed) : (comp < 0);
         }
         
+        if ((this.low != null) && (this.high != null) && (other.low != null) && (other.high == null))
+        {   int comp = other.low.compareTo(this.high);
+            return comp == 0 ? (other.lowClosed && this.highClosed) : (comp < 0);
+        }
+        
         final boolean olc = other. lowClosed;
         final boolean tlc = this . lowClosed;
         final boolean thc = this .highClosed;
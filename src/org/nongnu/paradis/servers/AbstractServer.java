@@ -36,8 +36,8 @@ public abstract class AbstractServer implements Blackboard.BlackboardObserver
     @SuppressWarnings("unchecked")
     public AbstractServer(final int nice)
     {
-        Blackboard.getInstance(null).registerObserver(this);
-        Blackboard.getInstance(null).registerPriority(this, nice, ServerInvoke.class);
+        Blackboard.getDefault().registerObserver(this, ServerInvoke.class);
+        Blackboard.getDefault().registerPriority(this, nice, ServerInvoke.class);
     }
     
     
@@ -58,7 +58,7 @@ public abstract class AbstractServer implements Blackboard.BlackboardObserver
      */
     public void dispose()
     {
-        Blackboard.getInstance(null).unregisterObserver(this);
+        Blackboard.getDefault().unregisterObserver(this);
     }
     
     
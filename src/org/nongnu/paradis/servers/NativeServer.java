@@ -60,6 +60,7 @@ public class NativeServer extends AbstractServer
             System.out.println("show l        Show licenses.");
             System.out.println("version       Print version information about this program.");
             System.out.println("credits       Shows the credits of this program and all aktiv plug-ins.");
+            System.out.println("blackboard    Show statistics for the default blackboard, or a named blackboard.");
         }
         else if (command.equals("show c"))
         {
@@ -124,6 +125,17 @@ public class NativeServer extends AbstractServer
             System.out.println("Paradis — Ever growing network for parallell and distributed computing.");
             System.out.println("Copyright © 2012  Mattias Andrée");
         }
+        else if (command.equals("blackboard") || command.startsWith("blackboard "))
+        {
+            if (consumed)
+                return true;
+            final String name = command.equals("blackboard") ? null : command.substring("blackboard ".length()).trim();
+            final Blackboard blackboard = (name == null) || name.isEmpty() ? Blackboard.getDefault() : Blackboard.find(name);
+            if (blackboard == null)
+                System.out.println("no such blackboard: " + name);
+            else
+                System.out.print(blackboard.getStatistics().getReport());
+        }
         else if (command.equals("shell"))
         {
             if (consumed)
@@ -122,7 +122,7 @@ public class NetworkServer extends AbstractServer
                     remotePort = Integer.parseInt(remote.substring(1 + remote.lastIndexOf(":")));
                 }
                 
-                Blackboard.getInstance(null).broadcastMessage(new MakeConnection(remoteAddress, remotePort));
+                Blackboard.getDefault().broadcastMessage(new MakeConnection(remoteAddress, remotePort));
             }
         }
         catch (final Throwable err)
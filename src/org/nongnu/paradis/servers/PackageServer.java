@@ -69,6 +69,7 @@ public class PackageServer extends AbstractServer
     /**
      * Constructor
      */
+    @SuppressWarnings("unchecked")
     public PackageServer()
     {
         super(-1 ^ (-1 >>> 1));
@@ -78,7 +79,7 @@ public class PackageServer extends AbstractServer
         TransferProtocolRegister.register(String.class, "fetchpkg+fetch");
         TransferProtocolRegister.register(byte[].class, "fetchpkg+upload");
         
-        Blackboard.getInstance(null).registerObserver(new Blackboard.BlackboardObserver()
+        Blackboard.getDefault().registerObserver(new Blackboard.BlackboardObserver()
                 {
                     /**
                      * {@inheritDoc}
@@ -158,7 +159,7 @@ public class PackageServer extends AbstractServer
 				    return;
                                 }
                                 
-                                Blackboard.getInstance(null).broadcastMessage(new SendPacket(PackageServer.this.factory.createUnicast(buf.toString(), "fetchpkg+found", packet.cast.getSender())));
+                                Blackboard.getDefault().broadcastMessage(new SendPacket(PackageServer.this.factory.createUnicast(buf.toString(), "fetchpkg+found", packet.cast.getSender())));
                             }
 			    else if (packet.messageType.equals("fetchpkg+fetch"))
 			    {
@@ -256,7 +257,7 @@ public class PackageServer extends AbstractServer
 					{   System.arraycopy(data, 0, seg, ptr, seg.length);
 					    ptr += seg.length;
 					}
-					Blackboard.getInstance(null).broadcastMessage(new SendPacket(PackageServer.this.factory.createUnicast(data, "fetchpkg+upload", packet.cast.getSender())));
+					Blackboard.getDefault().broadcastMessage(new SendPacket(PackageServer.this.factory.createUnicast(data, "fetchpkg+upload", packet.cast.getSender())));
 				    }
 			    }
 			    else if ((PackageServer.this.currentCommand != null) && packet.messageType.equals("fetchpkg+upload"))
@@ -333,7 +334,7 @@ public class PackageServer extends AbstractServer
 				    }
 			    }
                     }   }
-                });
+                }, PacketReceived.class);
     }
     
     
@@ -409,7 +410,7 @@ public class PackageServer extends AbstractServer
             String cmd = (opts.containsKey("-p") || opts.containsKey("-f")) ? "" : "-f ";
             this.currentCommand = (cmd += command.substring("fetchpkg ".length())) + "\n";
             System.out.println("Waiting for responses, + marks responses, press Enter to stop waiting: ");
-            Blackboard.getInstance(null).broadcastMessage(new SendPacket(this.factory.createBroadcast(cmd, "fetchpkg+search")));
+            Blackboard.getDefault().broadcastMessage(new SendPacket(this.factory.createBroadcast(cmd, "fetchpkg+search")));
             scanner.nextLine();
             this.currentCommand = null;
             
@@ -474,7 +475,7 @@ public class PackageServer extends AbstractServer
 	{
             String cmd = (opts.containsKey("-p") || opts.containsKey("-f")) ? "" : "-f ";
             this.currentCommand = (cmd += command.substring("fetchpkg ".length())) + "\n";
-            Blackboard.getInstance(null).broadcastMessage(new SendPacket(this.factory.createBroadcast(cmd, "fetchpkg+fetch")));
+            Blackboard.getDefault().broadcastMessage(new SendPacket(this.factory.createBroadcast(cmd, "fetchpkg+fetch")));
 	}
         
         return true;
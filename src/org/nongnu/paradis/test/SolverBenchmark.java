@@ -0,0 +1,162 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.test;
+import org.nongnu.paradis.pacman.*;
+
+import java.util.*;
+
+
+/**
+ * Benchmark for the package manager's dependency solver, over a synthetic repository
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class SolverBenchmark
+{
+    /**
+     * Non-constructor
+     */
+    private SolverBenchmark()
+    {
+        assert false : "You may not create instances of this class [SolverBenchmark].";
+    }
+    
+    
+    
+    /**
+     * The number of times each scenario is run, the fastest run is reported
+     */
+    private static final int RUNS = 5;
+    
+    
+    
+    /**
+     * This is the main entry point of this test
+     * 
+     * @param  args  Startup arguments: the number of packages (default 10000) and the random seed (default 0)
+     */
+    public static void main(final String... args)
+    {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 0);
+        
+        long time = System.nanoTime();
+        final int[] versions = new int[n];
+        for (int i = 0; i < n; i++)
+            versions[i] = 1 + random.nextInt(3);
+        
+        /* Packages only depend on packages with lower numbers. The latest versions are compatible with
+         * each other, older versions may require older versions of their dependencies. Every virtual
+         * package has at least one provider, and packages only conflict with older versions. */
+        final DependencySolver solver = new DependencySolver();
+        final ArrayList<VersionedPackage> installed = new ArrayList<>();
+        final String[] none = new String[0];
+        int count = 0;
+        for (int i = 0; i < n; i++)
+        {
+            final boolean install = random.nextInt(10) < 3;
+            for (int v = 1; v <= versions[i]; v++)
+            {
+                final ArrayList<String> dependencies = new ArrayList<>();
+                for (int k = i == 0 ? 0 : random.nextInt(5); k > 0; k--)
+                {
+                    final int j = random.nextInt(i);
+                    final int r = random.nextInt(100);
+                    if (r < 20)
+                        dependencies.add("p" + j + ">=" + (1 + random.nextInt(versions[j])) + ".0");
+                    else if ((r < 30) && (versions[j] > 1) && (v < versions[i]))
+                        dependencies.add("p" + j + "<" + versions[j] + ".0");
+                    else if ((r < 35) && (j >= 50))
+                        dependencies.add("virtual" + (j % 50));
+                    else
+                        dependencies.add("p" + j);
+                }
+                final int c = random.nextInt(n);
+                final VersionedPackage pack = new VersionedPackage("p" + i + "=" + v + ".0");
+                final String[] deps      = dependencies.toArray(new String[dependencies.size()]);
+                final String[] provides  = ((i < 50) || (random.nextInt(50) == 0)) ? new String[] { "virtual" + (i % 50) } : none;
+                final String[] conflicts = ((random.nextInt(100) == 0) && (versions[c] > 1)) ? new String[] { "p" + c + "<" + versions[c] + ".0" } : none;
+                final String[] replaces  = random.nextInt(200) == 0 ? new String[] { "legacy" + i } : none;
+                solver.addAvailable(pack, deps, provides, conflicts, replaces);
+                count++;
+                if (install && (v == 1))
+                {   solver.addInstalled(pack, deps, provides, conflicts, replaces);
+                    installed.add(pack);
+                }
+            }
+            if (random.nextInt(200) == 0)
+                solver.addInstalled(new VersionedPackage("legacy" + i + "=1.0"), none, none, none, none);
+        }
+        time = System.nanoTime() - time;
+        System.out.println("Repository: " + n + " names, " + count + " packages, " + installed.size() + " installed, generated in " + time / 1000000 + " ms");
+        
+        final ArrayList<VersionedPackage> few = new ArrayList<>();
+        final ArrayList<VersionedPackage> many = new ArrayList<>();
+        final ArrayList<VersionedPackage> pinned = new ArrayList<>();
+        final ArrayList<VersionedPackage> all = new ArrayList<>();
+        final ArrayList<VersionedPackage> upgrade = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            all.add(new VersionedPackage("p" + i));
+        for (int i = 0; i < 100; i++)
+            few.add(all.get(random.nextInt(n)));
+        for (int i = 0; i < 1000; i++)
+            many.add(all.get(random.nextInt(n)));
+        while (pinned.size() < 20)
+        {   final int i = random.nextInt(n);
+            if (versions[i] > 1)
+                pinned.add(new VersionedPackage("p" + i + "<" + versions[i] + ".0"));
+        }
+        for (final VersionedPackage pack : installed)
+            upgrade.add(new VersionedPackage(pack.name + "=" + versions[Integer.parseInt(pack.name.substring(1))] + ".0"));
+        
+        run(solver, "Install 100 packages", few, true);
+        run(solver, "Install 1000 packages", many, true);
+        run(solver, "Install 1000 packages, needed only", many, false);
+        run(solver, "Install 20 packages pinned to older versions", pinned, true);
+        run(solver, "Upgrade all installed packages", upgrade, false);
+        run(solver, "Install all packages", all, false);
+    }
+    
+    
+    /**
+     * Runs and reports a scenario
+     * 
+     * @param  solver     The solver
+     * @param  name       The name of the scenario
+     * @param  requests   The packages to install
+     * @param  reinstall  Whether installed packages are reinstalled
+     */
+    private static void run(final DependencySolver solver, final String name, final ArrayList<VersionedPackage> requests, final boolean reinstall)
+    {
+        long best = Long.MAX_VALUE;
+        DependencySolver.Plan plan = null;
+        try
+        {   for (int i = 0; i < RUNS; i++)
+            {   final long time = System.nanoTime();
+                plan = solver.solve(requests, reinstall);
+                best = Math.min(best, System.nanoTime() - time);
+            }
+            System.out.println(name + ": " + (best / 1000) / 1000. + " ms, " + plan.install.size() + " to install, "
+                               + plan.remove.size() + " to remove, " + plan.steps + " steps");
+        }
+        catch (final UnsatisfiableDependenciesException err)
+        {   System.out.println(name + ": " + err.getMessage());
+        }
+    }
+    
+}
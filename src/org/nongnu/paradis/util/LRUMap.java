@@ -0,0 +1,65 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.util;
+
+import java.util.*;
+
+
+/**
+ * Map that discards its least recently used entry when it grows beyond its capacity,
+ * it is not synchronised
+ * 
+ * @param  <K>  Key type
+ * @param  <V>  Value type
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+@SuppressWarnings("serial")
+public class LRUMap<K, V> extends LinkedHashMap<K, V>
+{
+    /**
+     * Constructor
+     * 
+     * @param  capacity  The maximum number of entries
+     */
+    public LRUMap(final int capacity)
+    {
+        super(16, 0.75f, true);
+        assert capacity > 0 : "Invalid capacity: " + capacity;
+        this.capacity = capacity;
+    }
+    
+    
+    
+    /**
+     * The maximum number of entries
+     */
+    private final int capacity;
+    
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<K, V> eldest)
+    {
+        return size() > this.capacity;
+    }
+    
+}
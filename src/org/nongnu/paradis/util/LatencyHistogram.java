@@ -0,0 +1,185 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.util;
+
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * <p>Concurrent histogram of durations with logarithmic buckets</p>
+ * <p>
+ *   Each power of two is divided into {@link #SUB_BUCKETS} linear buckets,
+ *   so recorded values are kept with a relative error of at most 1/8,
+ *   over the whole range of {@code long}, in a fixed amount of memory.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class LatencyHistogram
+{
+    /**
+     * The number of buckets per power of two, as a power of two
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    
+    /**
+     * The number of buckets per power of two
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    
+    
+    //Has default constructor
+    
+    
+    
+    /**
+     * The number of recorded values per bucket
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    
+    /**
+     * The number of recorded values
+     */
+    private final AtomicLong count = new AtomicLong();
+    
+    /**
+     * The sum of the recorded values
+     */
+    private final AtomicLong sum = new AtomicLong();
+    
+    /**
+     * The highest recorded value
+     */
+    private final AtomicLong max = new AtomicLong();
+    
+    
+    
+    /**
+     * Gets the bucket a value belongs to
+     * 
+     * @param   value  The value, must not be negative
+     * @return         The index of the bucket
+     */
+    private static int indexOf(final long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int)(value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((magnitude - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | sub;
+    }
+    
+    
+    /**
+     * Gets the lowest value that belongs to a bucket
+     * 
+     * @param   index  The index of the bucket
+     * @return         The lowest value in the bucket
+     */
+    private static long valueOf(final int index)
+    {
+        if (index < SUB_BUCKETS)
+            return index;
+        final int magnitude = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        return (long)(SUB_BUCKETS | (index & (SUB_BUCKETS - 1))) << (magnitude - SUB_BUCKET_BITS);
+    }
+    
+    
+    /**
+     * Records a value
+     * 
+     * @param  value  The value, negative values are recorded as zero
+     */
+    public void record(final long value)
+    {
+        final long v = value < 0 ? 0 : value;
+        this.buckets.incrementAndGet(indexOf(v));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(v);
+        for (long m; (m = this.max.get()) < v;)
+            if (this.max.compareAndSet(m, v))
+                break;
+    }
+    
+    
+    /**
+     * Gets the number of recorded values
+     * 
+     * @return  The number of recorded values
+     */
+    public long getCount()
+    {
+        return this.count.get();
+    }
+    
+    
+    /**
+     * Gets the highest recorded value
+     * 
+     * @return  The highest recorded value
+     */
+    public long getMax()
+    {
+        return this.max.get();
+    }
+    
+    
+    /**
+     * Gets the mean of the recorded values
+     * 
+     * @return  The mean of the recorded values, zero if there are none
+     */
+    public long getMean()
+    {
+        final long n = this.count.get();
+        return n == 0 ? 0 : (this.sum.get() / n);
+    }
+    
+    
+    /**
+     * Gets an approximation of a percentile of the recorded values
+     * 
+     * @param   percentile  The percentile, between 0 and 100
+     * @return              The lowest value of the bucket that contains the percentile
+     */
+    public long getPercentile(final double percentile)
+    {
+        final long n = this.count.get();
+        if (n == 0)
+            return 0;
+        final long rank = Math.max(1, (long)Math.ceil(n * percentile / 100.));
+        long seen = 0;
+        for (int i = 0, len = this.buckets.length(); i < len; i++)
+            if ((seen += this.buckets.get(i)) >= rank)
+                return valueOf(i);
+        return this.max.get();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "n=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(50) +
+               ", p90=" + getPercentile(90) + ", p99=" + getPercentile(99) + ", max=" + getMax();
+    }
+    
+}
@@ -0,0 +1,273 @@
+/**
+ *  Paradis — Ever growing network for parallel and distributed computing.
+ *  Copyright © 2012, 2013  Mattias Andrée (maandree@member.fsf.org)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.paradis.util;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+/**
+ * <p>Leveled logging with lazy message formatting and an asynchronous appender</p>
+ * <p>
+ *   Messages are given as a format string and arguments, as for {@link String#format(String, Object...)},
+ *   and are only formatted if their level is enabled, so disabled logging costs one comparison.
+ *   Enabled messages are written to {@link System#err} by a daemon thread, so logging threads
+ *   do not contend for its lock; messages are dropped if the appender falls too far behind.
+ * </p>
+ * <p>
+ *   The initial level is read from the system property {@code paradis.log},
+ *   and defaults to {@link Level#WARNING}.
+ * </p>
+ * 
+ * @author  Mattias Andrée, <a href="mailto:maandree@member.fsf.org">maandree@member.fsf.org</a>
+ */
+public class Log
+{
+    /**
+     * Log levels, in increasing severity
+     */
+    public static enum Level
+    {
+        /** * Detailed tracing of hot paths  */ DEBUG,
+        /** * Normal operation               */ INFO,
+        /** * Recoverable problems           */ WARNING,
+        /** * Failures                       */ ERROR,
+        /** * Nothing is logged at this level */ OFF;
+    }
+    
+    
+    
+    /**
+     * The maximum number of messages waiting for the appender
+     */
+    public static final int QUEUE_SIZE = 4096;
+    
+    
+    
+    /**
+     * Non-constructor
+     */
+    private Log()
+    {
+        assert false : "You may not create instances of this class [Log].";
+    }
+    
+    
+    
+    /**
+     * The ordinal of the lowest enabled level
+     */
+    private static volatile int threshold;
+    
+    /**
+     * Messages waiting for the appender
+     */
+    private static final ArrayBlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    
+    /**
+     * The number of messages that has been dropped because the queue was full
+     */
+    private static final AtomicLong dropped = new AtomicLong();
+    
+    
+    
+    /**
+     * Class initialiser
+     */
+    static
+    {
+        Level level = Level.WARNING;
+        final String value = System.getProperty("paradis.log");
+        if (value != null)
+            try
+            {   level = Level.valueOf(value.toUpperCase());
+            }
+            catch (final IllegalArgumentException err)
+            {   System.err.println("Unknown log level: " + value);
+            }
+        threshold = level.ordinal();
+        
+        final Thread appender = new Thread("Log appender")
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public void run()
+                    {   try
+                        {   for (;;)
+                                System.err.println(queue.take());
+                        }
+                        catch (final InterruptedException err)
+                        {   return;
+                }   }   };
+        appender.setDaemon(true);
+        appender.start();
+        
+        Runtime.getRuntime().addShutdownHook(new Thread("Log flusher")
+                {   /**
+                     * {@inheritDoc}
+                     */
+                    @Override
+                    public void run()
+                    {   for (String message; (message = queue.poll()) != null;)
+                            System.err.println(message);
+                }   });
+    }
+    
+    
+    
+    /**
+     * Sets the lowest enabled level
+     * 
+     * @param  level  The lowest enabled level
+     */
+    public static void setLevel(final Level level)
+    {
+        threshold = level.ordinal();
+    }
+    
+    
+    /**
+     * Checks whether a level is enabled, use this to guard costly argument construction
+     * 
+     * @param   level  The level
+     * @return         Whether messages of the level are logged
+     */
+    public static boolean isEnabled(final Level level)
+    {
+        return level.ordinal() >= threshold;
+    }
+    
+    
+    /**
+     * Gets the number of messages that has been dropped because the appender fell behind
+     * 
+     * @return  The number of dropped messages
+     */
+    public static long getDropped()
+    {
+        return dropped.get();
+    }
+    
+    
+    /**
+     * Logs a message
+     * 
+     * @param  level   The level of the message
+     * @param  format  The message format string
+     * @param  args    The format arguments
+     */
+    public static void log(final Level level, final String format, final Object... args)
+    {
+        if (level.ordinal() >= threshold)
+            enqueue(level, format, args);
+    }
+    
+    
+    /**
+     * Logs a debug message
+     * 
+     * @param  message  The message, it is not formatted
+     */
+    public static void debug(final String message)
+    {
+        if (Level.DEBUG.ordinal() >= threshold)
+            enqueue(Level.DEBUG, "%s", message);
+    }
+    
+    
+    /**
+     * Logs a debug message
+     * 
+     * @param  format  The message format string
+     * @param  arg     The format argument
+     */
+    public static void debug(final String format, final Object arg)
+    {
+        if (Level.DEBUG.ordinal() >= threshold)
+            enqueue(Level.DEBUG, format, arg);
+    }
+    
+    
+    /**
+     * Logs a debug message
+     * 
+     * @param  format  The message format string
+     * @param  args    The format arguments
+     */
+    public static void debug(final String format, final Object... args)
+    {
+        if (Level.DEBUG.ordinal() >= threshold)
+            enqueue(Level.DEBUG, format, args);
+    }
+    
+    
+    /**
+     * Logs an information message
+     * 
+     * @param  format  The message format string
+     * @param  args    The format arguments
+     */
+    public static void info(final String format, final Object... args)
+    {
+        if (Level.INFO.ordinal() >= threshold)
+            enqueue(Level.INFO, format, args);
+    }
+    
+    
+    /**
+     * Logs a warning message
+     * 
+     * @param  format  The message format string
+     * @param  args    The format arguments
+     */
+    public static void warning(final String format, final Object... args)
+    {
+        if (Level.WARNING.ordinal() >= threshold)
+            enqueue(Level.WARNING, format, args);
+    }
+    
+    
+    /**
+     * Logs an error message
+     * 
+     * @param  format  The message format string
+     * @param  args    The format arguments
+     */
+    public static void error(final String format, final Object... args)
+    {
+        if (Level.ERROR.ordinal() >= threshold)
+            enqueue(Level.ERROR, format, args);
+    }
+    
+    
+    /**
+     * Formats a message and hands it over to the appender
+     * 
+     * @param  level   The level of the message
+     * @param  format  The message format string
+     * @param  args    The format arguments
+     */
+    private static void enqueue(final Level level, final String format, final Object... args)
+    {
+        final String message = level.name() + " [" + Thread.currentThread().getName() + "] " + String.format(format, args);
+        if (queue.offer(message) == false)
+            dropped.incrementAndGet();
+    }
+    
+}